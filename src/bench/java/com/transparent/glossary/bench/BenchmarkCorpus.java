@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.bench;
+
+import com.transparent.glossary.io.ISortObjectsReader;
+import com.transparent.glossary.model.SortObject;
+import com.transparent.glossary.processor.GlossaryProcessorEntry;
+import com.transparent.glossary.sort.CollatorDataHelper;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The content the benchmarks run against: either the checked-in Swedish Essentials course ("swedish") or a synthetic
+ * corpus of the given number of cards ("synthetic") written in to a temporary folder, see SyntheticCorpusGenerator.
+ * The benchmarks are run from the project folder, the Swedish course is looked up relative to it.
+ */
+public class BenchmarkCorpus
+{
+	public static final String SWEDISH		= "swedish";
+	public static final String SYNTHETIC	= "synthetic";
+
+	/**
+	 * Loads the glossary configuration and prepares the corpus, languageCodeL2 is the language of the synthetic corpus.
+	 */
+	public BenchmarkCorpus( final String corpus, final int cardCount, final String languageCodeL2 ) throws IOException
+	{
+		context = new ClassPathXmlApplicationContext( "glottal-config.xml" );
+
+		if( SWEDISH.equals( corpus ) )
+		{
+			rootFolder = new File( SWEDISH_FOLDER );
+			if( !rootFolder.isDirectory() ) {
+				throw new IllegalStateException( String.format( "Benchmarks should be run from the project folder, %s not found", SWEDISH_FOLDER ) );
+			}
+		}
+		else if( SYNTHETIC.equals( corpus ) )
+		{
+			rootFolder = Files.createTempDirectory( "corpus" ).toFile();
+			temporary = true;
+
+			SyntheticCorpusGenerator generator = new SyntheticCorpusGenerator();
+			generator.setCollatorHelper( getCollatorHelper() );
+			generator.setLanguageCodeL1( "ENGLISH" );
+			generator.setLanguageCodeL2( languageCodeL2 );
+			generator.setCardCount( cardCount );
+			generator.generate( rootFolder );
+		}
+		else {
+			throw new IllegalArgumentException( String.format( "Unknown corpus: %s", corpus ) );
+		}
+	}
+
+	public ClassPathXmlApplicationContext getContext() {
+		return context;
+	}
+
+	public File getRootFolder() {
+		return rootFolder;
+	}
+
+	public CollatorDataHelper getCollatorHelper() {
+		return context.getBean( "collatorData", CollatorDataHelper.class );
+	}
+
+	/**
+	 * Returns the B4X content files of the corpus, the ones accepted by the b4x processor entry.
+	 */
+	public List<File> getB4xFiles()
+	{
+		List<File> res		= new ArrayList<File>();
+		FileFilter filter	= getB4xInputReaders().keySet().iterator().next();
+		collectFiles( rootFolder, filter, res );
+		Collections.sort( res );
+
+		return res;
+	}
+
+	/**
+	 * Reads the sort objects of all B4X content files with the given reader.
+	 */
+	public List<SortObject> readB4xSortObjects( final ISortObjectsReader reader )
+	{
+		List<SortObject> res = new ArrayList<SortObject>();
+		for( File file : getB4xFiles() ) {
+			res.addAll( reader.readSortObjects( file ) );
+		}
+
+		return res;
+	}
+
+	/**
+	 * Closes the configuration and deletes the synthetic corpus.
+	 */
+	public void release()
+	{
+		context.close();
+		if( temporary ) {
+			delete( rootFolder );
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private Map<FileFilter, ISortObjectsReader> getB4xInputReaders() {
+		return context.getBean( "b4xGlossaryProcessorEntry", GlossaryProcessorEntry.class ).getInputReadersMap();
+	}
+
+	private static void collectFiles( final File folder, final FileFilter filter, final List<File> result )
+	{
+		for( File file : folder.listFiles() )
+		{
+			if( file.isDirectory() ) {
+				collectFiles( file, filter, result );
+			}
+			else if( filter.accept( file ) ) {
+				result.add( file );
+			}
+		}
+	}
+
+	private static void delete( final File file )
+	{
+		File[] files = file.listFiles();
+		if( files != null )
+		{
+			for( File child : files ) {
+				delete( child );
+			}
+		}
+		file.delete();
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static final String SWEDISH_FOLDER = "testdata/Essentials/Swedish";
+
+	private final ClassPathXmlApplicationContext context;
+	private final File rootFolder;
+	private boolean temporary = false;
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.bench;
+
+import com.transparent.glossary.io.ISortObjectsReader;
+import com.transparent.glossary.model.SortObject;
+import com.transparent.glossary.processor.ISortObjectsFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures filtering of the duplicates out of the sort objects read from all B4X content files of the corpus. The
+ * filter modifies the collection, so every invocation filters a fresh copy of the sort objects.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class FilterBenchmark
+{
+	@Param( { BenchmarkCorpus.SWEDISH, BenchmarkCorpus.SYNTHETIC } )
+	public String corpus;
+
+	@Param( { "20000" } )
+	public int cards;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		data		= new BenchmarkCorpus( corpus, cards, "SWEDISH" );
+		sortObjects	= data.readB4xSortObjects( data.getContext().getBean( "b4xReader", ISortObjectsReader.class ) );
+		filter		= data.getContext().getBean( "duplicatesSortObjectFilter", ISortObjectsFilter.class );
+	}
+
+	@TearDown
+	public void tearDown() {
+		data.release();
+	}
+
+	@Benchmark
+	public List<SortObject> filterDuplicates()
+	{
+		List<SortObject> res = new ArrayList<SortObject>( sortObjects );
+		filter.process( res, null );
+
+		return res;
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private BenchmarkCorpus data;
+	private List<SortObject> sortObjects;
+	private ISortObjectsFilter filter;
+	//------------------------------------------------------------------------------------------------------------------
+}
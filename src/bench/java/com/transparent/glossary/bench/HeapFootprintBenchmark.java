@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.bench;
+
+import com.transparent.glossary.io.ISortObjectsReader;
+import com.transparent.glossary.model.SortObject;
+import org.apache.commons.cli.*;
+
+import java.util.List;
+
+/**
+ * Measures the heap the sort objects of the corpus keep: the B4X content files are read with the configured DOM or
+ * streaming reader, so the sort objects are built the way the glossary is built out of them, and the heap used after
+ * a full collection is compared to the one used before the files were read once more. The retained heap covers everything the
+ * sort objects reference that wasn't there before, the field value strings included.
+ * The heap footprint isn't a time, so this is run from the command line instead of JMH, see main() and the footprint
+ * Ant target.
+ */
+public class HeapFootprintBenchmark
+{
+	public static void main( String[] args ) throws Exception
+	{
+		CommandLine line = null;
+		try {
+			line = new GnuParser().parse( getOptions(), args );
+		}
+		catch( Exception exp )
+		{
+			System.err.println( "Parsing failed.  Reason: " + exp.getMessage() );
+			new HelpFormatter().printHelp( "footprint", getOptions() );
+			System.exit( 1 );
+		}
+
+		String corpus	= line.getOptionValue( "corpus", BenchmarkCorpus.SYNTHETIC );
+		int cards		= Integer.parseInt( line.getOptionValue( "cards", "200000" ) );
+		String reader	= line.getOptionValue( "reader", "b4xStreamingReader" );
+
+		BenchmarkCorpus data = new BenchmarkCorpus( corpus, cards, line.getOptionValue( "l2", "SWEDISH" ) );
+		try
+		{
+			ISortObjectsReader sortObjectsReader = data.getContext().getBean( reader, ISortObjectsReader.class );
+
+			// the first read loads the classes and fills the caches the reader keeps, they aren't part of the footprint
+			data.readB4xSortObjects( sortObjectsReader );
+
+			long before				= getUsedHeap();
+			List<SortObject> res	= data.readB4xSortObjects( sortObjectsReader );
+			long retained			= getUsedHeap() - before;
+
+			System.out.println( String.format( "corpus: %s, reader: %s", corpus, reader ) );
+			System.out.println( String.format( "sort objects: %d", res.size() ) );
+			System.out.println( String.format( "retained heap: %.1f MB", retained / (1024.0 * 1024.0) ) );
+			System.out.println( String.format( "retained heap per sort object: %d bytes", res.isEmpty()? 0: retained / res.size() ) );
+		}
+		finally {
+			data.release();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the least heap used over a number of collections, the objects that are finalized or only softly reachable
+	 * may take a few of them to go.
+	 */
+	private static long getUsedHeap() throws InterruptedException
+	{
+		Runtime runtime	= Runtime.getRuntime();
+		long res		= Long.MAX_VALUE;
+		for( int i = 0; i < COLLECTIONS; i++ )
+		{
+			System.gc();
+			System.runFinalization();
+			Thread.sleep( 100 );
+
+			res = Math.min( res, runtime.totalMemory() - runtime.freeMemory() );
+		}
+
+		return res;
+	}
+
+	private static Options getOptions()
+	{
+		Options options = new Options();
+		options.addOption( createOption( "corpus", "corpus", "swedish or synthetic, synthetic is the default" ) );
+		options.addOption( createOption( "cards", "count", "Number of the synthetic B4X cards, 200000 is the default" ) );
+		options.addOption( createOption( "reader", "bean", "b4xStreamingReader (default) or b4xDomReader" ) );
+		options.addOption( createOption( "l2", "language", "L2 language code of the synthetic cards, SWEDISH is the default" ) );
+
+		return options;
+	}
+
+	private static Option createOption( final String name, final String argName, final String description )
+	{
+		return OptionBuilder.withArgName( argName )
+							.hasArg()
+							.withDescription( description )
+							.create( name );
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static final int COLLECTIONS = 10;
+	//------------------------------------------------------------------------------------------------------------------
+}
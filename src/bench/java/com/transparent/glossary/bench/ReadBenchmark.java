@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.bench;
+
+import com.transparent.glossary.io.ISortObjectsReader;
+import com.transparent.glossary.io.util.XmlFileReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading of all B4X content files of the corpus: parsing them in to DOM documents and building the sort
+ * objects with the DOM and the streaming readers.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ReadBenchmark
+{
+	@Param( { BenchmarkCorpus.SWEDISH, BenchmarkCorpus.SYNTHETIC } )
+	public String corpus;
+
+	@Param( { "20000" } )
+	public int cards;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		data			= new BenchmarkCorpus( corpus, cards, "SWEDISH" );
+		files			= data.getB4xFiles();
+		domReader		= data.getContext().getBean( "b4xDomReader", ISortObjectsReader.class );
+		streamingReader	= data.getContext().getBean( "b4xStreamingReader", ISortObjectsReader.class );
+	}
+
+	@TearDown
+	public void tearDown() {
+		data.release();
+	}
+
+	@Benchmark
+	public void readXml( final Blackhole blackhole ) throws Exception
+	{
+		for( File file : files ) {
+			blackhole.consume( XmlFileReader.readXml( file ) );
+		}
+	}
+
+	@Benchmark
+	public void readSortObjects( final Blackhole blackhole )
+	{
+		for( File file : files ) {
+			blackhole.consume( domReader.readSortObjects( file ) );
+		}
+	}
+
+	@Benchmark
+	public void readSortObjectsStreaming( final Blackhole blackhole )
+	{
+		for( File file : files ) {
+			blackhole.consume( streamingReader.readSortObjects( file ) );
+		}
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private BenchmarkCorpus data;
+	private List<File> files;
+	private ISortObjectsReader domReader;
+	private ISortObjectsReader streamingReader;
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.bench;
+
+import com.transparent.glossary.model.SortObject;
+import com.transparent.glossary.processor.GlossaryProcessor;
+import com.transparent.glossary.sort.SortDirection;
+import com.transparent.glossary.sort.SortMode;
+import com.transparent.glossary.sort.SortType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sorting of the glossary data by L2 with the collators of a few languages: ENGLISH and ARABIC use the Java
+ * locale collators, ARABIC_NSYRIAN a RuleBasedCollator built out of its collation rules.
+ * The synthetic corpus is written in the alphabet of the language; the Swedish course keeps its Swedish text and is
+ * sorted as if it were in the language. Every invocation sorts a fresh copy of the unsorted data.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class SortBenchmark
+{
+	@Param( { BenchmarkCorpus.SWEDISH, BenchmarkCorpus.SYNTHETIC } )
+	public String corpus;
+
+	@Param( { "20000" } )
+	public int cards;
+
+	@Param( { "ENGLISH", "ARABIC", "ARABIC_NSYRIAN" } )
+	public String language;
+
+	@Param( { "COMPARATOR", "COLLATION_KEY" } )
+	public SortMode sortMode;
+
+	@Param( { "false" } )
+	public boolean parallelSort;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		data		= new BenchmarkCorpus( corpus, cards, language );
+		processor	= data.getContext().getBean( "glossaryProcessor", GlossaryProcessor.class );
+		processor.setInputRootFolder( data.getRootFolder() );
+		processor.setSortMode( sortMode );
+		processor.setParallelSort( parallelSort );
+
+		unsortedData = processor.collectUnsortedGlossaryData();
+		for( SortObject sortObject : unsortedData ) {
+			sortObject.setLanguageCodeL2( language );
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		data.release();
+	}
+
+	@Benchmark
+	public List<SortObject> sort()
+	{
+		List<SortObject> res = new ArrayList<SortObject>( unsortedData );
+		processor.sort( res, SortType.L2, SortDirection.ASC );
+
+		return res;
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private BenchmarkCorpus data;
+	private GlossaryProcessor processor;
+	private List<SortObject> unsortedData;
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.bench;
+
+import com.transparent.glossary.sort.CollatorData;
+import com.transparent.glossary.sort.CollatorDataHelper;
+import org.apache.commons.cli.*;
+import org.apache.log4j.Logger;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class writes a course of synthetic content in to a folder, so the glossary can be built out of much more content
+ * than the checked-in test data has. The content is laid out the way the courses are: every unit has a unitN/data
+ * folder with a folder of its own for every content file, named by the content id, e.g.
+ * unit1/data/SWExx_ENGxx_001_001/SWExx_ENGxx_001_001.xml. Every unit has a number of B4X card lists (/list/cards/*)
+ * and a pair of _known_tt.xml/_learning_tt.xml transcripts.
+ * The words are made of the alphabet letters of the languages. Some of the texts are phrases, some of the cards repeat
+ * cards written before and some of the texts are XHTML wrapped in CDATA sections, the ratios are configurable. The same
+ * settings and seed always produce the same content.
+ *
+ * The generator can be run from the command line, see main().
+ */
+public class SyntheticCorpusGenerator
+{
+	/**
+	 * Writes a corpus with the settings given on the command line:
+	 *
+	 * <pre>
+	 usage: corpus
+	 -outputFolder [folder]      Required folder to write the corpus in to
+	 -l1 [language]              L1 language code, ENGLISH is the default
+	 -l2 [language]              L2 language code, SWEDISH is the default
+	 -cards [count]              Number of the B4X cards
+	 -units [count]              Number of the units
+	 -phraseRatio [ratio]        Part of the texts that are phrases, 0..1
+	 -duplicateRatio [ratio]     Part of the cards that repeat a card, 0..1
+	 -noiseRatio [ratio]         Part of the texts that are XHTML in CDATA,
+	                             0..1
+	 -ttLines [count]            Number of the transcript lines of a unit
+	 -seed [seed]                Seed of the random content
+	 *</pre>
+	 */
+	public static void main( String[] args )
+	{
+		CommandLine line = null;
+		try {
+			line = new GnuParser().parse( getOptions(), args );
+		}
+		catch( Exception exp )
+		{
+			System.err.println( "Parsing failed.  Reason: " + exp.getMessage() );
+			System.exit( 1 );
+		}
+
+		if( !line.hasOption( "outputFolder" ) )
+		{
+			new HelpFormatter().printHelp( "corpus", getOptions() );
+			System.exit( 1 );
+		}
+
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext( "glottal-config.xml" );
+		try
+		{
+			SyntheticCorpusGenerator generator = new SyntheticCorpusGenerator();
+			generator.setCollatorHelper( context.getBean( "collatorData", CollatorDataHelper.class ) );
+			generator.setLanguageCodeL1( line.getOptionValue( "l1", generator.getLanguageCodeL1() ) );
+			generator.setLanguageCodeL2( line.getOptionValue( "l2", generator.getLanguageCodeL2() ) );
+			generator.setCardCount( Integer.parseInt( line.getOptionValue( "cards", String.valueOf( generator.getCardCount() ) ) ) );
+			generator.setUnitCount( Integer.parseInt( line.getOptionValue( "units", String.valueOf( generator.getUnitCount() ) ) ) );
+			generator.setPhraseRatio( Double.parseDouble( line.getOptionValue( "phraseRatio", String.valueOf( generator.getPhraseRatio() ) ) ) );
+			generator.setDuplicateRatio( Double.parseDouble( line.getOptionValue( "duplicateRatio", String.valueOf( generator.getDuplicateRatio() ) ) ) );
+			generator.setNoiseRatio( Double.parseDouble( line.getOptionValue( "noiseRatio", String.valueOf( generator.getNoiseRatio() ) ) ) );
+			generator.setTranscriptLineCount( Integer.parseInt( line.getOptionValue( "ttLines", String.valueOf( generator.getTranscriptLineCount() ) ) ) );
+			generator.setSeed( Long.parseLong( line.getOptionValue( "seed", String.valueOf( generator.getSeed() ) ) ) );
+
+			System.out.println( "Started..." );
+			generator.generate( new File( line.getOptionValue( "outputFolder" ) ) );
+			System.out.println( "done!" );
+		}
+		finally {
+			context.close();
+		}
+	}
+
+	//===================================== property assessors ==========================================================
+	public CollatorDataHelper getCollatorHelper() {
+		return collatorHelper;
+	}
+
+	/**
+	 * Sets the collator data the alphabets of the languages are taken from.
+	 */
+	public void setCollatorHelper( final CollatorDataHelper collatorHelper ) {
+		this.collatorHelper = collatorHelper;
+	}
+
+	public String getLanguageCodeL1() {
+		return languageCodeL1;
+	}
+
+	public void setLanguageCodeL1( final String languageCodeL1 ) {
+		this.languageCodeL1 = languageCodeL1;
+	}
+
+	public String getLanguageCodeL2() {
+		return languageCodeL2;
+	}
+
+	public void setLanguageCodeL2( final String languageCodeL2 ) {
+		this.languageCodeL2 = languageCodeL2;
+	}
+
+	public int getCardCount() {
+		return cardCount;
+	}
+
+	/**
+	 * Sets the number of the cards written in to the B4X content of all units.
+	 */
+	public void setCardCount( final int cardCount ) {
+		this.cardCount = cardCount;
+	}
+
+	public int getUnitCount() {
+		return unitCount;
+	}
+
+	/**
+	 * Sets the number of the units, the cards are spread evenly over the units.
+	 */
+	public void setUnitCount( final int unitCount ) {
+		this.unitCount = unitCount;
+	}
+
+	public int getCardsPerFile() {
+		return cardsPerFile;
+	}
+
+	/**
+	 * Sets the number of the cards of a single B4X content file.
+	 */
+	public void setCardsPerFile( final int cardsPerFile ) {
+		this.cardsPerFile = cardsPerFile;
+	}
+
+	public double getPhraseRatio() {
+		return phraseRatio;
+	}
+
+	/**
+	 * Sets the part (0..1) of the texts that are phrases of a few words ending with a full stop.
+	 */
+	public void setPhraseRatio( final double phraseRatio ) {
+		this.phraseRatio = phraseRatio;
+	}
+
+	public double getDuplicateRatio() {
+		return duplicateRatio;
+	}
+
+	/**
+	 * Sets the part (0..1) of the cards that repeat the L1 and L2 text of a card written before.
+	 */
+	public void setDuplicateRatio( final double duplicateRatio ) {
+		this.duplicateRatio = duplicateRatio;
+	}
+
+	public double getNoiseRatio() {
+		return noiseRatio;
+	}
+
+	/**
+	 * Sets the part (0..1) of the texts that are XHTML mark up with entities wrapped in a CDATA section.
+	 */
+	public void setNoiseRatio( final double noiseRatio ) {
+		this.noiseRatio = noiseRatio;
+	}
+
+	public int getTranscriptLineCount() {
+		return transcriptLineCount;
+	}
+
+	/**
+	 * Sets the number of the lines of the known and learning transcripts of a unit, 0 writes no transcripts.
+	 */
+	public void setTranscriptLineCount( final int transcriptLineCount ) {
+		this.transcriptLineCount = transcriptLineCount;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed( final long seed ) {
+		this.seed = seed;
+	}
+	//===================================== property assessors ==========================================================
+
+	/**
+	 * Writes the corpus in to the given folder.
+	 */
+	public void generate( final File folder )
+	{
+		assert collatorHelper != null && unitCount > 0 && cardsPerFile > 0;
+
+		Random random			= new Random( seed );
+		List<Integer> lettersL1	= getLetters( languageCodeL1 );
+		List<Integer> lettersL2	= getLetters( languageCodeL2 );
+		List<String[]> cards	= new ArrayList<String[]>();
+
+		logger.info( String.format( "Generating %d cards in %d units in to %s", cardCount, unitCount, folder.getAbsolutePath() ) );
+
+		try
+		{
+			int cardIndex = 0;
+			for( int unit = 1; unit <= unitCount; unit++ )
+			{
+				File dataFolder	= new File( folder, "unit" + unit + File.separator + "data" );
+				int unitEnd		= (int)((long)cardCount * unit / unitCount);
+
+				for( int fileIndex = 1; cardIndex < unitEnd; fileIndex++ )
+				{
+					int fileEnd					= Math.min( cardIndex + cardsPerFile, unitEnd );
+					List<String[]> fileCards	= new ArrayList<String[]>();
+					for( ; cardIndex < fileEnd; cardIndex++ )
+					{
+						String[] card = null;
+						if( !cards.isEmpty() && random.nextDouble() < duplicateRatio ) {
+							card = cards.get( random.nextInt( cards.size() ) );
+						}
+						else
+						{
+							// the processor tells the phrases by the L1 text, both sides of a card are phrases or words
+							boolean phrase	= random.nextDouble() < phraseRatio;
+							card			= new String[]{ makeText( random, lettersL1, phrase ), makeText( random, lettersL2, phrase ) };
+							cards.add( card );
+						}
+						fileCards.add( card );
+					}
+
+					writeCards( createContentFolder( dataFolder, makeId( unit, fileIndex ) ), makeId( unit, fileIndex ), fileCards );
+				}
+
+				if( transcriptLineCount > 0 )
+				{
+					String id				= makeId( unit, 0 );
+					File contentFolder		= createContentFolder( dataFolder, id );
+					List<String> known		= new ArrayList<String>();
+					List<String> learning	= new ArrayList<String>();
+					for( int i = 0; i < transcriptLineCount; i++ )
+					{
+						known.add( makeText( random, lettersL1, random.nextDouble() < phraseRatio ) );
+						learning.add( makeText( random, lettersL2, random.nextDouble() < phraseRatio ) );
+					}
+					writeTranscript( new File( contentFolder, id + "_known_tt.xml" ), languageCodeL1, known );
+					writeTranscript( new File( contentFolder, id + "_learning_tt.xml" ), languageCodeL2, learning );
+				}
+			}
+		}
+		catch( IOException e )
+		{
+			logger.error( e );
+			throw new RuntimeException( e );
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * This method creates command line options set.
+	 */
+	private static Options getOptions()
+	{
+		Options options = new Options();
+		options.addOption( createOption( "outputFolder", "folder", "Required folder to write the corpus in to" ) );
+		options.addOption( createOption( "l1", "language", "L1 language code, ENGLISH is the default" ) );
+		options.addOption( createOption( "l2", "language", "L2 language code, SWEDISH is the default" ) );
+		options.addOption( createOption( "cards", "count", "Number of the B4X cards" ) );
+		options.addOption( createOption( "units", "count", "Number of the units" ) );
+		options.addOption( createOption( "phraseRatio", "ratio", "Part of the texts that are phrases, 0..1" ) );
+		options.addOption( createOption( "duplicateRatio", "ratio", "Part of the cards that repeat a card, 0..1" ) );
+		options.addOption( createOption( "noiseRatio", "ratio", "Part of the texts that are XHTML in CDATA, 0..1" ) );
+		options.addOption( createOption( "ttLines", "count", "Number of the transcript lines of a unit" ) );
+		options.addOption( createOption( "seed", "seed", "Seed of the random content" ) );
+
+		return options;
+	}
+
+	private static Option createOption( final String name, final String argName, final String description )
+	{
+		return OptionBuilder.withArgName( argName )
+							.hasArg()
+							.withDescription( description )
+							.create( name );
+	}
+
+	/**
+	 * Makes the content id the way the courses name them, e.g. SWExx_ENGxx_001_002. The id is longer than 12 characters
+	 * as StandardExtractionStrategy expects.
+	 */
+	private String makeId( final int unit, final int fileIndex ) {
+		return String.format( "%sxx_%sxx_%03d_%03d", languagePrefix( languageCodeL2 ), languagePrefix( languageCodeL1 ), unit, fileIndex );
+	}
+
+	private static String languagePrefix( final String languageCode ) {
+		return (languageCode + "XXX").substring( 0, 3 ).replaceAll( "\\W", "X" );
+	}
+
+	private static File createContentFolder( final File dataFolder, final String id ) throws IOException
+	{
+		File res = new File( dataFolder, id );
+		if( !res.isDirectory() && !res.mkdirs() ) {
+			throw new IOException( String.format( "Can't create folder: %s", res.getAbsolutePath() ) );
+		}
+
+		return res;
+	}
+
+	private void writeCards( final File contentFolder, final String id, final List<String[]> cards ) throws IOException
+	{
+		Writer out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( new File( contentFolder, id + ".xml" ) ), "UTF-8" ) );
+		try
+		{
+			out.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<list formatVersion=\"2\">\n\t<head>\n" );
+			out.write( String.format( "\t\t<name>%s</name>\n", id ) );
+			out.write( String.format( "\t\t<side1_language_key>%s</side1_language_key>\n", languageCodeL1 ) );
+			out.write( String.format( "\t\t<side2_language_key>%s</side2_language_key>\n", languageCodeL2 ) );
+			out.write( "\t</head>\n\t<cards>\n" );
+			for( String[] card : cards )
+			{
+				out.write( "\t\t<card>\n" );
+				out.write( String.format( "\t\t\t<side1_phrase>%s</side1_phrase>\n", card[0] ) );
+				out.write( String.format( "\t\t\t<side2_phrase>%s</side2_phrase>\n", card[1] ) );
+				out.write( "\t\t</card>\n" );
+			}
+			out.write( "\t</cards>\n</list>\n" );
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private void writeTranscript( final File file, final String languageCode, final List<String> lines ) throws IOException
+	{
+		Writer out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ) );
+		try
+		{
+			out.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+			out.write( String.format( "<tt xml:lang=\"%s\" xmlns=\"http://www.w3.org/2006/04/ttaf1\">\n\t<body>\n", languageCode ) );
+			for( int i = 0; i < lines.size(); i++ ) {
+				out.write( String.format( "\t\t<p begin=\"%s\" end=\"%s\">%s</p>\n", formatTime( i * 3 ), formatTime( i * 3 + 3 ), lines.get( i ) ) );
+			}
+			out.write( "\t</body>\n</tt>\n" );
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static String formatTime( final int seconds ) {
+		return String.format( "%02d:%02d:%02d.00", seconds / 3600, seconds / 60 % 60, seconds % 60 );
+	}
+
+	/**
+	 * Returns the lower case letters of the language alphabet, or the latin letters if the language has no alphabet.
+	 */
+	private List<Integer> getLetters( final String languageCode )
+	{
+		List<Integer> res	= new ArrayList<Integer>();
+		CollatorData data	= collatorHelper.getCollatorData().get( languageCode );
+		if( data != null )
+		{
+			for( String letter : data.getAlphabet( false ) )
+			{
+				for( int i = 0; i < letter.length(); i = letter.offsetByCodePoints( i, 1 ) )
+				{
+					int codePoint = Character.toLowerCase( letter.codePointAt( i ) );
+					if( Character.isLetter( codePoint ) && !res.contains( codePoint ) ) {
+						res.add( codePoint );
+					}
+				}
+			}
+		}
+
+		if( res.isEmpty() )
+		{
+			for( int codePoint = 'a'; codePoint <= 'z'; codePoint++ ) {
+				res.add( codePoint );
+			}
+		}
+
+		return res;
+	}
+
+	/**
+	 * Makes a single word or a phrase of a few words, the text may be wrapped in a CDATA section with some XHTML mark
+	 * up.
+	 */
+	private String makeText( final Random random, final List<Integer> letters, final boolean phrase )
+	{
+		StringBuilder res	= new StringBuilder();
+		boolean noise		= random.nextDouble() < noiseRatio;
+		int wordCount		= phrase? 2 + random.nextInt( 4 ): 1;
+
+		for( int i = 0; i < wordCount; i++ )
+		{
+			if( i > 0 ) {
+				res.append( ' ' );
+			}
+
+			int length = 2 + random.nextInt( 8 );
+			for( int j = 0; j < length; j++ )
+			{
+				int codePoint = letters.get( random.nextInt( letters.size() ) );
+				res.appendCodePoint( i == 0 && j == 0? Character.toUpperCase( codePoint ): codePoint );
+			}
+		}
+		if( phrase ) {
+			res.append( '.' );
+		}
+
+		if( noise ) {
+			return String.format( NOISE_FORMATS[random.nextInt( NOISE_FORMATS.length )], res );
+		}
+
+		return res.toString();
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	/**
+	 * The XHTML the texts are wrapped in, the readers strip the mark up and the entities.
+	 */
+	private static final String[] NOISE_FORMATS = {
+		"<![CDATA[<b>%s</b>]]>",
+		"<![CDATA[<span class=\"hint\" style=\"color: #336699\">%s</span>&nbsp;]]>",
+		"<![CDATA[<p><i>%s</i><br/></p>]]>",
+		"<![CDATA[&laquo;<font face=\"Arial\">%s</font>&raquo;]]>",
+	};
+
+	private CollatorDataHelper collatorHelper	= null;
+	private String languageCodeL1				= "ENGLISH";
+	private String languageCodeL2				= "SWEDISH";
+	private int cardCount						= 1000;
+	private int unitCount						= 10;
+	private int cardsPerFile					= 50;
+	private double phraseRatio					= 0.2;
+	private double duplicateRatio				= 0.05;
+	private double noiseRatio					= 0.05;
+	private int transcriptLineCount				= 50;
+	private long seed							= 0;
+
+	private Logger logger = Logger.getLogger( this.getClass() );
+	//------------------------------------------------------------------------------------------------------------------
+}
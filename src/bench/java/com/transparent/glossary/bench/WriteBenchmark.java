@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.bench;
+
+import com.transparent.glossary.io.GlossaryOutputWriter;
+import com.transparent.glossary.model.SortObject;
+import com.transparent.glossary.processor.GlossaryProcessor;
+import com.transparent.glossary.sort.SortDirection;
+import com.transparent.glossary.sort.SortType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing of the L1 and L2 glossary files out of the sorted glossary data, with the streaming writer and
+ * with the JAXB marshaller.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class WriteBenchmark
+{
+	@Param( { BenchmarkCorpus.SWEDISH, BenchmarkCorpus.SYNTHETIC } )
+	public String corpus;
+
+	@Param( { "20000" } )
+	public int cards;
+
+	@Param( { "true", "false" } )
+	public boolean streamingOutput;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		data			= new BenchmarkCorpus( corpus, cards, "SWEDISH" );
+		outputFolder	= Files.createTempDirectory( "glossary" ).toFile();
+
+		GlossaryProcessor processor = data.getContext().getBean( "glossaryProcessor", GlossaryProcessor.class );
+		processor.setInputRootFolder( data.getRootFolder() );
+		sortedDataL1 = processor.collectUnsortedGlossaryData();
+		sortedDataL2 = processor.collectUnsortedGlossaryData();
+		processor.sort( sortedDataL1, SortType.L1, SortDirection.ASC );
+		processor.sort( sortedDataL2, SortType.L2, SortDirection.ASC );
+
+		writerL1 = data.getContext().getBean( "glossaryL1Writer", GlossaryOutputWriter.class );
+		writerL1.setStreamingOutput( streamingOutput );
+		writerL1.setGlossaryFile( new File( outputFolder, "glossary_L1.xml" ) );
+		writerL2 = data.getContext().getBean( "glossaryL2Writer", GlossaryOutputWriter.class );
+		writerL2.setStreamingOutput( streamingOutput );
+		writerL2.setGlossaryFile( new File( outputFolder, "glossary_L2.xml" ) );
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		for( File file : outputFolder.listFiles() ) {
+			file.delete();
+		}
+		outputFolder.delete();
+		data.release();
+	}
+
+	@Benchmark
+	public void writeGlossaryL1() {
+		writerL1.writeGlossaryToFile( sortedDataL1 );
+	}
+
+	@Benchmark
+	public void writeGlossaryL2() {
+		writerL2.writeGlossaryToFile( sortedDataL2 );
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private BenchmarkCorpus data;
+	private File outputFolder;
+	private List<SortObject> sortedDataL1;
+	private List<SortObject> sortedDataL2;
+	private GlossaryOutputWriter writerL1;
+	private GlossaryOutputWriter writerL2;
+	//------------------------------------------------------------------------------------------------------------------
+}
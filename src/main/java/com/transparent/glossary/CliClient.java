@@ -10,10 +10,12 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.context.support.FileSystemXmlApplicationContext;
 
-import java.io.File;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This is a command line client for glossary generation tool.
@@ -35,8 +37,33 @@ import java.util.Properties;
                              e.g. L1
  -suffixL2 [suffix]          Suffix to give to the glossary L2 file name,
                              e.g. L2
+ -threads [count]            Number of threads used to read the content,
+                             1 reads it on a single thread
+ -cache                      Keep the content read in the .cache folder of
+                             the output folder, only new and changed
+                             content files are read by the next build
+ -cacheDir [folder]          Keep the content read in the given folder,
+                             implies -cache
+ -metrics [file]             Write the timing and throughput metrics of
+                             the build to the file as JSON
+ -sortMemory [megabytes]     Sort the content on disk once it takes more
+                             than the given heap size
+ -batch [file]               Build the glossaries of all jobs listed in
+                             the file with one configuration
+ -batchThreads [count]       Number of glossaries the batch builds at the
+                             same time, 1 is the default
  *</pre>
  *
+ * Every non-empty line of the batch file not starting with # is a job, given with the options of a single glossary,
+ * e.g.
+ *
+ * <pre>
+ -inputFolderRoot content/Swedish -outputFolder out/Swedish -prefix glossary
+ -inputFolderRoot "content/Marsoc Dari" -outputFolder out/Dari -marsoc -cache
+ *</pre>
+ *
+ * The -configFile and -metrics options apply to the whole batch and are given with -batch, not in the jobs.
+ *
  * User: plitvak
  * Date: Aug 6, 2009
  * Time: 2:01:02 PM
@@ -69,15 +96,30 @@ public class CliClient
             System.out.println( "MARSOC processing enabled!" );
         }
 
-		// configure shell with command line options
-		CliClientShell shell = new CliClientShell();
-		configureShell( shell, line );
+		// configure shell or batch with command line options
+		CliClientShell shell	= null;
+		CliClientBatch batch	= null;
+		if( line.hasOption( "batch" ) )
+		{
+			batch = new CliClientBatch();
+			configureBatch( batch, line );
+		}
+		else
+		{
+			shell = new CliClientShell();
+			configureShell( shell, line, createContext( line ) );
+		}
 
 		// build the glossary
 		try
 		{
 			System.out.println( "Started..." );
-			shell.buildGlossary();
+			if( batch != null ) {
+				batch.buildGlossaries();
+			}
+			else {
+				shell.buildGlossary();
+			}
 			System.out.println( "done!" );
 		}
 		catch( Throwable t )
@@ -157,6 +199,38 @@ public class CliClient
 												.withDescription( "Sufix to give to the glossary L2 file name, e.g. L2" )
 												.create( "suffixL2" );
 
+		Option threads			= OptionBuilder.withArgName( "count" )
+												.hasArg()
+												.withDescription( "Number of threads used to read the content, 1 reads it on a single thread" )
+												.create( "threads" );
+
+		Option cacheDir			= OptionBuilder.withArgName( "folder" )
+												.hasArg()
+												.withDescription( "Keep the content read in the given folder, implies -cache" )
+												.create( "cacheDir" );
+
+		Option metrics			= OptionBuilder.withArgName( "file" )
+												.hasArg()
+												.withDescription( "Write the timing and throughput metrics of the build to the file as JSON" )
+												.create( "metrics" );
+
+		Option sortMemory		= OptionBuilder.withArgName( "megabytes" )
+												.hasArg()
+												.withDescription( "Sort the content on disk once it takes more than the given heap size" )
+												.create( "sortMemory" );
+
+		Option batch			= OptionBuilder.withArgName( "file" )
+												.hasArg()
+												.withDescription( "Build the glossaries of all jobs listed in the file with one configuration" )
+												.create( "batch" );
+
+		Option batchThreads		= OptionBuilder.withArgName( "count" )
+												.hasArg()
+												.withDescription( "Number of glossaries the batch builds at the same time, 1 is the default" )
+												.create( "batchThreads" );
+
+		Option cache = new Option( "cache", "keep the content read in the .cache folder of the output folder, only new and changed content files are read by the next build" );
+
 		Option version = new Option( "version", "print the version information and exit" );
 
         Option marsoc = new Option( "marsoc", "enable special B4X folder naming convention support" );
@@ -170,15 +244,123 @@ public class CliClient
 		options.addOption( glossaryPrefix );
 		options.addOption( glossaryL1Suffix );
 		options.addOption( glossaryL2Suffix );
+		options.addOption( threads );
+		options.addOption( cache );
+		options.addOption( cacheDir );
+		options.addOption( metrics );
+		options.addOption( sortMemory );
+		options.addOption( batch );
+		options.addOption( batchThreads );
         options.addOption( marsoc );
 
 		return options;
 	}
 
+	/**
+	 * This method creates the application context, out of the optional config file if set, otherwise out of the one
+	 * from the classpath.
+	 */
+	private static ApplicationContext createContext( final CommandLine line )
+	{
+		if( line.hasOption( "configFile" ) ) {
+			return new FileSystemXmlApplicationContext( new String[]{line.getOptionValue( "configFile" )}, true );
+		}
+
+		return new ClassPathXmlApplicationContext( new String[]{ "glottal-config.xml" }, true );
+	}
+
+	/**
+	 * This method configures batch with command line options, every job of the batch file is configured as a shell.
+	 */
+	private static void configureBatch( final CliClientBatch batch, final CommandLine line )
+	{
+		ApplicationContext context = createContext( line );
+		batch.setContext( context );
+		batch.setJobs( readBatchJobs( new File( line.getOptionValue( "batch" ) ), context ) );
+
+		// set optional number of glossaries built at the same time, if not set they are built one after another
+		if( line.hasOption( "batchThreads" ) ) {
+			batch.setBatchThreads( Integer.parseInt( line.getOptionValue( "batchThreads" ) ) );
+		}
+
+		// set optional metrics file of the whole batch
+		if( line.hasOption( "metrics" ) ) {
+			batch.setMetricsFile( new File( line.getOptionValue( "metrics" ) ) );
+		}
+	}
+
+	/**
+	 * Reads the jobs of the batch file, see the class description for the format.
+	 */
+	private static List<CliClientShell> readBatchJobs( final File batchFile, final ApplicationContext context )
+	{
+		List<CliClientShell> res	= new ArrayList<CliClientShell>();
+		int lineNumber				= 0;
+		try
+		{
+			BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( batchFile ), "UTF-8" ) );
+			try
+			{
+				for( String text = reader.readLine(); text != null; text = reader.readLine() )
+				{
+					lineNumber++;
+					text = text.trim();
+					if( text.length() == 0 || text.startsWith( "#" ) ) {
+						continue;
+					}
+
+					CommandLine jobLine = new GnuParser().parse( getOptions(), splitArguments( text ) );
+					for( String option : BATCH_OPTIONS )
+					{
+						if( jobLine.hasOption( option ) ) {
+							throw new ParseException( String.format( "-%s applies to the whole batch", option ) );
+						}
+					}
+					if( !jobLine.hasOption( "inputFolderRoot" ) || !jobLine.hasOption( "outputFolder" ) ) {
+						throw new ParseException( "-inputFolderRoot and -outputFolder are required" );
+					}
+
+					CliClientShell shell = new CliClientShell();
+					configureShell( shell, jobLine, context );
+					res.add( shell );
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		catch( IOException e )
+		{
+			System.err.println( "Reading of the batch file failed.  Reason: " + e.getMessage() );
+			System.exit( 1 );
+		}
+		catch( ParseException e )
+		{
+			System.err.println( String.format( "Parsing of the batch file line %d failed.  Reason: %s", lineNumber, e.getMessage() ) );
+			System.exit( 1 );
+		}
+
+		return res;
+	}
+
+	/**
+	 * Splits a job line of the batch file in to the arguments, the arguments with spaces are double quoted.
+	 */
+	private static String[] splitArguments( final String text )
+	{
+		List<String> res	= new ArrayList<String>();
+		Matcher matcher		= ARGUMENT_PATTERN.matcher( text );
+		while( matcher.find() ) {
+			res.add( matcher.group( 1 ) != null? matcher.group( 1 ): matcher.group( 2 ) );
+		}
+
+		return res.toArray( new String[res.size()] );
+	}
+
 	/**
 	 * This method configures shecll with command line options
 	 */
-	private static void configureShell( final CliClientShell shell, final CommandLine line )
+	private static void configureShell( final CliClientShell shell, final CommandLine line, final ApplicationContext context )
 	{
 		// set required input root property
 		if( line.hasOption( "inputFolderRoot" ) ) {
@@ -205,14 +387,6 @@ public class CliClient
 			shell.setStopWordProcessingType( StopWordProcessingType.valueOf( line.getOptionValue("swType") ) );
 		}
 
-		// set optional config file option, if not set the one from the classpath will be used.
-		ApplicationContext context = null;
-		if( line.hasOption( "configFile" ) ) {
-			context = new FileSystemXmlApplicationContext( new String[]{line.getOptionValue( "configFile" )}, true );
-		}
-		else {
-			context = new ClassPathXmlApplicationContext( new String[]{ "glottal-config.xml" }, true );
-		}
 		shell.setContext( context );
 
 		// set optional glossary file prefix option, of not set the "glossary" will be used
@@ -230,6 +404,29 @@ public class CliClient
 			shell.setGlossaryL1Suffix(line.getOptionValue("suffixL2"));
 		}
 
+		// set optional number of content reading threads, if not set the configured one will be used
+		if( line.hasOption( "threads" ) ) {
+			shell.setParallelism( Integer.parseInt( line.getOptionValue( "threads" ) ) );
+		}
+
+		// set optional content cache folder, if not set every content file is read
+		if( line.hasOption( "cacheDir" ) ) {
+			shell.setCacheFolder( new File( line.getOptionValue( "cacheDir" ) ) );
+		}
+		else if( line.hasOption( "cache" ) ) {
+			shell.setCacheFolder( new File( line.getOptionValue( "outputFolder" ), ".cache" ) );
+		}
+
+		// set optional metrics file, if not set the metrics are not written
+		if( line.hasOption( "metrics" ) ) {
+			shell.setMetricsFile( new File( line.getOptionValue( "metrics" ) ) );
+		}
+
+		// set optional sort memory budget, if not set the configured one will be used
+		if( line.hasOption( "sortMemory" ) ) {
+			shell.setSortMemoryBudget( Long.parseLong( line.getOptionValue( "sortMemory" ) ) * 1024 * 1024 );
+		}
+
 		if (line.hasOption("internal"))
 		{
 			shell.setInInternalMode(true);
@@ -255,4 +452,13 @@ public class CliClient
 		printVersionInfo();
 		formatter.printHelp( "glottal", options );
 	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	/**
+	 * The options of the batch command line that can not be given for a job.
+	 */
+	private static final String[] BATCH_OPTIONS = { "configFile", "metrics", "batch", "batchThreads", "version" };
+
+	private static final Pattern ARGUMENT_PATTERN = Pattern.compile( "\"([^\"]*)\"|(\\S+)" );
+	//------------------------------------------------------------------------------------------------------------------
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary;
+
+import com.transparent.glossary.metrics.GlossaryMetrics;
+import org.apache.log4j.Logger;
+import org.springframework.context.ApplicationContext;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * This class builds the glossaries of several courses with one application context, so the configuration is loaded
+ * and the collators are created once for all of them. Every job is a CliClientShell configured for one course, the
+ * jobs are run batchThreads at a time. Every job gets its own processor and reads the content with its own options
+ * (see CliClientShell.getReadOptions()), so jobs of any extraction mode can run at the same time.
+ * A failed job does not stop the others, the batch fails once all of them are run.
+ */
+public class CliClientBatch
+{
+	//===================================== property assessors ==========================================================
+	public ApplicationContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Sets the context the jobs are run with, it replaces the context of every job.
+	 */
+	public void setContext( final ApplicationContext context ) {
+		this.context = context;
+	}
+
+	public List<CliClientShell> getJobs() {
+		return jobs;
+	}
+
+	public void setJobs( final List<CliClientShell> jobs ) {
+		this.jobs = jobs;
+	}
+
+	public int getBatchThreads() {
+		return batchThreads;
+	}
+
+	/**
+	 * Sets the number of glossaries built at the same time, 1 (default) builds them one after another.
+	 */
+	public void setBatchThreads( final int batchThreads ) {
+		this.batchThreads = batchThreads;
+	}
+
+	public File getMetricsFile() {
+		return metricsFile;
+	}
+
+	/**
+	 * Sets the file to write the timing and throughput metrics of the whole batch in to as JSON, see GlossaryMetrics.
+	 * The metrics are not written if not set.
+	 */
+	public void setMetricsFile( final File metricsFile ) {
+		this.metricsFile = metricsFile;
+	}
+	//===================================== property assessors ==========================================================
+
+	/**
+	 * This method builds the glossaries of all jobs.
+	 */
+	public void buildGlossaries()
+	{
+		GlossaryMetrics metrics = null;
+		if( metricsFile != null )
+		{
+			metrics = context.getBean( "glossaryMetrics", GlossaryMetrics.class );
+			metrics.reset();
+		}
+
+		for( CliClientShell job : jobs )
+		{
+			job.setContext( context );
+			job.setMetricsFile( null );
+		}
+
+		theStatusLogger.info( String.format( "Building %d glossaries", jobs.size() ) );
+		int failures = buildGlossaries( jobs );
+
+		if( metrics != null )
+		{
+			theStatusLogger.info( "Writing metrics to: " + metricsFile );
+			metrics.writeJson( metricsFile );
+		}
+
+		if( failures > 0 ) {
+			throw new RuntimeException( String.format( "%d of %d glossaries failed, please see log file", failures, jobs.size() ) );
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Builds the glossaries of the given jobs and returns the number of the failed ones.
+	 */
+	private int buildGlossaries( final List<CliClientShell> batchJobs )
+	{
+		int failures				= 0;
+		ExecutorService executor	= Executors.newFixedThreadPool( Math.max( 1, Math.min( batchThreads, batchJobs.size() ) ) );
+		try
+		{
+			List<Future<?>> results = new ArrayList<Future<?>>();
+			for( final CliClientShell job : batchJobs )
+			{
+				results.add( executor.submit( new Callable<Void>()
+				{
+					public Void call()
+					{
+						job.buildGlossary();
+						return null;
+					}
+				} ) );
+			}
+
+			for( int i = 0; i < results.size(); i++ )
+			{
+				try {
+					results.get( i ).get();
+				}
+				catch( ExecutionException e )
+				{
+					theLogger.error( String.format( "Unable to create the glossary of %s", batchJobs.get( i ).getInputDataRootFolder() ), e.getCause() );
+					failures++;
+				}
+			}
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		finally {
+			executor.shutdownNow();
+		}
+
+		return failures;
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private ApplicationContext context	= null;
+	private List<CliClientShell> jobs	= new ArrayList<CliClientShell>();
+	private int batchThreads			= 1;
+	private File metricsFile			= null;
+
+	/**
+	 * Message logger to use for "normal" operating messages.
+	 */
+	private final Logger theStatusLogger = Logger.getLogger( "normal.messages" );
+
+	private final Logger theLogger = Logger.getLogger( CliClientBatch.class );
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -3,7 +3,9 @@
  */
 package com.transparent.glossary;
 
-import com.transparent.glossary.io.GlossaryInputDataReader;
+import com.transparent.glossary.io.ReadOptions;
+import com.transparent.glossary.io.SortObjectsCache;
+import com.transparent.glossary.metrics.GlossaryMetrics;
 import com.transparent.glossary.model.SortObject;
 import com.transparent.glossary.processor.GlossaryProcessor;
 import com.transparent.glossary.processor.StopWordProcessingType;
@@ -13,7 +15,10 @@ import org.apache.log4j.Logger;
 import org.springframework.context.ApplicationContext;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * This is a simple shell to wrap glossary processor property setting and execution.
@@ -107,6 +112,68 @@ public class CliClientShell
 
 	public void setInternalListNameMapFile(final File internalListNameMapFile) {this.internalListNameMapFile = internalListNameMapFile;}
 
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads the glossary processor uses to read the content. Values less than 1 keep the number
+	 * configured for the processor.
+	 */
+	public void setParallelism( final int parallelism ) {
+		this.parallelism = parallelism;
+	}
+
+	public boolean isConcurrentGlossaries() {
+		return concurrentGlossaries;
+	}
+
+	/**
+	 * If set to true (default) the L1 glossary is sorted and written while the L2 glossary is sorted and written, each
+	 * on its own copy of the collected data, otherwise the L2 glossary is created after the L1 one. The glossaries are
+	 * the same either way.
+	 */
+	public void setConcurrentGlossaries( final boolean concurrentGlossaries ) {
+		this.concurrentGlossaries = concurrentGlossaries;
+	}
+
+	public File getCacheFolder() {
+		return cacheFolder;
+	}
+
+	/**
+	 * Sets the folder to keep the sort objects read from the content in, so the next build parses only the new and
+	 * changed content files, see SortObjectsCache. If not set the cache configured for the processor is used, if any.
+	 */
+	public void setCacheFolder( final File cacheFolder ) {
+		this.cacheFolder = cacheFolder;
+	}
+
+	public File getMetricsFile() {
+		return metricsFile;
+	}
+
+	/**
+	 * Sets the file to write the timing and throughput metrics of the build in to as JSON, see GlossaryMetrics.
+	 * The metrics are not written if not set.
+	 */
+	public void setMetricsFile( final File metricsFile ) {
+		this.metricsFile = metricsFile;
+	}
+
+	public long getSortMemoryBudget() {
+		return sortMemoryBudget;
+	}
+
+	/**
+	 * Sets the estimated heap size in bytes the collected data may take while it is sorted, larger data is sorted on
+	 * disk as it is read, see GlossaryProcessor.collectSortAndWriteGlossaries(). Values less than 1 keep the budget
+	 * configured for the processor.
+	 */
+	public void setSortMemoryBudget( final long sortMemoryBudget ) {
+		this.sortMemoryBudget = sortMemoryBudget;
+	}
+
 	//===================================== property assessors ==========================================================
 
 	/**
@@ -114,55 +181,197 @@ public class CliClientShell
 	 */
 	public void buildGlossary()
 	{
+		GlossaryMetrics metrics = null;
+		if( metricsFile != null )
+		{
+			metrics = context.getBean( "glossaryMetrics", GlossaryMetrics.class );
+			metrics.reset();
+		}
+
 		GlossaryProcessor processor	= (GlossaryProcessor)context.getBean( "glossaryProcessor" );
 		processor.setInputRootFolder( inputDataRootFolder );
 		processor.setStopWordProcessingType( stopWordProcessingType );
+		if( parallelism > 0 ) {
+			processor.setParallelism( parallelism );
+		}
+		if( cacheFolder != null )
+		{
+			SortObjectsCache sortObjectsCache = context.getBean( "sortObjectsCache", SortObjectsCache.class );
+			sortObjectsCache.setCacheFolder( cacheFolder );
+			processor.setSortObjectsCache( sortObjectsCache );
+		}
 
-		if (inInternalMode)
+		if( sortMemoryBudget > 0 ) {
+			processor.setSortMemoryBudget( sortMemoryBudget );
+		}
+		processor.setReadOptions( getReadOptions() );
+
+		theStatusLogger.info( "Reading files under: "+ inputDataRootFolder );
+		if( processor.getSortMemoryBudget() > 0 )
 		{
-			final GlossaryInputDataReader b4xReader = context.getBean( "b4xReader", GlossaryInputDataReader.class );
-			b4xReader.setApplyInternalRules( true );
-			if (internalListNameMapSelected)
+			// the data is sorted on disk as it is read, so the output files are needed up front
+			prepareOutputFiles();
+			theStatusLogger.info( String.format( "Creating glossaries as: %s and %s", theL1File, theL2File ) );
+			theStatusLogger.info( "reading, sorting and writing..." );
+			if( processor.collectSortAndWriteGlossaries( new File( theL1File ), new File( theL2File ) ) == 0 )
 			{
-				b4xReader.setApplyInternalListNameMap(true);
-				b4xReader.setInternalListNameMapFile(internalListNameMapFile);
+				theL1File = null;
+				theL2File = null;
+				theStatusLogger.error("No entries found to process. Perhaps the content folder contained just B4U files?");
 			}
 		}
-        else if ( inMarsocMode )
-        {
-            final GlossaryInputDataReader b4xReader = context.getBean( "b4xReader", GlossaryInputDataReader.class );
-            b4xReader.setApplyMarsocRules( true );
-        }
-        theStatusLogger.info( "Reading files under: "+ inputDataRootFolder );
-		List<SortObject> unsortedData = processor.collectUnsortedGlossaryData();
-
-		if (0 == unsortedData.size())
+		else
 		{
-			theStatusLogger.error("No entries found to process. Perhaps the content folder contained just B4U files?");
+			List<SortObject> unsortedData = processor.collectUnsortedGlossaryData();
+
+			if (0 == unsortedData.size())
+			{
+				theStatusLogger.error("No entries found to process. Perhaps the content folder contained just B4U files?");
+			}
+			else
+			{
+				prepareOutputFiles();
+				if( concurrentGlossaries ) {
+					buildGlossariesConcurrently( processor, unsortedData );
+				}
+				else
+				{
+					buildGlossary( processor, SortType.L1, theL1File, unsortedData );
+					buildGlossary( processor, SortType.L2, theL2File, unsortedData );
+				}
+			}
 		}
-		else
-		// create output folder if doesn't exist
+
+		if( metrics != null )
 		{
-			if (!outputDataFolder.exists()) {
-				final boolean successful = outputDataFolder.mkdirs();
-				if (!successful) {
-					theLogger.fatal("Unable to create directory: " + outputDataFolder.getPath());
+			theStatusLogger.info( "Writing metrics to: " + metricsFile );
+			metrics.writeJson( metricsFile );
+		}
+	}
+
+	/**
+	 * Returns the options the content is read with: the internal rules, with the list name map if selected, or the
+	 * MARSOC rules or the standard ones.
+	 */
+	public ReadOptions getReadOptions()
+	{
+		if( inInternalMode ) {
+			return new ReadOptions( false, true, internalListNameMapSelected? internalListNameMapFile: null );
+		}
+
+		return inMarsocMode? ReadOptions.MARSOC: ReadOptions.STANDARD;
+	}
+
+	/**
+	 * Sorts the data for the given sort type and writes the glossary file. The data list is sorted in place.
+	 */
+	private void buildGlossary( final GlossaryProcessor processor, final SortType sortType, final String glossaryFile, final List<SortObject> data )
+	{
+		sortGlossary( processor, sortType, glossaryFile, data );
+		writeGlossary( processor, sortType, glossaryFile, data );
+	}
+
+	private void sortGlossary( final GlossaryProcessor processor, final SortType sortType, final String glossaryFile, final List<SortObject> data )
+	{
+		theStatusLogger.info( String.format( "Creating %s glossary as: %s", sortType, glossaryFile ) );
+		theStatusLogger.info( "sorting..." );
+		processor.sort( data, sortType, SortDirection.ASC );
+	}
+
+	private void writeGlossary( final GlossaryProcessor processor, final SortType sortType, final String glossaryFile, final List<SortObject> data )
+	{
+		theStatusLogger.info( String.format( "writing %s file...", sortType ) );
+		processor.writeGlossary( new File( glossaryFile ), sortType, data );
+	}
+
+	/**
+	 * Creates the output folder if it doesn't exist and sets the names of the L1 and L2 glossary files in it.
+	 */
+	private void prepareOutputFiles()
+	{
+		if (!outputDataFolder.exists()) {
+			final boolean successful = outputDataFolder.mkdirs();
+			if (!successful) {
+				theLogger.fatal("Unable to create directory: " + outputDataFolder.getPath());
+			}
+		}
+
+		theL1File = String.format( "%s/%s_%s.xml", outputDataFolder.getAbsolutePath(), glossaryFilePrefix, glossaryL1Suffix );
+		theL2File = String.format( "%s/%s_%s.xml", outputDataFolder.getAbsolutePath(), glossaryFilePrefix, glossaryL2Suffix );
+	}
+
+	/**
+	 * Creates the L1 and L2 glossaries at the same time, every glossary is sorted and written by its own thread on its
+	 * own list of the data. The sequential build sorts the L2 glossary from the L1 order, so the sort objects with equal
+	 * L2 sort fields stay in the L1 order; here the L2 sort orders them by their L1 sort fields instead, which gives
+	 * the same order for the data with uniform sort fields (see GlossaryProcessor.hasUniformSortFields()). Other data is
+	 * sorted for L1 first and only the L1 glossary is written while the L2 glossary is sorted and written.
+	 * Both glossaries are finished, or failed, before this method returns.
+	 */
+	private void buildGlossariesConcurrently( final GlossaryProcessor processor, final List<SortObject> unsortedData )
+	{
+		final boolean orderTies = processor.hasUniformSortFields( unsortedData );
+		if( !orderTies ) {
+			sortGlossary( processor, SortType.L1, theL1File, unsortedData );
+		}
+
+		final List<SortObject> l2Data	= new ArrayList<SortObject>( unsortedData );
+		ExecutorService executor		= Executors.newFixedThreadPool( 2 );
+		try
+		{
+			Future<?> l1Glossary = executor.submit( new Callable<Void>()
+			{
+				public Void call()
+				{
+					if( orderTies ) {
+						sortGlossary( processor, SortType.L1, theL1File, unsortedData );
+					}
+					writeGlossary( processor, SortType.L1, theL1File, unsortedData );
+					return null;
+				}
+			} );
+			Future<?> l2Glossary = executor.submit( new Callable<Void>()
+			{
+				public Void call()
+				{
+					theStatusLogger.info( String.format( "Creating %s glossary as: %s", SortType.L2, theL2File ) );
+					theStatusLogger.info( "sorting..." );
+					processor.sort( l2Data, SortType.L2, SortDirection.ASC, orderTies? SortType.L1: null );
+					writeGlossary( processor, SortType.L2, theL2File, l2Data );
+					return null;
+				}
+			} );
+
+			// wait for both glossaries, a failed one must not leave the other one being written
+			Throwable failure = null;
+			for( Future<?> glossary : Arrays.asList( l1Glossary, l2Glossary ) )
+			{
+				try {
+					glossary.get();
+				}
+				catch( ExecutionException e )
+				{
+					theLogger.error( "Unable to create the glossaries", e.getCause() );
+					if( failure == null ) {
+						failure = e.getCause();
+					}
 				}
 			}
 
-			theL1File = String.format( "%s/%s_%s.xml", outputDataFolder.getAbsolutePath(), glossaryFilePrefix, glossaryL1Suffix );
-			theStatusLogger.info( "Creating L1 glossary as: " + theL1File );
-			theStatusLogger.info( "sorting..." );
-			processor.sort( unsortedData, SortType.L1, SortDirection.ASC );
-			theStatusLogger.info( "writing file..." );
-			processor.writeGlossary( new File( theL1File ), SortType.L1, unsortedData );
-
-			theL2File = String.format( "%s/%s_%s.xml", outputDataFolder.getAbsolutePath(), glossaryFilePrefix, glossaryL2Suffix );
-			theStatusLogger.info( "Creating L2 glossary as: " + theL2File );
-			theStatusLogger.info( "sorting..." );
-			processor.sort( unsortedData, SortType.L2, SortDirection.ASC );
-			theStatusLogger.info( "writing file..." );
-			processor.writeGlossary( new File( theL2File ), SortType.L2, unsortedData );
+			if( failure instanceof RuntimeException ) {
+				throw (RuntimeException)failure;
+			}
+			if( failure != null ) {
+				throw new RuntimeException( failure );
+			}
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		finally {
+			executor.shutdownNow();
 		}
 	}
 
@@ -186,6 +395,14 @@ public class CliClientShell
         glossaryL2Suffix = DEFAULT_L2_SUFFIX;
         stopWordProcessingType = DEFAULT_STOP_WORD_TYPE;
         inMarsocMode = false;
+        inInternalMode = false;
+        internalListNameMapSelected = false;
+        internalListNameMapFile = null;
+        parallelism = 0;
+        concurrentGlossaries = true;
+        cacheFolder = null;
+        metricsFile = null;
+        sortMemoryBudget = 0;
         theL1File = null;
         theL2File = null;
     }
@@ -203,6 +420,11 @@ public class CliClientShell
 	private boolean inInternalMode = false;
 	private boolean internalListNameMapSelected = false;
 	private File internalListNameMapFile = null;
+	private int parallelism				= 0;
+	private boolean concurrentGlossaries	= true;
+	private File cacheFolder			= null;
+	private File metricsFile			= null;
+	private long sortMemoryBudget		= 0;
 
     /**
      * Full path to the generated L1 file.
@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.io;
+
+import com.transparent.glossary.io.util.XhtmlStripper;
+import com.transparent.glossary.metrics.GlossaryMetrics;
+import com.transparent.glossary.model.FieldSchema;
+import com.transparent.glossary.model.SortObject;
+import com.transparent.glossary.sort.CollatorDataHelper;
+import org.apache.log4j.Logger;
+
+import javax.xml.xpath.XPathExpressionException;
+import java.io.File;
+import java.util.*;
+
+/**
+ * Base class of the content readers (b4x, tt, etc) that produce a collection of sortable objects based on the reader's
+ * rules. The rules are set as XPath expressions, the concrete reader decides how the expressions are evaluated against
+ * the content. This class builds the sort objects out of the values of the expressions, so all readers produce the same
+ * sort objects for the same content.
+ * @see com.transparent.glossary.model.SortObject
+ */
+public abstract class AbstractGlossaryInputDataReader implements ISortObjectsReader
+{
+	//===================================== property assessors ==========================================================
+	public String getLanguageCodeL1XPath() {
+		return languageCodeL1XPath;
+	}
+
+	/**
+	 * Sets the XPath to query L1 code from the input content
+	 */
+	public void setLanguageCodeL1XPath( final String languageCodeL1XPath ) {
+		this.languageCodeL1XPath = languageCodeL1XPath;
+		registerExpression( languageCodeL1XPath );
+	}
+
+	public String getLanguageCodeL2XPath() {
+		return languageCodeL2XPath;
+	}
+
+	/**
+	 * Sets the XPath to query L2 code from the input content
+	 */
+	public void setLanguageCodeL2XPath( final String languageCodeL2XPath ) {
+		this.languageCodeL2XPath = languageCodeL2XPath;
+		registerExpression( languageCodeL2XPath );
+	}
+
+	public String getDataObjectCollectionXPath() {
+		return dataObjectCollectionXPath;
+	}
+
+	/**
+	 * Sets the XPath to query the collection of the XML elements that will be used to create sort objects
+	 */
+	public void setDataObjectCollectionXPath( final String dataObjectCollectionXPath ) {
+		this.dataObjectCollectionXPath = dataObjectCollectionXPath;
+		registerExpression( dataObjectCollectionXPath );
+	}
+
+	public List<String> getSortFieldsL1XPaths() {
+		return sortFieldsL1XPaths;
+	}
+
+	/**
+	 * Sets the list of XPath expressions to query sortable content for L1 language. These XPath expressions are
+	 * relative to the elements retrieved by the XPath set by setDataObjectCollectionXPath()
+	 */
+	public void setSortFieldsL1XPaths( final List<String> sortFieldsL1XPaths ) {
+		this.sortFieldsL1XPaths = sortFieldsL1XPaths;
+		registerExpressions( sortFieldsL1XPaths );
+	}
+
+	public List<String> getSortFieldsL2XPaths() {
+		return sortFieldsL2XPaths;
+	}
+
+	/**
+	 * Sets the list of XPath expressions to query sortable content for L2 language. These XPath expressions are
+	 * relative to the elements retrieved by the XPath set by setDataObjectCollectionXPath()
+	 */
+	public void setSortFieldsL2XPaths( final List<String> sortFieldsL2XPaths ) {
+		this.sortFieldsL2XPaths = sortFieldsL2XPaths;
+		registerExpressions( sortFieldsL2XPaths );
+	}
+
+	public Map<String, String> getFieldsToIncludeMap() {
+		return fieldsToIncludeXPaths;
+	}
+
+	/**
+	 * Sets the list of XPath expressions to query content for the fields that need to be included in the result.
+	 */
+	public void setFieldsToIncludeMap( final Map<String, String> fieldsToIncludeXPaths ) {
+		this.fieldsToIncludeXPaths = fieldsToIncludeXPaths;
+		fieldSchema = FieldSchema.of( fieldsToIncludeXPaths.keySet() );
+		registerExpressions( fieldsToIncludeXPaths.values() );
+	}
+
+	public CollatorDataHelper getCollatorHelper() {
+		return collatorHelper;
+	}
+
+	public void setCollatorHelper( final CollatorDataHelper collatorHelper ) {
+		this.collatorHelper = collatorHelper;
+	}
+
+    public String getSideOneSoundUrlXPath() {
+        return sideOneSoundUrlXPath;
+    }
+
+    public void setSideOneSoundUrlXPath( final String sideOneSoundUrlXPath )
+    {
+        this.sideOneSoundUrlXPath = sideOneSoundUrlXPath;
+        registerExpression( sideOneSoundUrlXPath );
+    }
+
+    public String getSideTwoSoundUrlXPath() {
+        return sideTwoSoundUrlXPath;
+    }
+
+    public void setSideTwoSoundUrlXPath( final String sideTwoSoundUrlXPath )
+    {
+        this.sideTwoSoundUrlXPath = sideTwoSoundUrlXPath;
+        registerExpression( sideTwoSoundUrlXPath );
+    }
+
+    public String getNameXPath() {
+        return nameXPath;
+    }
+
+    public void setNameXPath( final String nameXPath )
+    {
+        this.nameXPath = nameXPath;
+        registerExpression( nameXPath );
+    }
+
+	public String getSideTwoPartOfSpeechXPath() {
+		return sideTwoPartOfSpeechXPath;
+	}
+
+	public void setSideTwoPartOfSpeechXPath(final String sideTwoPartOfSpeechXPath)
+	{
+		this.sideTwoPartOfSpeechXPath = sideTwoPartOfSpeechXPath;
+		registerExpression( sideTwoPartOfSpeechXPath );
+	}
+
+	public GlossaryMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the metrics to record the time, the files, the bytes and the sort objects read in, none are recorded if not
+	 * set.
+	 */
+	public void setMetrics( final GlossaryMetrics metrics ) {
+		this.metrics = metrics;
+	}
+	//===================================== property assessors ==========================================================
+
+	/**
+	 * Reads the given input file with the standard options.
+	 * @see com.transparent.glossary.model.SortObject
+	 */
+	public Collection<SortObject> readSortObjects( final File inputFile ) {
+		return readSortObjects( inputFile, ReadOptions.STANDARD );
+	}
+
+	/**
+	 * Reads the given input file and produces a collection of the sortable objects. The reader is configured once,
+	 * everything specific to the call is passed on the stack, so this method can be called for different files and
+	 * options from several threads at once.
+	 * @see com.transparent.glossary.model.SortObject
+	 */
+	public Collection<SortObject> readSortObjects( final File inputFile, final ReadOptions options )
+	{
+		Collection<SortObject> res	= new ArrayList<SortObject>();
+		long start					= System.nanoTime();
+
+		try
+		{
+			theStatusLogger.info( String.format( "Reading sort objects from file: %s", inputFile.getAbsolutePath() ) );
+
+			res.addAll( parseSortObjects( inputFile, options ) );
+
+			if( metrics != null )
+			{
+				metrics.addTime( GlossaryMetrics.READ, start );
+				metrics.increment( GlossaryMetrics.FILES_READ, 1 );
+				metrics.increment( GlossaryMetrics.BYTES_READ, inputFile.length() );
+				metrics.increment( GlossaryMetrics.SORT_OBJECTS_READ, res.size() );
+			}
+		}
+		catch( Exception e )
+		{
+			String msg = String.format( "Error while reading sort objects from file: %s", inputFile.getAbsolutePath() );
+			logger.error( msg, e );
+			throw new RuntimeException( e );
+		}
+
+		return res;
+	}
+
+	/**
+	 * The key describes the reader class and all its XPath expressions.
+	 */
+	public String getConfigurationKey()
+	{
+		StringBuilder res = new StringBuilder( getClass().getName() );
+		for( Object value : new Object[]{ languageCodeL1XPath, languageCodeL2XPath, dataObjectCollectionXPath,
+										  sideOneSoundUrlXPath, sideTwoSoundUrlXPath, nameXPath, sideTwoPartOfSpeechXPath,
+										  sortFieldsL1XPaths, sortFieldsL2XPaths, fieldsToIncludeXPaths } )
+		{
+			res.append( '\n' ).append( value );
+		}
+
+		return res.toString();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Values of the XPath expressions evaluated against one of the elements retrieved by the XPath set by
+	 * setDataObjectCollectionXPath().
+	 */
+	protected interface ObjectValues
+	{
+		/**
+		 * Returns the string value of the given expression, an empty string if the expression selects nothing.
+		 */
+		String get( String xPathExpression ) throws XPathExpressionException;
+	}
+
+	/**
+	 * Parses the given content file and produces sortable objects, see buildSortObject().
+	 */
+	protected abstract Collection<SortObject> parseSortObjects( File inputFile, ReadOptions options ) throws Exception;
+
+	/**
+	 * Called for every XPath expression set on this reader, so a concrete reader can prepare (and validate) the
+	 * expression before any content is read. The expression can be null.
+	 */
+	protected abstract void registerExpression( String xPathExpression );
+
+	/**
+	 * Returns every expression that is evaluated against the elements retrieved by the XPath set by
+	 * setDataObjectCollectionXPath().
+	 */
+	protected Set<String> getObjectXPaths()
+	{
+		Set<String> res = new LinkedHashSet<String>();
+		res.addAll( sortFieldsL1XPaths );
+		res.addAll( sortFieldsL2XPaths );
+		res.addAll( fieldsToIncludeXPaths.values() );
+		for( String xPathExpression : new String[]{ nameXPath, sideOneSoundUrlXPath, sideTwoSoundUrlXPath, sideTwoPartOfSpeechXPath } )
+		{
+			if( xPathExpression != null ) {
+				res.add( xPathExpression );
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Creates the strategy the sort objects of one content file are built with, see buildSortObject(). The strategy
+	 * works out the answers that are the same for every card of the file once.
+	 * @param name value of the name XPath for the whole document
+	 * @param options the options the file is read with
+	 */
+	protected ExtractionStrategy createExtractionStrategy( final String name, final File inputFile, final ReadOptions options )
+	{
+		if ( options.isApplyInternalRules() )
+		{
+			return new InternalExtractionStrategy( name, inputFile );
+		}
+		else if ( options.isApplyMarsocRules() )
+		{
+			return new MarsocExtractionStrategy( theStatusLogger, inputFile );
+		}
+		else
+		{
+			return new StandardExtractionStrategy( inputFile );
+		}
+	}
+
+	/**
+	 * Builds a sort object out of the values of the expressions of one content element.
+	 * @param strategy the strategy of the file the element is read from, see createExtractionStrategy()
+	 * @param options the options the file is read with
+	 */
+	protected SortObject buildSortObject( final ObjectValues values,
+										  final String langCodeL1,
+										  final String langCodeL2,
+										  final ExtractionStrategy strategy,
+										  final ReadOptions options ) throws XPathExpressionException
+	{
+		SortObject obj = new SortObject( fieldSchema );
+		obj.setLanguageCodeL1( langCodeL1 );
+		obj.setLanguageCodeL2( langCodeL2 );
+
+
+        if ( null != nameXPath )
+        {
+            obj.setReferencedBy( strategy.determineUnitNumber() );
+            obj.setPartOfSpeech( strategy.determinePartOfSpeech( options.isApplyInternalRules()? queryForPartOfSpeech( values ): null ) );
+
+            if  ( null != sideOneSoundUrlXPath )
+            {
+                final String sideOneSoundURL = queryForSoundUrl( values, sideOneSoundUrlXPath );
+                obj.setSideOneSoundFile( strategy.buildSoundPath( sideOneSoundURL ) );
+            }
+
+            if ( null != sideTwoSoundUrlXPath )
+            {
+                final String sideTwoSoundURL = queryForSoundUrl( values, sideTwoSoundUrlXPath );
+                obj.setSideTwoSoundFile( strategy.buildSoundPath( sideTwoSoundURL ) );
+            }
+        }
+
+        // add sort fields content for L1
+		for( String sortXpath : sortFieldsL1XPaths )
+		{
+			final String dirty = values.get( sortXpath ).trim();
+            final String clean = stripXhtml( dirty );
+			obj.getSortFieldsL1().add( clean );
+		}
+
+		// add sort fields content for L2
+		for( String sortXpath : sortFieldsL2XPaths )
+		{
+			final String dirty = values.get( sortXpath ).trim();
+            final String clean = stripXhtml( dirty );
+			obj.getSortFieldsL2().add( clean );
+		}
+
+        if ( null != nameXPath )
+        {
+            final String rawB4xName = values.get( nameXPath ).trim();
+            doubleCheckSortFields( obj.getSortFieldsL1(), rawB4xName );
+            doubleCheckSortFields( obj.getSortFieldsL2(), rawB4xName );
+        }
+
+		// collect information about fields that needed to be included in the output
+		for( String key : fieldsToIncludeXPaths.keySet() )
+		{
+            final String dirty = values.get( fieldsToIncludeXPaths.get( key ) ).trim();
+            final String clean = stripXhtml( dirty );
+            obj.getFieldsToIncludeMap().put( key, clean );
+		}
+
+		logger.info( String.format( "Processed sort object: %s", obj.toString() ) );
+
+		return obj;
+	}
+
+    /**
+     * Calls registerExpression() for each of the given expressions.
+     */
+    private void registerExpressions( final Collection<String> xPathExpressions )
+    {
+        for( String xPathExpression : xPathExpressions ) {
+            registerExpression( xPathExpression );
+        }
+    }
+
+    private void doubleCheckSortFields( final List<String> fields, final String b4xName )
+    {
+        for( final String field : fields )
+        {
+            if ( (null == field) || field.isEmpty() )
+            {
+                final StringBuilder builder = new StringBuilder( b4xName ).append( " contains a card with an empty phrase!" );
+                theStatusLogger.error( builder.toString() );
+            }
+        }
+    }
+
+
+    /**
+     * Strip any XHMTL that might be part of the string.  We expect the XHTML to be wrapped in a CDATA tag.
+     * The CDATA wrapper, the tags and the entity names are removed in one pass, see XhtmlStripper.
+     * @param dirty string that contains the XHTML to be removed.
+     * @return the cleaned string containing only the non-XHTML content.
+     */
+    private String stripXhtml( final String dirty ) {
+        return XhtmlStripper.strip( dirty );
+    }
+
+    /**
+     * Queries the part of speech for the internal rules, "unclassified" is used if the part of speech can't be queried.
+     */
+    private String queryForPartOfSpeech( final ObjectValues values )
+    {
+        if ( null == sideTwoPartOfSpeechXPath ) {
+            return "unclassified";
+        }
+
+        try {
+            return values.get( sideTwoPartOfSpeechXPath ).trim();
+        }
+        catch( XPathExpressionException e )
+        {
+            return "unclassified";
+        }
+    }
+
+    private String queryForSoundUrl( final ObjectValues values, final String xPathExpression ) throws XPathExpressionException
+    {
+        String soundURL = values.get( xPathExpression ).trim();
+        if ( logger.isDebugEnabled() )
+        {
+            logger.debug( "soundURL = " + soundURL );
+        }
+        return soundURL;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+	private String languageCodeL1XPath			= null;
+	private String languageCodeL2XPath			= null;
+	private String dataObjectCollectionXPath	= null;
+    private String sideOneSoundUrlXPath = null;
+    private String sideTwoSoundUrlXPath = null;
+    private String nameXPath = null;
+	private String sideTwoPartOfSpeechXPath = null;
+
+	private List<String> sortFieldsL1XPaths				= new ArrayList<String>();
+	private List<String> sortFieldsL2XPaths				= new ArrayList<String>();
+	private Map<String, String> fieldsToIncludeXPaths	= new HashMap<String, String>();
+	private FieldSchema fieldSchema						= FieldSchema.EMPTY;
+
+	private CollatorDataHelper collatorHelper = null;
+	private GlossaryMetrics metrics = null;
+
+	private Logger logger = Logger.getLogger( this.getClass() );
+
+    /**
+     * Message logger to use for "normal" operating messages.
+     */
+    private final Logger theStatusLogger = Logger.getLogger( "normal.messages" );
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,633 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.io;
+
+import com.transparent.glossary.metrics.GlossaryMetrics;
+import com.transparent.glossary.model.SortObject;
+import com.transparent.glossary.sort.CollatorData;
+import com.transparent.glossary.sort.CollatorDataHelper;
+import com.transparent.glossary.sort.SortDirection;
+import com.transparent.glossary.sort.SortType;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.text.Collator;
+import java.util.*;
+
+/**
+ * This class sorts the sort objects of a glossary on disk, so the glossary doesn't have to fit in to the memory.
+ * The sort objects are added one at a time with the collation keys of their sort fields. Whenever the estimated size
+ * of the added objects reaches the memory budget they are sorted and written to a temporary file as a sorted run;
+ * the iterator merges the runs, only one sort object per run is kept in memory.
+ * The order is the same as the one of the stable in-memory sort of the added objects (see GlossaryComparator and
+ * CollationKeySorter): the collation keys are compared as byte arrays, which gives the same result as comparing the
+ * keys, and the equal objects keep the order they were added in. The objects can be grouped before they are sorted
+ * (see setGroupComparator()) and the ones with equal sort fields can be ordered by the sort fields of another sort
+ * type, the same as the stable sort of data sorted by that type first orders them (see setTieSortType()).
+ * The in-memory sort compares only the common sort fields of two objects, so the order of objects with different
+ * numbers of sort fields or different language codes depends on the sort algorithm there and can't be reproduced.
+ * Here such objects are ordered by their common sort fields and then by the number of the sort fields, fewer first,
+ * which orders every set of objects the same way; see GlossaryProcessor.hasUniformSortFields().
+ * The user data of the sort objects is not written to the runs.
+ */
+public class ExternalGlossarySorter
+{
+	//===================================== property assessors ==========================================================
+	public CollatorDataHelper getCollatorHelper() {
+		return collatorHelper;
+	}
+
+	public void setCollatorHelper( final CollatorDataHelper collatorHelper ) {
+		this.collatorHelper = collatorHelper;
+	}
+
+	public SortType getSortType() {
+		return sortType;
+	}
+
+	public void setSortType( final SortType sortType ) {
+		this.sortType = sortType;
+	}
+
+	public SortDirection getSortDirection() {
+		return sortDirection;
+	}
+
+	/**
+	 * Sets the direction of the sort type, the tie sort type always orders the objects ascending, the same as
+	 * GlossaryComparator.setTieSortType() does.
+	 */
+	public void setSortDirection( final SortDirection sortDirection ) {
+		this.sortDirection = sortDirection;
+	}
+
+	public SortType getTieSortType() {
+		return tieSortType;
+	}
+
+	/**
+	 * Sets the sort type the objects with equal sort fields are ordered by, none if not set.
+	 */
+	public void setTieSortType( final SortType tieSortType ) {
+		this.tieSortType = tieSortType;
+	}
+
+	public Comparator<SortObject> getGroupComparator() {
+		return groupComparator;
+	}
+
+	/**
+	 * Sets the comparator the objects are ordered by before their sort fields are compared, e.g.
+	 * GlossaryOutputWriter.getLetterComparator(). The objects are not grouped if not set.
+	 */
+	public void setGroupComparator( final Comparator<SortObject> groupComparator ) {
+		this.groupComparator = groupComparator;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Sets the estimated heap size in bytes the added objects may take before they are written to a run.
+	 */
+	public void setMemoryBudget( final long memoryBudget ) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	public File getTempFolder() {
+		return tempFolder;
+	}
+
+	/**
+	 * Sets the folder the runs are written in, the default temporary folder if not set.
+	 */
+	public void setTempFolder( final File tempFolder ) {
+		this.tempFolder = tempFolder;
+	}
+
+	public int getMaxMergeRuns() {
+		return maxMergeRuns;
+	}
+
+	/**
+	 * Sets the number of runs merged at once. If there are more runs, they are merged in to larger runs first.
+	 */
+	public void setMaxMergeRuns( final int maxMergeRuns ) {
+		this.maxMergeRuns = maxMergeRuns;
+	}
+
+	public GlossaryMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the metrics to record the number of runs and the bytes written to them in, none are recorded if not set.
+	 */
+	public void setMetrics( final GlossaryMetrics metrics ) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Returns the number of runs written so far.
+	 */
+	public int getRunCount() {
+		return runCount;
+	}
+	//===================================== property assessors ==========================================================
+
+	/**
+	 * Adds the sort object, the objects added so far are written to a run if they take more than the memory budget.
+	 */
+	public void add( final SortObject sortObject )
+	{
+		if( merged ) {
+			throw new IllegalStateException( "The sort objects can't be added after they are merged" );
+		}
+
+		KeyedEntry entry = new KeyedEntry( added++, createKeys( sortObject, sortType ),
+										   tieSortType != null? createKeys( sortObject, tieSortType ): NO_KEYS, sortObject );
+		buffer.add( entry );
+		bufferSize += estimateSize( entry );
+
+		if( bufferSize >= memoryBudget ) {
+			spill();
+		}
+	}
+
+	/**
+	 * Returns the added sort objects in the sorted order. The objects are sorted in memory if none were written to a
+	 * run, otherwise the remaining objects are written to a run as well and the runs are merged as they are iterated.
+	 * This method can be called once, no objects can be added afterwards.
+	 */
+	public Iterator<SortObject> iterator()
+	{
+		if( merged ) {
+			throw new IllegalStateException( "The sort objects are merged already" );
+		}
+		merged = true;
+
+		final Iterator<KeyedEntry> entries;
+		if( runs.isEmpty() )
+		{
+			Collections.sort( buffer, entryComparator );
+			entries = buffer.iterator();
+		}
+		else
+		{
+			if( !buffer.isEmpty() ) {
+				spill();
+			}
+
+			int mergedRunCount = Math.max( maxMergeRuns, 2 );
+			while( runs.size() > mergedRunCount )
+			{
+				List<Run> mergedRuns = new ArrayList<Run>( runs.subList( 0, mergedRunCount ) );
+				runs.subList( 0, mergedRunCount ).clear();
+
+				MergeIterator mergeIterator = new MergeIterator( mergedRuns );
+				try {
+					writeRun( mergeIterator );
+				}
+				finally
+				{
+					mergeIterator.close();
+					deleteRuns( mergedRuns );
+				}
+			}
+
+			merge	= new MergeIterator( runs );
+			entries	= merge;
+		}
+
+		return new Iterator<SortObject>()
+		{
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			public SortObject next() {
+				return entries.next().sortObject;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Deletes the runs, the objects can't be iterated afterwards.
+	 */
+	public void close()
+	{
+		if( merge != null )
+		{
+			merge.close();
+			merge = null;
+		}
+		deleteRuns( runs );
+		runs.clear();
+		buffer.clear();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Sort object with the collation keys of its sort fields and the order it was added in.
+	 */
+	private static final class KeyedEntry
+	{
+		KeyedEntry( final long sequence, final byte[][] keys, final byte[][] tieKeys, final SortObject sortObject )
+		{
+			this.sequence	= sequence;
+			this.keys		= keys;
+			this.tieKeys	= tieKeys;
+			this.sortObject	= sortObject;
+		}
+
+		final long sequence;
+		final byte[][] keys;
+		final byte[][] tieKeys;
+		final SortObject sortObject;
+	}
+
+	/**
+	 * Orders the entries by the group, the keys, the tie keys and the order they were added in. The ties are in
+	 * ascending order whatever the sort direction.
+	 */
+	private final class EntryComparator implements Comparator<KeyedEntry>
+	{
+		public int compare( final KeyedEntry e1, final KeyedEntry e2 )
+		{
+			int res = groupComparator != null? groupComparator.compare( e1.sortObject, e2.sortObject ): 0;
+			if( res == 0 )
+			{
+				int sortDir = sortDirection == SortDirection.ASC? 1: -1;
+				if( (res = sortDir * compareKeys( e1.keys, e2.keys )) == 0 && (res = compareKeys( e1.tieKeys, e2.tieKeys )) == 0 ) {
+					res = e1.sequence < e2.sequence? -1: e1.sequence > e2.sequence? 1: 0;
+				}
+			}
+
+			return res;
+		}
+	}
+
+	/**
+	 * The file of a run and the number of entries in it.
+	 */
+	private static final class Run
+	{
+		Run( final File file, final long count )
+		{
+			this.file	= file;
+			this.count	= count;
+		}
+
+		final File file;
+		final long count;
+	}
+
+	/**
+	 * Reads the entries of a run one at a time, the head is the entry read last, null once the run is read.
+	 */
+	private final class RunReader
+	{
+		RunReader( final Run run ) throws IOException
+		{
+			this.in			= new DataInputStream( new BufferedInputStream( new FileInputStream( run.file ), 65536 ) );
+			this.remaining	= run.count;
+			advance();
+		}
+
+		void advance() throws IOException
+		{
+			if( remaining > 0 )
+			{
+				remaining--;
+				head = readEntry( in );
+			}
+			else
+			{
+				head = null;
+				close();
+			}
+		}
+
+		void close()
+		{
+			try {
+				in.close();
+			}
+			catch( IOException e ) {
+				logger.warn( "Unable to close the run", e );
+			}
+		}
+
+		private final DataInputStream in;
+		private long remaining;
+		KeyedEntry head = null;
+	}
+
+	/**
+	 * Merges the entries of the runs in the sorted order.
+	 */
+	private final class MergeIterator implements Iterator<KeyedEntry>
+	{
+		MergeIterator( final List<Run> runs )
+		{
+			readers = new PriorityQueue<RunReader>( Math.max( runs.size(), 1 ), new Comparator<RunReader>()
+			{
+				public int compare( final RunReader r1, final RunReader r2 ) {
+					return entryComparator.compare( r1.head, r2.head );
+				}
+			} );
+
+			try
+			{
+				for( Run run : runs )
+				{
+					RunReader reader = new RunReader( run );
+					opened.add( reader );
+					if( reader.head != null ) {
+						readers.add( reader );
+					}
+				}
+			}
+			catch( IOException e )
+			{
+				close();
+				logger.error( e );
+				throw new RuntimeException( e );
+			}
+		}
+
+		public boolean hasNext() {
+			return !readers.isEmpty();
+		}
+
+		public KeyedEntry next()
+		{
+			RunReader reader = readers.poll();
+			if( reader == null ) {
+				throw new NoSuchElementException();
+			}
+
+			KeyedEntry res = reader.head;
+			try {
+				reader.advance();
+			}
+			catch( IOException e )
+			{
+				logger.error( e );
+				throw new RuntimeException( e );
+			}
+			if( reader.head != null ) {
+				readers.add( reader );
+			}
+
+			return res;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		void close()
+		{
+			for( RunReader reader : opened ) {
+				reader.close();
+			}
+			readers.clear();
+		}
+
+		private final PriorityQueue<RunReader> readers;
+		private final List<RunReader> opened = new ArrayList<RunReader>();
+	}
+
+	/**
+	 * Sorts the buffered entries and writes them to a run.
+	 */
+	private void spill()
+	{
+		Collections.sort( buffer, entryComparator );
+		Run run = writeRun( buffer.iterator() );
+		logger.info( String.format( "Wrote %s run of %d sort objects: %s", sortType, run.count, run.file.getAbsolutePath() ) );
+
+		buffer.clear();
+		bufferSize = 0;
+	}
+
+	/**
+	 * Writes the entries to a new run in the given order and adds the run to the runs.
+	 */
+	private Run writeRun( final Iterator<KeyedEntry> entries )
+	{
+		try
+		{
+			File file	= File.createTempFile( "glossary-" + sortType + "-", ".run", tempFolder );
+			long count	= 0;
+			try
+			{
+				DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ), 65536 ) );
+				try
+				{
+					while( entries.hasNext() )
+					{
+						writeEntry( out, entries.next() );
+						count++;
+					}
+				}
+				finally {
+					out.close();
+				}
+			}
+			catch( IOException e )
+			{
+				file.delete();
+				throw e;
+			}
+
+			Run res = new Run( file, count );
+			runs.add( res );
+			runCount++;
+			if( metrics != null )
+			{
+				metrics.increment( GlossaryMetrics.SORT_RUNS, 1 );
+				metrics.increment( GlossaryMetrics.SORT_BYTES_SPILLED, file.length() );
+			}
+
+			return res;
+		}
+		catch( IOException e )
+		{
+			logger.error( e );
+			throw new RuntimeException( e );
+		}
+	}
+
+	private static void writeEntry( final DataOutput out, final KeyedEntry entry ) throws IOException
+	{
+		out.writeLong( entry.sequence );
+		writeKeys( out, entry.keys );
+		writeKeys( out, entry.tieKeys );
+		SortObjectsCache.writeSortObject( out, entry.sortObject );
+	}
+
+	private static KeyedEntry readEntry( final DataInput in ) throws IOException
+	{
+		long sequence		= in.readLong();
+		byte[][] keys		= readKeys( in );
+		byte[][] tieKeys	= readKeys( in );
+		return new KeyedEntry( sequence, keys, tieKeys, SortObjectsCache.readSortObject( in ) );
+	}
+
+	private static void writeKeys( final DataOutput out, final byte[][] keys ) throws IOException
+	{
+		out.writeInt( keys.length );
+		for( byte[] key : keys )
+		{
+			out.writeInt( key.length );
+			out.write( key );
+		}
+	}
+
+	private static byte[][] readKeys( final DataInput in ) throws IOException
+	{
+		byte[][] res = new byte[in.readInt()][];
+		for( int i = 0; i < res.length; i++ )
+		{
+			res[i] = new byte[in.readInt()];
+			in.readFully( res[i] );
+		}
+
+		return res;
+	}
+
+	private void deleteRuns( final List<Run> deletedRuns )
+	{
+		for( Run run : deletedRuns )
+		{
+			if( !run.file.delete() && run.file.exists() ) {
+				logger.warn( String.format( "Unable to delete the run: %s", run.file.getAbsolutePath() ) );
+			}
+		}
+	}
+
+	/**
+	 * Returns the collation keys of the sort fields of the given sort type as byte arrays, the keys of the same collator
+	 * compare as byte arrays the same way as CollationKey.compareTo() compares them.
+	 */
+	private byte[][] createKeys( final SortObject sortObject, final SortType type )
+	{
+		String languageCode			= type == SortType.L1? sortObject.getLanguageCodeL1(): sortObject.getLanguageCodeL2();
+		CollatorData collatorData	= collatorHelper.getCollatorData( languageCode );
+		if( collatorData == null ) {
+			throw new RuntimeException( "No collator data found for language: "+languageCode );
+		}
+
+		List<String> sortFields	= type == SortType.L1? sortObject.getSortFieldsL1(): sortObject.getSortFieldsL2();
+		Collator collator		= collatorData.getCollator( false );
+		byte[][] res			= new byte[sortFields.size()][];
+		for( int i = 0; i < res.length; i++ ) {
+			res[i] = collator.getCollationKey( sortFields.get( i ) ).toByteArray();
+		}
+
+		return res;
+	}
+
+	/**
+	 * Compares the common keys the same way as GlossaryComparator compares the sort fields, if they are equal the
+	 * fewer keys come first, so the order doesn't depend on the order the objects are compared in.
+	 */
+	private static int compareKeys( final byte[][] keys1, final byte[][] keys2 )
+	{
+		int size = Math.min( keys1.length, keys2.length );
+		for( int i = 0; i < size; i++ )
+		{
+			byte[] key1	= keys1[i];
+			byte[] key2	= keys2[i];
+			int length	= Math.min( key1.length, key2.length );
+			for( int j = 0; j < length; j++ )
+			{
+				if( key1[j] != key2[j] ) {
+					return (key1[j] & 0xFF) - (key2[j] & 0xFF);
+				}
+			}
+			if( key1.length != key2.length ) {
+				return key1.length - key2.length;
+			}
+		}
+
+		return keys1.length - keys2.length;
+	}
+
+	/**
+	 * Returns a rough estimate of the heap the entry takes: the keys, the strings of the sort object and the fixed size
+	 * of the entry, the sort object and its collections.
+	 */
+	private static long estimateSize( final KeyedEntry entry )
+	{
+		long res = ENTRY_SIZE;
+		for( byte[] key : entry.keys ) {
+			res += ARRAY_SIZE + key.length;
+		}
+		for( byte[] key : entry.tieKeys ) {
+			res += ARRAY_SIZE + key.length;
+		}
+
+		SortObject sortObject = entry.sortObject;
+		for( String field : sortObject.getSortFieldsL1() ) {
+			res += estimateSize( field );
+		}
+		for( String field : sortObject.getSortFieldsL2() ) {
+			res += estimateSize( field );
+		}
+		for( String field : sortObject.getFieldsToIncludeMap().values() ) {
+			res += estimateSize( field );
+		}
+		res += estimateSize( sortObject.getSideOneSoundFile() ) + estimateSize( sortObject.getSideTwoSoundFile() )
+			   + estimateSize( sortObject.getReferencedBy() ) + estimateSize( sortObject.getPartOfSpeech() );
+
+		return res;
+	}
+
+	private static long estimateSize( final String s ) {
+		return s != null? STRING_SIZE + 2L * s.length(): 0;
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static final byte[][] NO_KEYS	= new byte[0][];
+
+	/**
+	 * Estimated sizes of the fixed parts of an entry, of an array and of a string without the content.
+	 */
+	private static final long ENTRY_SIZE	= 192;
+	private static final long ARRAY_SIZE	= 16;
+	private static final long STRING_SIZE	= 40;
+
+	private CollatorDataHelper collatorHelper		= null;
+	private SortType sortType						= SortType.L1;
+	private SortDirection sortDirection				= SortDirection.ASC;
+	private SortType tieSortType					= null;
+	private Comparator<SortObject> groupComparator	= null;
+	private long memoryBudget						= 64L * 1024 * 1024;
+	private File tempFolder							= null;
+	private int maxMergeRuns						= 64;
+	private GlossaryMetrics metrics					= null;
+
+	private final Comparator<KeyedEntry> entryComparator	= new EntryComparator();
+	private final List<KeyedEntry> buffer					= new ArrayList<KeyedEntry>();
+	private final List<Run> runs							= new ArrayList<Run>();
+	private long bufferSize									= 0;
+	private long added										= 0;
+	private int runCount									= 0;
+	private boolean merged									= false;
+	private MergeIterator merge								= null;
+
+	private Logger logger = Logger.getLogger( this.getClass() );
+	//------------------------------------------------------------------------------------------------------------------
+}
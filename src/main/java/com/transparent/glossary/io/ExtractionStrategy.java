@@ -4,6 +4,8 @@ import org.w3c.dom.Node;
 
 /**
 Strategy Pattern: we need different data extraction logic based on the content layout being processed.
+A strategy is created once per content file, the answers that are the same for every card of the file are worked out
+when it is created; only determinePartOfSpeech() can depend on the card.
  */
 public interface ExtractionStrategy
 {
@@ -22,8 +24,9 @@ public interface ExtractionStrategy
 
     /**
      * Figures out the part-of-speech the word/phrases has been labeled with.
+     * @param cardPartOfSpeech part of speech the card is labeled with, null if the content isn't read with the internal rules.
      * @return the part of speech label.
      */
-    String determinePartOfSpeech();
+    String determinePartOfSpeech( final String cardPartOfSpeech );
 
 }
@@ -3,6 +3,7 @@
  */
 package com.transparent.glossary.io;
 
+import com.transparent.glossary.metrics.GlossaryMetrics;
 import com.transparent.glossary.model.*;
 import com.transparent.glossary.sort.CollatorData;
 import com.transparent.glossary.sort.CollatorDataHelper;
@@ -14,6 +15,10 @@ import org.apache.log4j.Logger;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -108,6 +113,30 @@ public class GlossaryOutputWriter
 	public void setVersionProp( final Properties versionProp ) {
 		this.versionProp = versionProp;
 	}
+
+	public boolean isStreamingOutput() {
+		return streamingOutput;
+	}
+
+	/**
+	 * If set to true the glossary XML is written straight from the sorted sort objects with StAX, otherwise the glossary
+	 * DOM is built first and marshaled with JAXB. Both produce the same output, the streaming output doesn't keep the
+	 * glossary DOM in memory.
+	 */
+	public void setStreamingOutput( final boolean streamingOutput ) {
+		this.streamingOutput = streamingOutput;
+	}
+
+	public GlossaryMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the metrics to record the time, the files, the bytes and the entries written in, none are recorded if not set.
+	 */
+	public void setMetrics( final GlossaryMetrics metrics ) {
+		this.metrics = metrics;
+	}
 	//===================================== property assessors =========================================================
 
 	/**
@@ -118,6 +147,7 @@ public class GlossaryOutputWriter
 		try
 		{
 			logger.info( String.format( "Creating glossary file: [%s]", glossaryFile.getAbsolutePath() ) );
+			long start = System.nanoTime();
 
 			Glossary glossary = new Glossary();
 			// The assumption here is that all objects in the sortedData have same L1 and L2 pairs.
@@ -125,14 +155,78 @@ public class GlossaryOutputWriter
 			glossary.setLanguageCode( getSortLanguageCode( sortObject ) );
 			glossary.setVersion( versionProp.getProperty( "version" ) );
 
-			// converts sort objects in to the Glossary DOM
-			fillInGlossaryWithContent( glossary, sortedData );
+			if( streamingOutput )
+			{
+				// streams the sort objects straight in to the XML file, the CSV data is collected on the way
+				List<SortingData> csvData = new ArrayList<SortingData>();
+				streamGlossaryXmlToFile( glossaryFile, glossary, sortedData, csvData );
+
+				if ( "ENGLISH".equalsIgnoreCase( glossary.getLanguageCode() ) )
+				{
+					Collections.sort( csvData );
+					writeToCsvFile( csvData );
+				}
+			}
+			else
+			{
+				// converts sort objects in to the Glossary DOM
+				fillInGlossaryWithContent( glossary, sortedData );
+
+				// writes/marshals glossary to the XML file
+				writeGlossaryXmlToFile( glossaryFile, glossary );
+
+				//TODO: not sure if this is going to be a permanent feature or not.
+				dumpGlossaryToCsv( glossary );
+			}
+
+			if( metrics != null )
+			{
+				metrics.addTime( GlossaryMetrics.WRITE + "." + sortType, start );
+				metrics.increment( GlossaryMetrics.FILES_WRITTEN, 1 );
+				metrics.increment( GlossaryMetrics.BYTES_WRITTEN, glossaryFile.length() );
+				metrics.increment( GlossaryMetrics.ENTRIES_WRITTEN, sortedData.size() );
+			}
+		}
+		catch( Exception e )
+		{
+			logger.error( e );
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * Creates a glossary output as an XML file out of the sort objects ordered by getLetterComparator() and sorted
+	 * within every letter, e.g. merged by ExternalGlossarySorter. The sort objects are streamed in to the file one at a
+	 * time, the output is the same as the one of writeGlossaryToFile() for the same sort objects in the sorted order.
+	 */
+	public void writeGroupedGlossaryToFile( final Iterator<SortObject> groupedData )
+	{
+		try
+		{
+			logger.info( String.format( "Creating glossary file: [%s]", glossaryFile.getAbsolutePath() ) );
+			long start = System.nanoTime();
+
+			Glossary glossary		= new Glossary();
+			SortObject sortObject	= groupedData.next();
+			glossary.setLanguageCode( getSortLanguageCode( sortObject ) );
+			glossary.setVersion( versionProp.getProperty( "version" ) );
+
+			List<SortingData> csvData	= new ArrayList<SortingData>();
+			int entries					= streamGroupedGlossaryXmlToFile( glossaryFile, glossary, sortObject, groupedData, csvData );
 
-			// writes/marshals glossary to the XML file
-			writeGlossaryXmlToFile( glossaryFile, glossary );
+			if ( "ENGLISH".equalsIgnoreCase( glossary.getLanguageCode() ) )
+			{
+				Collections.sort( csvData );
+				writeToCsvFile( csvData );
+			}
 
-            //TODO: not sure if this is going to be a permanent feature or not.
-            dumpGlossaryToCsv( glossary );
+			if( metrics != null )
+			{
+				metrics.addTime( GlossaryMetrics.WRITE + "." + sortType, start );
+				metrics.increment( GlossaryMetrics.FILES_WRITTEN, 1 );
+				metrics.increment( GlossaryMetrics.BYTES_WRITTEN, glossaryFile.length() );
+				metrics.increment( GlossaryMetrics.ENTRIES_WRITTEN, entries );
+			}
 		}
 		catch( Exception e )
 		{
@@ -141,6 +235,26 @@ public class GlossaryOutputWriter
 		}
 	}
 
+	/**
+	 * Returns the comparator that orders the sort objects the way this writer lists them: by the letter they are listed
+	 * under, the words before the phrases.
+	 */
+	public Comparator<SortObject> getLetterComparator()
+	{
+		return new Comparator<SortObject>()
+		{
+			public int compare( final SortObject o1, final SortObject o2 )
+			{
+				int res = IntermediateLetterData.IntermediateLetterDataComparator.compare( getLetterData( o1 ), getLetterData( o2 ) );
+				if( res == 0 && o1.isPhrase() != o2.isPhrase() ) {
+					res = o1.isPhrase()? 1: -1;
+				}
+
+				return res;
+			}
+		};
+	}
+
     private void dumpGlossaryToCsv( final Glossary glossary )
     {
         if ( "ENGLISH".equalsIgnoreCase( glossary.getLanguageCode() ) )
@@ -167,6 +281,12 @@ public class GlossaryOutputWriter
             osw.flush();
             fos.close();
             osw.close();
+
+            if( metrics != null )
+            {
+                metrics.increment( GlossaryMetrics.FILES_WRITTEN, 1 );
+                metrics.increment( GlossaryMetrics.BYTES_WRITTEN, csv.length() );
+            }
         }
         catch( IOException e )
         {
@@ -330,26 +450,6 @@ public class GlossaryOutputWriter
 		}
 	}
 
-	private String alignWithLetterGroups(final String tmpKey, final CollatorData collatorData)
-	{
-		String finalKey = tmpKey;
-
-		final List<String> letterGroups = collatorData.getLetterGroups(false);
-		if (!letterGroups.isEmpty())
-		{
-			for (String letterGroup : letterGroups)
-			{
-				if (letterGroup.contains(tmpKey))
-				{
-					finalKey = letterGroup.substring(0, 1);
-					break;
-				}
-			}
-		}
-
-		return finalKey;
-	}
-
     private static final class IntermediateLetterData
     {
         public IntermediateLetterData(String letter, Boolean isMiscBucket) {
@@ -408,29 +508,21 @@ public class GlossaryOutputWriter
         };
     }
 
-	private IntermediateLetterData alignWithAlphabet(final String tmpKey, final CollatorData collatorData)
+	/**
+	 * Returns the letter the sort object is listed under, the same as buildGlossaryMap() does.
+	 */
+	private IntermediateLetterData getLetterData( final SortObject sortObject )
 	{
-		IntermediateLetterData retVal = new IntermediateLetterData(tmpKey, false);
-		final List<String> alphabet = collatorData.getAlphabet(false);
-		Boolean match = false;
-		if (!alphabet.isEmpty())
-		{
-			for (String letter : alphabet)
-			{
-				if (letter.contains(tmpKey)) {
-					match = true;
-					break;
-				}
-			}
+		CollatorData collatorData = collatorHelper.getCollatorData( getSortLanguageCode( sortObject ) );
+		if( "MANDARIN".equals( collatorData.getTplLanguageCode() ) ) {
+			return new IntermediateLetterData( " ", false );
 		}
-		else
-			match = true;
 
-		if (!match) {
-            retVal.setLetter(collatorData.getMiscBucketLabel());
-            retVal.setIsMiscBucket(true);
-        }
-		return retVal;
+		int keyCodePoint = sortType == SortType.L1 ?
+				sortObject.getSortFieldsL1().get(0).codePointAt(0) :
+				sortObject.getSortFieldsL2().get(0).codePointAt(0);
+		CollatorData.LetterBucket letterBucket = collatorData.getLetterBucket( keyCodePoint );
+		return new IntermediateLetterData( letterBucket.getLetter(), letterBucket.isMiscBucket() );
 	}
 
 	/**
@@ -443,10 +535,10 @@ public class GlossaryOutputWriter
 								  final List<IntermediateLetterData> glossaryLetterEntries) {
 		//Extremely bad hotfix to remove Mandarin alphabet for JIRA entry: CAD-731
 		Collection<SortObject> MandarinSortObj = new ArrayList<SortObject>();
+		Map<CollatorData.LetterBucket, Collection<SortObject>> bucketObjects = new HashMap<CollatorData.LetterBucket, Collection<SortObject>>();
 		for (SortObject sortObject : sortedData) {
-			// convert sort key to upper case using appropriate locale if possible
 			CollatorData collatorData
-					= collatorHelper.getCollatorData().get(getSortLanguageCode(sortObject));
+					= collatorHelper.getCollatorData(getSortLanguageCode(sortObject));
 			//Add all mandarin sort objects into one collection
 			if ("MANDARIN".equals(collatorData.getTplLanguageCode())) {
 				MandarinSortObj.add(sortObject);
@@ -458,27 +550,18 @@ public class GlossaryOutputWriter
 				int keyCodePoint = sortType == SortType.L1 ?
 						sortObject.getSortFieldsL1().get(0).codePointAt(0) :
 						sortObject.getSortFieldsL2().get(0).codePointAt(0);
-				String tmpKey = new String(new int[]{keyCodePoint}, 0, 1);
-				if (!collatorData.getJavaLocaleCode().equals(CollatorData.NO_JAVA_LOCALE)) {
-					tmpKey = tmpKey.toUpperCase(new Locale(collatorData.getJavaLocaleCode()));
-				} else {
-					tmpKey = tmpKey.toUpperCase();
-				}
-
-				tmpKey = alignWithLetterGroups(tmpKey, collatorData);
-                IntermediateLetterData letterData = alignWithAlphabet(tmpKey, collatorData);
+				CollatorData.LetterBucket letterBucket = collatorData.getLetterBucket(keyCodePoint);
 				// TODO: Add check for letter to Collation Rules. Find which Position the character is in collation rules, then map that to the equivalent Alphabet "Display" character.
 				//-----------------------------------------------------------------
 
-                if (glossaryLetterEntries.contains(letterData)) {
-                    Collection<SortObject> mappedObjects = glossaryMap.get(letterData.getLetter());
-                    mappedObjects.add(sortObject);
-                } else {
-                    Collection<SortObject> mappedObjects = new ArrayList<SortObject>();
-                    glossaryMap.put(letterData.getLetter(), mappedObjects);
-                    mappedObjects.add(sortObject);
-                    glossaryLetterEntries.add(letterData);
-                }
+				Collection<SortObject> mappedObjects = bucketObjects.get(letterBucket);
+				if (mappedObjects == null) {
+					mappedObjects = new ArrayList<SortObject>();
+					bucketObjects.put(letterBucket, mappedObjects);
+					glossaryMap.put(letterBucket.getLetter(), mappedObjects);
+					glossaryLetterEntries.add(new IntermediateLetterData(letterBucket.getLetter(), letterBucket.isMiscBucket()));
+				}
+				mappedObjects.add(sortObject);
 			}
 		}
 		if (!(MandarinSortObj.isEmpty())) {
@@ -502,7 +585,335 @@ public class GlossaryOutputWriter
 		marshaller.marshal( glossary, buffer );
 	}
 
+	/**
+	 * Writes the glossary XML straight from the sorted sort objects. The output is the same as the JAXB formatted
+	 * output of the glossary DOM built by fillInGlossaryWithContent(). The key and translation of every word and phrase
+	 * are added to the CSV data in the same order as they are read from the glossary DOM by createSortedDataSet().
+	 * @param glossary glossary with the header attributes only
+	 */
+	private void streamGlossaryXmlToFile( final File glossaryFile,
+										  final Glossary glossary,
+										  final Collection<SortObject> sortedData,
+										  final List<SortingData> csvData ) throws IOException, XMLStreamException
+	{
+		Map<String, Collection<SortObject>> glossaryDataMap		= new HashMap<String, Collection<SortObject>>();
+		List<IntermediateLetterData> glossaryLetterEntries      = new ArrayList<IntermediateLetterData>();
+
+		// split all sort objects in to the sub collections mapped by first letter of each primary sort term.
+		buildGlossaryMap( sortedData, glossaryDataMap, glossaryLetterEntries );
+
+		java.io.Writer out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( glossaryFile ), "UTF-8" ) );
+		try
+		{
+			XMLStreamWriter xml = startGlossaryXml( out, glossary );
+
+			if( glossaryLetterEntries.isEmpty() ) {
+				writeEmptyElement( xml, 1, "letters" );
+			}
+			else
+			{
+				writeStartElement( xml, 1, "letters" );
+				for( IntermediateLetterData letterData : glossaryLetterEntries )
+				{
+					writeStartElement( xml, 2, "letter" );
+					writeAttribute( xml, "isMiscBucket", String.valueOf( letterData.getIsMiscBucket() ) );
+					writeAttribute( xml, "name", letterData.getLetter() );
+
+					Collection<SortObject> letterObjects = glossaryDataMap.get( letterData.letter );
+					writeEntries( xml, letterObjects, false, csvData );
+					writeEntries( xml, letterObjects, true, csvData );
+
+					writeEndElement( xml, 2 );
+				}
+				writeEndElement( xml, 1 );
+			}
+
+			endGlossaryXml( xml );
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the glossary XML out of the grouped sort objects, see writeGroupedGlossaryToFile(). A letter is written
+	 * for every run of the sort objects listed under the same letter; its words are followed by its phrases.
+	 * @return the number of the entries written
+	 */
+	private int streamGroupedGlossaryXmlToFile( final File glossaryFile,
+												final Glossary glossary,
+												final SortObject first,
+												final Iterator<SortObject> groupedData,
+												final List<SortingData> csvData ) throws IOException, XMLStreamException
+	{
+		int res = 0;
+
+		java.io.Writer out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( glossaryFile ), "UTF-8" ) );
+		try
+		{
+			XMLStreamWriter xml = startGlossaryXml( out, glossary );
+			writeStartElement( xml, 1, "letters" );
+
+			IntermediateLetterData letter	= null;
+			boolean phrases					= false;
+			for( SortObject sortObject = first; sortObject != null; sortObject = groupedData.hasNext()? groupedData.next(): null )
+			{
+				IntermediateLetterData letterData = getLetterData( sortObject );
+				if( !letterData.equals( letter ) )
+				{
+					if( letter != null ) {
+						endLetter( xml, phrases );
+					}
+
+					letter	= letterData;
+					phrases	= sortObject.isPhrase();
+					writeStartElement( xml, 2, "letter" );
+					writeAttribute( xml, "isMiscBucket", String.valueOf( letterData.getIsMiscBucket() ) );
+					writeAttribute( xml, "name", letterData.getLetter() );
+					if( phrases ) {
+						writeEmptyElement( xml, 3, "words" );
+					}
+					writeStartElement( xml, 3, phrases? "phrases": "words" );
+				}
+				else if( sortObject.isPhrase() != phrases )
+				{
+					if( phrases ) {
+						throw new IllegalArgumentException( String.format( "The sort objects are not grouped by letter: [%s]", sortObject ) );
+					}
+
+					phrases = true;
+					writeEndElement( xml, 3 );
+					writeStartElement( xml, 3, "phrases" );
+				}
+
+				writeEntry( xml, sortObject, phrases, csvData );
+				res++;
+			}
+			endLetter( xml, phrases );
+
+			writeEndElement( xml, 1 );
+			endGlossaryXml( xml );
+		}
+		finally {
+			out.close();
+		}
+
+		return res;
+	}
+
+	/**
+	 * Closes the words or the phrases of a letter and the letter, the empty phrases are written if there are none.
+	 */
+	private void endLetter( final XMLStreamWriter xml, final boolean phrases ) throws XMLStreamException
+	{
+		writeEndElement( xml, 3 );
+		if( !phrases ) {
+			writeEmptyElement( xml, 3, "phrases" );
+		}
+		writeEndElement( xml, 2 );
+	}
+
+	/**
+	 * Writes the XML declaration and starts the glossary element with its attributes.
+	 */
+	private XMLStreamWriter startGlossaryXml( final java.io.Writer out, final Glossary glossary ) throws IOException, XMLStreamException
+	{
+		// the declaration is written as JAXB writes it, the stream writer can't declare the document standalone
+		out.write( "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" );
+
+		XMLStreamWriter res = XMLOutputFactory.newInstance().createXMLStreamWriter( out );
+		res.writeStartElement( "glossary" );
+		writeAttribute( res, "language", glossary.getLanguageCode() );
+		writeAttribute( res, "version", glossary.getVersion() );
+
+		return res;
+	}
+
+	private void endGlossaryXml( final XMLStreamWriter xml ) throws XMLStreamException
+	{
+		writeEndElement( xml, 0 );
+		xml.writeCharacters( "\n" );
+		xml.flush();
+		xml.close();
+	}
+
+	/**
+	 * Writes the words or the phrases of a letter.
+	 */
+	private void writeEntries( final XMLStreamWriter xml,
+							   final Collection<SortObject> letterObjects,
+							   final boolean phrases,
+							   final List<SortingData> csvData ) throws XMLStreamException
+	{
+		String wrapperName	= phrases? "phrases": "words";
+		boolean started		= false;
+		for( SortObject sortObject : letterObjects )
+		{
+			if( sortObject.isPhrase() != phrases ) {
+				continue;
+			}
+
+			if( !started )
+			{
+				writeStartElement( xml, 3, wrapperName );
+				started = true;
+			}
+
+			writeEntry( xml, sortObject, phrases, csvData );
+		}
+
+		if( started ) {
+			writeEndElement( xml, 3 );
+		}
+		else {
+			writeEmptyElement( xml, 3, wrapperName );
+		}
+	}
+
+	/**
+	 * Writes the word or the phrase of a sort object and adds its key and translation to the CSV data.
+	 */
+	private void writeEntry( final XMLStreamWriter xml,
+							 final SortObject sortObject,
+							 final boolean phrase,
+							 final List<SortingData> csvData ) throws XMLStreamException
+	{
+		logger.info( String.format( "Creating glossary entry for: [%s]", sortObject.toString() ) );
+
+		String key			= sortObject.getFieldsToIncludeMap().get( glossaryKeyField );
+		String translation	= sortObject.getFieldsToIncludeMap().get( glossaryTranslationField );
+
+		writeStartElement( xml, 4, phrase? "phrase": "word" );
+		writeAttribute( xml, "L1", sortObject.getLanguageCodeL1() );
+		writeAttribute( xml, "L2", sortObject.getLanguageCodeL2() );
+
+		writeValueElement( xml, 5, "key", "language", getSortLanguageCode( sortObject ), key );
+		writeValueElement( xml, 5, "translation", "language", getTranslationLanguageCode( sortObject ), translation );
+
+		boolean annotations = false;
+		for( String field : sortObject.getFieldsToIncludeMap().keySet() )
+		{
+			// the field is considered to be the annotation if it is not a key or a translation
+			if( !field.equals( glossaryKeyField ) && !field.equals(glossaryTranslationField) )
+			{
+				// filter out empty annotations
+				String annotationText = sortObject.getFieldsToIncludeMap().get( field );
+				if( annotationText != null && annotationText.trim().length() > 0  )
+				{
+					if( !annotations )
+					{
+						writeStartElement( xml, 5, "annotations" );
+						annotations = true;
+					}
+					writeValueElement( xml, 6, "annotation", "name", field, annotationText );
+				}
+			}
+		}
+		if( annotations ) {
+			writeEndElement( xml, 5 );
+		}
+		else {
+			writeEmptyElement( xml, 5, "annotations" );
+		}
+
+		writeValueElement( xml, 5, "sideOneSoundfile", null, null, sortObject.getSideOneSoundFile() );
+		writeValueElement( xml, 5, "sideTwoSoundfile", null, null, sortObject.getSideTwoSoundFile() );
+		writeValueElement( xml, 5, "referencedBy", null, null, sortObject.getReferencedBy() );
+		writeValueElement( xml, 5, "partOfSpeech", null, null, sortObject.getPartOfSpeech() );
+
+		writeEndElement( xml, 4 );
+
+		SortingData data	= new SortingData();
+		data.theEnglish		= key;
+		data.theTranslation	= translation;
+		csvData.add( data );
+	}
+
+	private void writeStartElement( final XMLStreamWriter xml, final int depth, final String name ) throws XMLStreamException
+	{
+		indent( xml, depth );
+		xml.writeStartElement( name );
+	}
+
+	private void writeEmptyElement( final XMLStreamWriter xml, final int depth, final String name ) throws XMLStreamException
+	{
+		indent( xml, depth );
+		xml.writeEmptyElement( name );
+	}
+
+	/**
+	 * Closes an element with child elements, the end tag goes on its own line.
+	 */
+	private void writeEndElement( final XMLStreamWriter xml, final int depth ) throws XMLStreamException
+	{
+		indent( xml, depth );
+		xml.writeEndElement();
+	}
+
+	/**
+	 * Writes an element with text content and an optional attribute. The element is skipped if the value is null and
+	 * there is no attribute, the same as JAXB does for the null properties.
+	 */
+	private void writeValueElement( final XMLStreamWriter xml,
+									final int depth,
+									final String name,
+									final String attribute,
+									final String attributeValue,
+									final String value ) throws XMLStreamException
+	{
+		if( value == null && attribute == null ) {
+			return;
+		}
+
+		if( value == null ) {
+			writeEmptyElement( xml, depth, name );
+		}
+		else {
+			writeStartElement( xml, depth, name );
+		}
+
+		if( attribute != null ) {
+			writeAttribute( xml, attribute, attributeValue );
+		}
+
+		if( value != null )
+		{
+			xml.writeCharacters( value );
+			xml.writeEndElement();
+		}
+	}
+
+	/**
+	 * Writes an attribute, null attributes are skipped.
+	 */
+	private void writeAttribute( final XMLStreamWriter xml, final String name, final String value ) throws XMLStreamException
+	{
+		if( value != null ) {
+			xml.writeAttribute( name, value );
+		}
+	}
+
+	private void indent( final XMLStreamWriter xml, final int depth ) throws XMLStreamException {
+		xml.writeCharacters( INDENTS[depth] );
+	}
+
 	//------------------------------------------------------------------------------------------------------------------
+	/**
+	 * Line break and indentation of the elements by depth, the same as the JAXB formatted output.
+	 */
+	private static final String[] INDENTS = new String[8];
+	static
+	{
+		StringBuilder indent = new StringBuilder( "\n" );
+		for( int i = 0; i < INDENTS.length; i++ )
+		{
+			INDENTS[i] = indent.toString();
+			indent.append( "    " );
+		}
+	}
+
+	private boolean streamingOutput			= false;
+
 	private String glossaryKeyField			= null;
 	private String glossaryTranslationField = null;
 	private List<String> annotationFields	= new ArrayList<String>();
@@ -514,6 +925,7 @@ public class GlossaryOutputWriter
 	private Properties versionProp			= null;
 
 	private CollatorDataHelper collatorHelper = null;
+	private GlossaryMetrics metrics = null;
 
 	private Logger logger = Logger.getLogger( this.getClass() );
 	//------------------------------------------------------------------------------------------------------------------
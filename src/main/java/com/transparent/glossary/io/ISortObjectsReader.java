@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.io;
+
+import com.transparent.glossary.model.SortObject;
+
+import java.io.File;
+import java.util.Collection;
+
+/**
+ * This interface should be implemented by any class that reads the content files and produces sort objects out of them.
+ * @see com.transparent.glossary.model.SortObject
+ */
+public interface ISortObjectsReader
+{
+	/**
+	 * Reads the given input file with the standard options, see readSortObjects( File, ReadOptions ).
+	 */
+	Collection<SortObject> readSortObjects( File inputFile );
+
+	/**
+	 * Reads the given input file with the given options and produces a collection of the sortable objects.
+	 * Implementations should keep no state between the calls, so this method can be called for different files and
+	 * options from several threads at once.
+	 */
+	Collection<SortObject> readSortObjects( File inputFile, ReadOptions options );
+
+	/**
+	 * Returns the description of everything besides the content and the read options that the produced sort objects
+	 * depend on, e.g. the reader class and its queries. Two readers with the same key produce the same sort objects out
+	 * of the same file read with the same options.
+	 * @see com.transparent.glossary.io.SortObjectsCache
+	 */
+	String getConfigurationKey();
+}
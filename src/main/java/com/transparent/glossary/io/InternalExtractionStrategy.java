@@ -3,37 +3,21 @@ package com.transparent.glossary.io;
 import org.apache.log4j.Logger;
 import org.apache.commons.io.FilenameUtils;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathExpressionException;
 import java.io.File;
 
-import org.w3c.dom.Node;
-
 /**
  * Created by MDennehy on 4/9/2015.
  */
 public class InternalExtractionStrategy extends StandardExtractionStrategy
 {
-    private final XPath xPath;
-
     private final String theListName;
 
-    private final Node theNode;
-
-    private final String theSideTwoPartOfSpeechXPath;
-
     public InternalExtractionStrategy( final String listName,
-                                       final XPath aXPath,
-                                       final Node node,
-                                       final String sideTwoPartOfSpeechXPath,
                                        final File b4xFile )
     {
         super(b4xFile);
 
         theListName = listName;
-        xPath = aXPath;
-        theNode = node;
-        theSideTwoPartOfSpeechXPath = sideTwoPartOfSpeechXPath;
     }
 
     @Override
@@ -43,15 +27,9 @@ public class InternalExtractionStrategy extends StandardExtractionStrategy
     }
 
     @Override
-    public String determinePartOfSpeech()
+    public String determinePartOfSpeech( final String cardPartOfSpeech )
     {
-        try {
-            return xPath.evaluate(theSideTwoPartOfSpeechXPath, theNode).trim();
-        }
-        catch(XPathExpressionException e)
-        {
-            return "unclassified";
-        }
+        return cardPartOfSpeech;
     }
 
     @Override
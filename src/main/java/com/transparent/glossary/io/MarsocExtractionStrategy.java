@@ -15,27 +15,40 @@ public class MarsocExtractionStrategy implements ExtractionStrategy
     /**
      * Regular expression to find the language code portion of something like: PORbr_ENGus_32
      */
-    private final String theLanguageCodeRegularExpression = "[A-Za-z]{5}?_[A-Za-z]{5}?_";
+    private static final String theLanguageCodeRegularExpression = "[A-Za-z]{5}?_[A-Za-z]{5}?_";
 
     /**
      * Pre-compiled regexp pattern.
      */
-    private final Pattern theLanguageCodePattern = Pattern.compile( theLanguageCodeRegularExpression );
+    private static final Pattern theLanguageCodePattern = Pattern.compile( theLanguageCodeRegularExpression );
 
     /**
      * Pre-compiled regexp pattern that should find patterns like PORbr_ENGus_01_Adjectives.xml
      */
-    private final Pattern theB4xNamePattern = Pattern.compile( "[A-Za-z]{5}?_[A-Za-z]{5}?_\\d{2,}_[A-Za-z_]*\\.xml" );
+    private static final Pattern theB4xNamePattern = Pattern.compile( "[A-Za-z]{5}?_[A-Za-z]{5}?_\\d{2,}_[A-Za-z_]*\\.xml" );
 
     private final Logger theStatusLogger;
 
     private final String theB4XName;
 
+    private final String theUnitNumber;
+
+    private final String thePartOfSpeech;
+
+    /**
+     * Prefix of the sound paths, alphabet/glossary/B4X/
+     */
+    private final String theSoundPathPrefix;
+
     public MarsocExtractionStrategy( final Logger statusLogger,
                                      final File b4xFile )
     {
         theStatusLogger = statusLogger;
         theB4XName = extractB4XName( b4xFile );
+        final String unitNumber = extractUnitNumber( theB4XName );
+        theUnitNumber = new StringBuilder( "Unit " ).append( unitNumber ).toString().trim();
+        thePartOfSpeech = extractPartOfSpeech( theB4XName );
+        theSoundPathPrefix = new StringBuilder().append( "alphabet/glossary/" ).append( theB4XName ).append( "/" ).toString();
     }
 
     private String extractB4XName( final File inputFile )
@@ -58,8 +71,7 @@ public class MarsocExtractionStrategy implements ExtractionStrategy
     @Override
     public String determineUnitNumber()
     {
-        final String unitNumber = extractUnitNumber( theB4XName );
-        return new StringBuilder( "Unit " ).append( unitNumber ).toString().trim();
+        return theUnitNumber;
     }
 
     @Override
@@ -73,15 +85,15 @@ public class MarsocExtractionStrategy implements ExtractionStrategy
         else
         {
             //alphabet/glossary/B4X/sound path
-            path = new StringBuilder().append( "alphabet/glossary/" ).append( theB4XName ).append( "/" ).append( soundPath ).toString();
+            path = theSoundPathPrefix + soundPath;
         }
         return path ;
     }
 
     @Override
-    public String determinePartOfSpeech()
+    public String determinePartOfSpeech( final String cardPartOfSpeech )
     {
-        return extractPartOfSpeech( theB4XName );
+        return thePartOfSpeech;
     }
 
     private String extractPartOfSpeech( final String rawB4xName )
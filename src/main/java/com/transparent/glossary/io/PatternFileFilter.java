@@ -5,8 +5,11 @@ package com.transparent.glossary.io;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.regex.Pattern;
 
 /**
@@ -14,6 +17,10 @@ import java.util.regex.Pattern;
  * The patterns are set in a form of the regular expressions.
  * It is an OR based filter, meaning that if just one pattern from the set matches the file name this file is considered
  * to be acceptable by this filter.
+ * The patterns are compiled when they are set, and again when a file is checked after the list returned by
+ * getPatterns() has been changed. They are fused in to one alternation, so a file name is matched once, except for
+ * the patterns the alternation could change the meaning of (back references, named groups, quotes and comments) which
+ * are matched on their own.
  *
  * User: plitvak
  * Date: Aug 3, 2009
@@ -23,36 +30,153 @@ public class PatternFileFilter implements FileFilter
 {
 	//================================== property accessors ============================================================
 	/**
+	 * Returns the patterns, changing the list changes the patterns the files are checked with.
 	 */
 	public List<String> getPatterns() {
 		return patterns;
 	}
 
 	/**
+	 * Sets a copy of the given patterns and compiles them.
 	 */
-	public void setPatterns( final List<String> patterns ) {
-		this.patterns = patterns;
+	public void setPatterns( final List<String> patterns )
+	{
+		this.patterns			= new PatternList( patterns );
+		this.compiledPatterns	= new CompiledPatterns( this.patterns );
 	}
 	//================================== property accessors ============================================================
 
 	/**
 	 */
-	public boolean accept( final File pathname )
+	public boolean accept( final File pathname ) {
+		return accept( pathname, pathname.getAbsolutePath() );
+	}
+
+	/**
+	 * Same as accept( pathname ) for the caller that already knows the absolute path of the file, see
+	 * GlossaryProcessor.
+	 */
+	public boolean accept( final File pathname, final String absolutePath ) {
+		return acceptPath( absolutePath );
+	}
+
+	/**
+	 * Returns true if one of the patterns matches the whole path.
+	 */
+	public boolean acceptPath( final String path ) {
+		return getCompiledPatterns().matches( path );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * The pattern list, every change of it drops the compiled patterns.
+	 */
+	private final class PatternList extends AbstractList<String> implements RandomAccess
 	{
-		boolean res = false;
+		PatternList( final List<String> patterns ) {
+			this.patterns = new ArrayList<String>( patterns );
+		}
+
+		@Override
+		public String get( final int index ) {
+			return patterns.get( index );
+		}
+
+		@Override
+		public int size() {
+			return patterns.size();
+		}
+
+		@Override
+		public String set( final int index, final String pattern )
+		{
+			String res = patterns.set( index, pattern );
+			compiledPatterns = null;
+			return res;
+		}
+
+		@Override
+		public void add( final int index, final String pattern )
+		{
+			patterns.add( index, pattern );
+			compiledPatterns = null;
+		}
 
-		String fileName = pathname.getAbsolutePath();
-		for( String pattern : patterns )
+		@Override
+		public String remove( final int index )
 		{
-			if( (res = Pattern.matches( pattern, fileName )) ) {
-				break;
+			String res = patterns.remove( index );
+			compiledPatterns = null;
+			return res;
+		}
+
+		private final List<String> patterns;
+	}
+
+	/**
+	 * The patterns compiled from the pattern list.
+	 */
+	private static final class CompiledPatterns
+	{
+		CompiledPatterns( final List<String> source )
+		{
+			StringBuilder alternation = new StringBuilder();
+			for( String pattern : source )
+			{
+				// compile every pattern on its own first, so an invalid one fails the same as when matched alone
+				Pattern compiled = Pattern.compile( pattern );
+				if( theUnfusablePattern.matcher( pattern ).find() ) {
+					separate.add( compiled );
+				}
+				else {
+					alternation.append( alternation.length() > 0? "|": "" ).append( "(?:" ).append( pattern ).append( ')' );
+				}
+			}
+			fused = alternation.length() > 0? Pattern.compile( alternation.toString() ): null;
+		}
+
+		boolean matches( final String path )
+		{
+			if( fused != null && fused.matcher( path ).matches() ) {
+				return true;
 			}
+			for( Pattern pattern : separate )
+			{
+				if( pattern.matcher( path ).matches() ) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		private final Pattern fused;
+		private final List<Pattern> separate = new ArrayList<Pattern>();
+	}
+
+	private CompiledPatterns getCompiledPatterns()
+	{
+		CompiledPatterns res = compiledPatterns;
+		if( res == null )
+		{
+			res					= new CompiledPatterns( patterns );
+			compiledPatterns	= res;
 		}
 
 		return res;
 	}
 
 	//------------------------------------------------------------------------------------------------------------------
-	private List<String> patterns = new ArrayList<String>();
+	/**
+	 * Finds the back references, named groups, quotes and comments that can't be wrapped in a group of the alternation.
+	 */
+	private static final Pattern theUnfusablePattern = Pattern.compile( "\\\\([0-9]|k<|Q)|#|\\(\\?<[a-zA-Z]" );
+
+	private List<String> patterns = new PatternList( Collections.<String>emptyList() );
+
+	private volatile CompiledPatterns compiledPatterns = null;
 	//------------------------------------------------------------------------------------------------------------------
-}
\ No newline at end of file
+}
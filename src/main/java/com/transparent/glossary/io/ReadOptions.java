@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.io;
+
+import java.io.File;
+
+/**
+ * The options of a single ISortObjectsReader.readSortObjects() call: the rules used to extract the unit number, the part
+ * of speech and the sound paths of the sort objects. The options are immutable, so the same reader can read the files
+ * of builds with different options at once.
+ * The internal rules take precedence over the MARSOC rules; the internal list name map is used with the internal rules
+ * only.
+ */
+public final class ReadOptions
+{
+	/**
+	 * The standard rules, used unless other options are given.
+	 */
+	public static final ReadOptions STANDARD = new ReadOptions( false, false, null );
+
+	/**
+	 * The special MARSOC B4X folder naming convention rules.
+	 */
+	public static final ReadOptions MARSOC = new ReadOptions( true, false, null );
+
+	/**
+	 * The internal rules, without the list name map.
+	 */
+	public static final ReadOptions INTERNAL = new ReadOptions( false, true, null );
+
+	/**
+	 * @param internalListNameMapFile the internal list name map, null if the map is not used
+	 */
+	public ReadOptions( final boolean applyMarsocRules, final boolean applyInternalRules, final File internalListNameMapFile )
+	{
+		this.applyMarsocRules			= applyMarsocRules;
+		this.applyInternalRules			= applyInternalRules;
+		this.internalListNameMapFile	= internalListNameMapFile;
+	}
+
+	//===================================== property assessors ==========================================================
+	public boolean isApplyMarsocRules() {
+		return applyMarsocRules;
+	}
+
+	public boolean isApplyInternalRules() {
+		return applyInternalRules;
+	}
+
+	public boolean isApplyInternalListNameMap() {
+		return applyInternalRules && internalListNameMapFile != null;
+	}
+
+	public File getInternalListNameMapFile() {
+		return internalListNameMapFile;
+	}
+	//===================================== property assessors ==========================================================
+
+	/**
+	 * Returns the description of everything the options change in the produced sort objects, including the size and
+	 * the modification time of the internal list name map, see ISortObjectsReader.getConfigurationKey().
+	 */
+	public String getConfigurationKey()
+	{
+		StringBuilder res = new StringBuilder();
+		res.append( applyMarsocRules ).append( '\n' ).append( applyInternalRules ).append( '\n' ).append( isApplyInternalListNameMap() );
+		if( isApplyInternalListNameMap() )
+		{
+			res.append( '\n' ).append( internalListNameMapFile.getAbsolutePath() )
+			   .append( '\n' ).append( internalListNameMapFile.length() )
+			   .append( '\n' ).append( internalListNameMapFile.lastModified() );
+		}
+
+		return res.toString();
+	}
+
+	@Override
+	public boolean equals( final Object o )
+	{
+		if( this == o ) {
+			return true;
+		}
+		if( !(o instanceof ReadOptions) ) {
+			return false;
+		}
+
+		ReadOptions that = (ReadOptions)o;
+		return applyMarsocRules == that.applyMarsocRules && applyInternalRules == that.applyInternalRules &&
+			   (internalListNameMapFile == null? that.internalListNameMapFile == null: internalListNameMapFile.equals( that.internalListNameMapFile ));
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int res = applyMarsocRules? 1: 0;
+		res = 31 * res + (applyInternalRules? 1: 0);
+		res = 31 * res + (internalListNameMapFile != null? internalListNameMapFile.hashCode(): 0);
+		return res;
+	}
+
+	/**
+	 * Returns "internal", "internal:" followed by the internal list name map, "marsoc" or "standard".
+	 */
+	@Override
+	public String toString()
+	{
+		if( applyInternalRules ) {
+			return isApplyInternalListNameMap()? "internal:" + internalListNameMapFile.getPath(): "internal";
+		}
+
+		return applyMarsocRules? "marsoc": "standard";
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private final boolean applyMarsocRules;
+	private final boolean applyInternalRules;
+	private final File internalListNameMapFile;
+	//------------------------------------------------------------------------------------------------------------------
+}
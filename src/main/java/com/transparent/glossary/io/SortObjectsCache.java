@@ -0,0 +1,469 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.io;
+
+import com.transparent.glossary.model.SortObject;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class keeps the sort objects read from the content files on disk, so the files that didn't change since the
+ * previous run are not parsed again.
+ * Every content file gets a cache entry per reader configuration and read options (see
+ * ISortObjectsReader.getConfigurationKey() and ReadOptions.getConfigurationKey()). The
+ * entry records the path, size, modification time and SHA-1 hash of the file it was read from, the tool version and the
+ * reader configuration; the entry is used only if all of them match the current ones. A file with the same size but
+ * a different modification time is hashed, if the content is the same the entry is used and its modification time
+ * updated.
+ * The user data of the sort objects is not cached.
+ * This class is thread safe, the files can be read from several threads at once.
+ */
+public class SortObjectsCache
+{
+	//===================================== property assessors ==========================================================
+	public File getCacheFolder() {
+		return cacheFolder;
+	}
+
+	/**
+	 * Sets the folder the cache entries are kept in, the folder is created if it doesn't exist.
+	 */
+	public void setCacheFolder( final File cacheFolder ) {
+		this.cacheFolder = cacheFolder;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the version of the tool, the entries written by another version are not used.
+	 */
+	public void setVersion( final String version ) {
+		this.version = version;
+	}
+
+	/**
+	 * Returns the number of files read from the cache.
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of files read by the readers.
+	 */
+	public int getMisses() {
+		return misses.get();
+	}
+	//===================================== property assessors ==========================================================
+
+	/**
+	 * Returns the sort objects of the given file from the cache, or reads them with the given reader and options and
+	 * caches them. The cache errors are not fatal, the file is read by the reader if the entry can't be read or written.
+	 */
+	public Collection<SortObject> readSortObjects( final ISortObjectsReader reader, final File file, final ReadOptions options )
+	{
+		String configurationKey	= reader.getConfigurationKey() + '\n' + options.getConfigurationKey();
+		File entryFile			= getEntryFile( configurationKey, file );
+		long size				= file.length();
+		long lastModified		= file.lastModified();
+
+		byte[] hash = null;
+		if( entryFile.exists() )
+		{
+			try
+			{
+				EntryHeader header = readHeader( entryFile );
+				if( header.matches( version, configurationKey, file, size ) )
+				{
+					if( header.lastModified == lastModified )
+					{
+						Collection<SortObject> res = readEntry( entryFile );
+						hits.incrementAndGet();
+						return res;
+					}
+
+					// the file was touched, check if the content is still the same
+					hash = hash( file );
+					if( Arrays.equals( hash, header.hash ) )
+					{
+						Collection<SortObject> res = readEntry( entryFile );
+						writeEntry( entryFile, new EntryHeader( version, configurationKey, file, size, lastModified, hash ), res );
+						hits.incrementAndGet();
+						return res;
+					}
+				}
+			}
+			catch( IOException e ) {
+				logger.warn( String.format( "Unable to read the cache entry: %s", entryFile.getAbsolutePath() ), e );
+			}
+		}
+
+		misses.incrementAndGet();
+		Collection<SortObject> res = reader.readSortObjects( file, options );
+		try
+		{
+			if( hash == null ) {
+				hash = hash( file );
+			}
+			writeEntry( entryFile, new EntryHeader( version, configurationKey, file, size, lastModified, hash ), res );
+		}
+		catch( IOException e ) {
+			logger.warn( String.format( "Unable to write the cache entry: %s", entryFile.getAbsolutePath() ), e );
+		}
+
+		return res;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * The part of the entry that tells which file and configuration the sort objects were read with.
+	 */
+	private static final class EntryHeader
+	{
+		EntryHeader( final String version,
+					 final String configurationKey,
+					 final File file,
+					 final long size,
+					 final long lastModified,
+					 final byte[] hash )
+		{
+			this.version			= version;
+			this.configurationKey	= configurationKey;
+			this.path				= file.getAbsolutePath();
+			this.size				= size;
+			this.lastModified		= lastModified;
+			this.hash				= hash;
+		}
+
+		EntryHeader( final DataInput in ) throws IOException
+		{
+			if( in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION ) {
+				throw new IOException( "Not a cache entry or an entry of another format" );
+			}
+
+			version				= readString( in );
+			configurationKey	= readString( in );
+			path				= readString( in );
+			size				= in.readLong();
+			lastModified		= in.readLong();
+			hash				= new byte[in.readInt()];
+			in.readFully( hash );
+		}
+
+		void write( final DataOutput out ) throws IOException
+		{
+			out.writeInt( MAGIC );
+			out.writeInt( FORMAT_VERSION );
+			writeString( out, version );
+			writeString( out, configurationKey );
+			writeString( out, path );
+			out.writeLong( size );
+			out.writeLong( lastModified );
+			out.writeInt( hash.length );
+			out.write( hash );
+		}
+
+		/**
+		 * Checks everything but the modification time.
+		 */
+		boolean matches( final String version, final String configurationKey, final File file, final long size )
+		{
+			return (this.version == null? version == null: this.version.equals( version ))
+					&& this.configurationKey.equals( configurationKey )
+					&& path.equals( file.getAbsolutePath() )
+					&& this.size == size;
+		}
+
+		final String version;
+		final String configurationKey;
+		final String path;
+		final long size;
+		final long lastModified;
+		final byte[] hash;
+	}
+
+	/**
+	 * The entry file name is the hash of the reader configuration and the content file path.
+	 */
+	private File getEntryFile( final String configurationKey, final File file )
+	{
+		MessageDigest digest = createDigest();
+		try {
+			digest.update( (configurationKey + '\n' + file.getAbsolutePath()).getBytes( "UTF-8" ) );
+		}
+		catch( UnsupportedEncodingException e ) {
+			throw new RuntimeException( e );
+		}
+
+		StringBuilder name = new StringBuilder();
+		for( byte b : digest.digest() ) {
+			name.append( String.format( "%02x", b ) );
+		}
+
+		return new File( cacheFolder, name.append( ".cache" ).toString() );
+	}
+
+	private static byte[] hash( final File file ) throws IOException
+	{
+		MessageDigest digest	= createDigest();
+		InputStream in			= new FileInputStream( file );
+		try
+		{
+			byte[] buffer = new byte[65536];
+			for( int n = in.read( buffer ); n != -1; n = in.read( buffer ) ) {
+				digest.update( buffer, 0, n );
+			}
+		}
+		finally {
+			in.close();
+		}
+
+		return digest.digest();
+	}
+
+	private static MessageDigest createDigest()
+	{
+		try {
+			return MessageDigest.getInstance( "SHA-1" );
+		}
+		catch( NoSuchAlgorithmException e ) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	private static EntryHeader readHeader( final File entryFile ) throws IOException
+	{
+		DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( entryFile ) ) );
+		try {
+			return new EntryHeader( in );
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static Collection<SortObject> readEntry( final File entryFile ) throws IOException
+	{
+		DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( entryFile ), 65536 ) );
+		try
+		{
+			new EntryHeader( in );
+
+			int count					= in.readInt();
+			Collection<SortObject> res	= new ArrayList<SortObject>( count );
+			for( int i = 0; i < count; i++ ) {
+				res.add( readSortObject( in ) );
+			}
+
+			return res;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the entry in to a temporary file first and moves it in place, a partly written entry is never used.
+	 */
+	private void writeEntry( final File entryFile, final EntryHeader header, final Collection<SortObject> sortObjects ) throws IOException
+	{
+		if( !cacheFolder.exists() && !cacheFolder.mkdirs() && !cacheFolder.exists() ) {
+			throw new IOException( String.format( "Unable to create the cache folder: %s", cacheFolder.getAbsolutePath() ) );
+		}
+
+		File temp = File.createTempFile( entryFile.getName(), ".tmp", cacheFolder );
+		try
+		{
+			DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ), 65536 ) );
+			try
+			{
+				header.write( out );
+				out.writeInt( sortObjects.size() );
+				for( SortObject sortObject : sortObjects ) {
+					writeSortObject( out, sortObject );
+				}
+			}
+			finally {
+				out.close();
+			}
+
+			Files.move( temp.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		}
+		finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Writes the sort object without its user data, see readSortObject(). The sorted runs of ExternalGlossarySorter are
+	 * written the same way.
+	 */
+	static void writeSortObject( final DataOutput out, final SortObject sortObject ) throws IOException
+	{
+		writeString( out, sortObject.getLanguageCodeL1() );
+		writeString( out, sortObject.getLanguageCodeL2() );
+		out.writeBoolean( sortObject.isPhrase() );
+		writeString( out, sortObject.getSideOneSoundFile() );
+		writeString( out, sortObject.getSideTwoSoundFile() );
+		writeString( out, sortObject.getReferencedBy() );
+		writeString( out, sortObject.getPartOfSpeech() );
+		writeStrings( out, sortObject.getSortFieldsL1() );
+		writeStrings( out, sortObject.getSortFieldsL2() );
+
+		// the fields are written in the iteration order, putting them back in the same order keeps the order
+		Map<String, String> fields = sortObject.getFieldsToIncludeMap();
+		out.writeInt( fields.size() );
+		for( Map.Entry<String, String> field : fields.entrySet() )
+		{
+			writeString( out, field.getKey() );
+			writeString( out, field.getValue() );
+		}
+	}
+
+	static SortObject readSortObject( final DataInput in ) throws IOException
+	{
+		SortObject res = new SortObject();
+		res.setLanguageCodeL1( readString( in ) );
+		res.setLanguageCodeL2( readString( in ) );
+		res.setIsPhrase( in.readBoolean() );
+		res.setSideOneSoundFile( readString( in ) );
+		res.setSideTwoSoundFile( readString( in ) );
+		res.setReferencedBy( readString( in ) );
+		res.setPartOfSpeech( readString( in ) );
+		readStrings( in, res.getSortFieldsL1() );
+		readStrings( in, res.getSortFieldsL2() );
+
+		for( int i = in.readInt(); i > 0; i-- ) {
+			res.getFieldsToIncludeMap().put( readString( in ), readString( in ) );
+		}
+
+		return res;
+	}
+
+	private static void writeStrings( final DataOutput out, final List<String> strings ) throws IOException
+	{
+		out.writeInt( strings.size() );
+		for( String s : strings ) {
+			writeString( out, s );
+		}
+	}
+
+	private static void readStrings( final DataInput in, final List<String> strings ) throws IOException
+	{
+		for( int i = in.readInt(); i > 0; i-- ) {
+			strings.add( readString( in ) );
+		}
+	}
+
+	/**
+	 * Writes the string the same way as DataOutput.writeUTF() does, but with the length of any size and the null
+	 * string as -1. Unlike the standard UTF-8 the encoding keeps the unpaired surrogates.
+	 */
+	private static void writeString( final DataOutput out, final String s ) throws IOException
+	{
+		if( s == null )
+		{
+			out.writeInt( -1 );
+			return;
+		}
+
+		int length = 0;
+		for( int i = 0; i < s.length(); i++ )
+		{
+			char c = s.charAt( i );
+			length += c >= 0x0001 && c <= 0x007F? 1: c <= 0x07FF? 2: 3;
+		}
+
+		byte[] bytes	= new byte[length];
+		int n			= 0;
+		for( int i = 0; i < s.length(); i++ )
+		{
+			char c = s.charAt( i );
+			if( c >= 0x0001 && c <= 0x007F ) {
+				bytes[n++] = (byte)c;
+			}
+			else if( c <= 0x07FF )
+			{
+				bytes[n++] = (byte)(0xC0 | ((c >> 6) & 0x1F));
+				bytes[n++] = (byte)(0x80 | (c & 0x3F));
+			}
+			else
+			{
+				bytes[n++] = (byte)(0xE0 | ((c >> 12) & 0x0F));
+				bytes[n++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+				bytes[n++] = (byte)(0x80 | (c & 0x3F));
+			}
+		}
+
+		out.writeInt( length );
+		out.write( bytes );
+	}
+
+	private static String readString( final DataInput in ) throws IOException
+	{
+		int length = in.readInt();
+		if( length == -1 ) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		in.readFully( bytes );
+
+		char[] chars	= new char[length];
+		int count		= 0;
+		for( int i = 0; i < length; )
+		{
+			int b = bytes[i] & 0xFF;
+			if( b < 0x80 )
+			{
+				chars[count++] = (char)b;
+				i++;
+			}
+			else if( (b & 0xE0) == 0xC0 && i + 1 < length )
+			{
+				chars[count++] = (char)(((b & 0x1F) << 6) | (bytes[i + 1] & 0x3F));
+				i += 2;
+			}
+			else if( (b & 0xF0) == 0xE0 && i + 2 < length )
+			{
+				chars[count++] = (char)(((b & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F));
+				i += 3;
+			}
+			else {
+				throw new IOException( "Malformed string in the cache entry" );
+			}
+		}
+
+		return new String( chars, 0, count );
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static final int MAGIC			= 0x474c5343;
+
+	/**
+	 * Has to be changed whenever the entry layout changes.
+	 */
+	private static final int FORMAT_VERSION	= 1;
+
+	private File cacheFolder	= null;
+	private String version		= null;
+
+	private final AtomicInteger hits	= new AtomicInteger();
+	private final AtomicInteger misses	= new AtomicInteger();
+
+	private Logger logger = Logger.getLogger( this.getClass() );
+	//------------------------------------------------------------------------------------------------------------------
+}
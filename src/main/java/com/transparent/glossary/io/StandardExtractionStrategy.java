@@ -27,16 +27,19 @@ public class StandardExtractionStrategy implements ExtractionStrategy
 
     private final String theUnitRoot;
 
+    private final String theUnitNumber;
+
     public StandardExtractionStrategy( final File inputFile )
     {
         theUnitRoot = calculateUnitRoot( inputFile );
+        final String unitNumber = extractUnitNumberFromUnitRoot( theUnitRoot );
+        theUnitNumber = new StringBuilder( "Unit " ).append( unitNumber ).toString().trim();
     }
 
     @Override
     public String determineUnitNumber()
     {
-        final String unitNumber = extractUnitNumberFromUnitRoot( theUnitRoot );
-        return new StringBuilder( "Unit " ).append( unitNumber ).toString().trim();
+        return theUnitNumber;
     }
 
     @Override
@@ -46,7 +49,7 @@ public class StandardExtractionStrategy implements ExtractionStrategy
     }
 
     @Override
-    public String determinePartOfSpeech()
+    public String determinePartOfSpeech( final String cardPartOfSpeech )
     {
         return "uncategorized";
     }
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.io;
+
+import com.transparent.glossary.io.util.XmlFileReader;
+import com.transparent.glossary.model.SortObject;
+import org.apache.log4j.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * This class reads the same content files (b4x, tt, etc) and produces the same sortable objects as
+ * GlossaryInputDataReader, but it pulls the content with StAX instead of loading the whole file in to a DOM document.
+ * A sort object is built as soon as the end of its content element is read, only the values of the current element
+ * are kept in memory.
+ *
+ * Only a subset of XPath that covers the reader configurations is supported:
+ * - the data object collection XPath is an absolute element path, "*" matches any element, e.g. /list/cards/*
+ * - all other expressions select the first text node (text()) or an attribute (@name) of an element path; relative
+ *   paths are evaluated against the data object elements, absolute ones against the document, e.g. side1_sound/@url,
+ *   text(), /tt/@lang, /list/head/name/text()
+ * Values of the absolute expressions have to appear in the content before the data object elements, as they do in the
+ * b4x and tt content. Element and attribute names are matched without namespace prefixes.
+ * @see com.transparent.glossary.io.GlossaryInputDataReader
+ */
+public class StreamingGlossaryInputDataReader extends AbstractGlossaryInputDataReader
+{
+	/**
+	 * Checks that the expression is supported by this reader.
+	 */
+	@Override
+	protected void registerExpression( final String xPathExpression )
+	{
+		if( xPathExpression != null ) {
+			parsePath( xPathExpression );
+		}
+	}
+
+	@Override
+	protected Collection<SortObject> parseSortObjects( final File inputFile, final ReadOptions options ) throws Exception
+	{
+		Collection<SortObject> res	= new ArrayList<SortObject>();
+		String[] objectPath			= parsePath( getDataObjectCollectionXPath() );
+
+		if( objectPath[objectPath.length - 1] == null || objectPath[objectPath.length - 1].startsWith( "@" ) )
+		{
+			String msg = String.format( "Data object collection XPath should select elements: %s", getDataObjectCollectionXPath() );
+			logger.error( msg );
+			throw new RuntimeException( msg );
+		}
+
+		// document values are shared by all data objects, object values are reset for every data object
+		Map<String, Query> documentQueries	= new LinkedHashMap<String, Query>();
+		Map<String, Query> objectQueries	= new LinkedHashMap<String, Query>();
+		for( String xPathExpression : new String[]{ getLanguageCodeL1XPath(), getLanguageCodeL2XPath(), getNameXPath() } )
+		{
+			if( xPathExpression != null ) {
+				documentQueries.put( xPathExpression, new Query( new String[0], xPathExpression ) );
+			}
+		}
+		for( String xPathExpression : getObjectXPaths() )
+		{
+			if( xPathExpression.startsWith( "/" ) ) {
+				documentQueries.put( xPathExpression, new Query( new String[0], xPathExpression ) );
+			}
+			else {
+				objectQueries.put( xPathExpression, new Query( objectPath, xPathExpression ) );
+			}
+		}
+		List<Query> queries = new ArrayList<Query>( documentQueries.values() );
+		queries.addAll( objectQueries.values() );
+
+		XMLStreamReader xml		= null;
+		List<String> elements	= new ArrayList<String>();
+		StringBuilder text		= new StringBuilder();
+		int objectDepth			= 0;
+		boolean documentRead	= false;
+		String langCodeL1		= null;
+		String langCodeL2		= null;
+		ExtractionStrategy strategy	= null;
+		try
+		{
+			xml = XmlFileReader.createXmlStreamReader( inputFactories.get(), inputFile );
+			while( xml.hasNext() )
+			{
+				switch( xml.next() )
+				{
+					case XMLStreamConstants.START_ELEMENT:
+						flushText( text, elements, queries );
+						elements.add( localName( xml.getLocalName() ) );
+
+						if( objectDepth == 0 && matches( objectPath, objectPath.length, elements ) )
+						{
+							objectDepth = elements.size();
+							for( Query query : objectQueries.values() ) {
+								query.value = null;
+							}
+							if( !documentRead )
+							{
+								// the document values are known by now
+								documentRead = true;
+								langCodeL1	= getLanguageCodeL1XPath() != null? documentValue( documentQueries, getLanguageCodeL1XPath() ).trim().toUpperCase(): null;
+								langCodeL2	= getLanguageCodeL2XPath() != null? documentValue( documentQueries, getLanguageCodeL2XPath() ).trim().toUpperCase(): null;
+								String name	= getNameXPath() != null? documentValue( documentQueries, getNameXPath() ).trim(): "";
+								strategy	= createExtractionStrategy( name, inputFile, options );
+							}
+						}
+
+						for( Query query : queries )
+						{
+							if( query.value == null && query.attribute != null && matches( query.path, query.path.length, elements ) ) {
+								query.value = attributeValue( xml, query.attribute );
+							}
+						}
+						break;
+
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.SPACE:
+						text.append( xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength() );
+						break;
+
+					case XMLStreamConstants.CDATA:
+						// CDATA section is a text node of its own
+						flushText( text, elements, queries );
+						text.append( xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength() );
+						flushText( text, elements, queries );
+						break;
+
+					case XMLStreamConstants.END_ELEMENT:
+						flushText( text, elements, queries );
+						if( objectDepth == elements.size() )
+						{
+							final Map<String, Query> document	= documentQueries;
+							final Map<String, Query> object		= objectQueries;
+							res.add( buildSortObject( new ObjectValues()
+							{
+								public String get( final String xPathExpression ) {
+									return xPathExpression.startsWith( "/" )? documentValue( document, xPathExpression ): documentValue( object, xPathExpression );
+								}
+							}, langCodeL1, langCodeL2, strategy, options ) );
+							objectDepth = 0;
+						}
+						elements.remove( elements.size() - 1 );
+						break;
+
+					case XMLStreamConstants.COMMENT:
+					case XMLStreamConstants.PROCESSING_INSTRUCTION:
+						flushText( text, elements, queries );
+						break;
+				}
+			}
+		}
+		finally
+		{
+			if( xml != null ) {
+				xml.close();
+			}
+		}
+
+		return res;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * The state of a single expression while the content is read. The expression selects the first text node or the
+	 * attribute of the elements matching the element path.
+	 */
+	private static class Query
+	{
+		Query( final String[] contextPath, final String xPathExpression )
+		{
+			String[] steps	= parsePath( xPathExpression );
+			path			= new String[contextPath.length + steps.length - 1];
+			System.arraycopy( contextPath, 0, path, 0, contextPath.length );
+			System.arraycopy( steps, 0, path, contextPath.length, steps.length - 1 );
+			attribute		= steps[steps.length - 1] == null? null: steps[steps.length - 1].substring( 1 );
+
+			if( steps[steps.length - 1] != null && !steps[steps.length - 1].startsWith( "@" ) ) {
+				throw new IllegalArgumentException( String.format( "XPath expression should select a text node or an attribute: %s", xPathExpression ) );
+			}
+		}
+
+		/**
+		 * The element path from the document root.
+		 */
+		final String[] path;
+
+		/**
+		 * The attribute name or null for the text node.
+		 */
+		final String attribute;
+
+		/**
+		 * The value read, null until the value is found.
+		 */
+		String value = null;
+	}
+
+	/**
+	 * Splits the expression in to the element names. The last item is the attribute step ("@name") or null for the text()
+	 * step; if the expression selects elements the last item is the element name.
+	 */
+	private static String[] parsePath( final String xPathExpression )
+	{
+		String path = xPathExpression.startsWith( "/" )? xPathExpression.substring( 1 ): xPathExpression;
+
+		String[] steps = path.split( "/", -1 );
+		for( int i = 0; i < steps.length; i++ )
+		{
+			boolean last = i == steps.length - 1;
+			if( last && steps[i].equals( "text()" ) ) {
+				steps[i] = null;
+			}
+			else if( !(last && steps[i].startsWith( "@" ) && theNamePattern.matcher( steps[i].substring( 1 ) ).matches())
+					 && !steps[i].equals( "*" )
+					 && !theNamePattern.matcher( steps[i] ).matches() )
+			{
+				throw new IllegalArgumentException( String.format( "XPath expression is not supported by the streaming reader: %s", xPathExpression ) );
+			}
+		}
+
+		return steps;
+	}
+
+	/**
+	 * Checks whether the current element path matches the first length elements of the given path.
+	 */
+	private static boolean matches( final String[] path, final int length, final List<String> elements )
+	{
+		if( length != elements.size() ) {
+			return false;
+		}
+
+		for( int i = 0; i < length; i++ )
+		{
+			if( !path[i].equals( "*" ) && !localName( path[i] ).equals( elements.get( i ) ) ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Assigns the collected text node to the text queries of the current element and starts a new text node.
+	 */
+	private static void flushText( final StringBuilder text, final List<String> elements, final List<Query> queries )
+	{
+		if( text.length() == 0 ) {
+			return;
+		}
+
+		for( Query query : queries )
+		{
+			if( query.value == null && query.attribute == null && matches( query.path, query.path.length, elements ) ) {
+				query.value = text.toString();
+			}
+		}
+
+		text.setLength( 0 );
+	}
+
+	private static String attributeValue( final XMLStreamReader xml, final String attribute )
+	{
+		String name = localName( attribute );
+		for( int i = 0; i < xml.getAttributeCount(); i++ )
+		{
+			if( localName( xml.getAttributeLocalName( i ) ).equals( name ) ) {
+				return xml.getAttributeValue( i );
+			}
+		}
+
+		return null;
+	}
+
+	private static String documentValue( final Map<String, Query> queries, final String xPathExpression )
+	{
+		String value = queries.get( xPathExpression ).value;
+		return value == null? "": value;
+	}
+
+	/**
+	 * Strips the namespace prefix from the name.
+	 */
+	private static String localName( final String name ) {
+		return name.substring( name.indexOf( ':' ) + 1 );
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static final Pattern theNamePattern = Pattern.compile( "[\\w.\\-:]+" );
+
+	/**
+	 * The factories are not guaranteed to be thread safe, every thread reading the content gets its own.
+	 */
+	private final ThreadLocal<XMLInputFactory> inputFactories = new ThreadLocal<XMLInputFactory>()
+	{
+		@Override
+		protected XMLInputFactory initialValue()
+		{
+			XMLInputFactory res = XMLInputFactory.newInstance();
+			// the DOM document is not namespace aware either, and keeps CDATA sections as separate text nodes
+			res.setProperty( XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE );
+			res.setProperty( XMLInputFactory.IS_COALESCING, Boolean.FALSE );
+			return res;
+		}
+	};
+
+	private Logger logger = Logger.getLogger( this.getClass() );
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -3,19 +3,24 @@
  */
 package com.transparent.glossary.io;
 
+import com.transparent.glossary.io.util.XPathCache;
 import com.transparent.glossary.io.util.XmlFileReader;
 import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
 import javax.xml.namespace.QName;
-import javax.xml.xpath.XPath;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-import java.io.File;
+import java.io.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * This class represents file filter that filters XML files based on a specific content.
@@ -34,6 +39,7 @@ public class XmlContentFileFilter extends PatternFileFilter
 
 	public void setXPath( final String xPath ) {
 		this.xPath = xPath;
+		xPathCache.register( xPath );
 	}
 
 	public String getExpectedResult() {
@@ -57,24 +63,44 @@ public class XmlContentFileFilter extends PatternFileFilter
 	public void setExpectedResult( final String expectedResult ) {
 		this.expectedResult = expectedResult;
 	}
+
+	public boolean isSniffContent() {
+		return sniffContent;
+	}
+
+	/**
+	 * If set to true (default) the length/size expressions of the simple element paths (like /list/cards/*) are
+	 * checked by streaming the file content only until the outcome is known, e.g. until the first element is found for
+	 * length(!=0), instead of parsing the whole file in to a DOM document. Other expressions are always checked against
+	 * the DOM document.
+	 */
+	public void setSniffContent( final boolean sniffContent ) {
+		this.sniffContent = sniffContent;
+	}
 	//================================== property accessors ============================================================
 
 	/**
 	 * Accepts only files that have XML extension and also have specific content at the given XPath.
 	 */
 	@Override
-	public boolean accept( final File pathname )
+	public boolean accept( final File pathname, final String absolutePath )
 	{
 		boolean res = false;
 		// treat patterns as exclude file patterns
-		boolean acceptedByExcludePattern = this.getPatterns().size() > 0 && super.accept( pathname );
-		if( !acceptedByExcludePattern && pathname.getAbsolutePath().endsWith( "xml" ) )
+		boolean acceptedByExcludePattern = this.getPatterns().size() > 0 && acceptPath( absolutePath );
+		if( !acceptedByExcludePattern && absolutePath.endsWith( "xml" ) )
 		{
 			try
 			{
-				XPath xpath	= XPathFactory.newInstance().newXPath();
+				String[] functionData = expectedResult.split( "[\\(|\\)]" );
+				assert functionData.length == 2;
 
-				res = evaluate( xpath, XmlFileReader.readXml( pathname ) );
+				if( sniffContent && isSniffable( functionData[0], functionData[1] ) ) {
+					res = sniff( pathname, functionData[1] );
+				}
+				else {
+					res = evaluate( XmlFileReader.readXml( pathname ) );
+				}
 			}
 			catch( Exception e )
 			{
@@ -96,7 +122,7 @@ public class XmlContentFileFilter extends PatternFileFilter
 	 * This method evalueates a given XPath and then checks if the value evaluated by the XPath matches expected
 	 * expression.
 	 */
-	private boolean evaluate( final XPath xpath, final Document doc ) throws XPathExpressionException
+	private boolean evaluate( final Document doc ) throws XPathExpressionException
 	{
 		boolean res = false;
 
@@ -108,25 +134,15 @@ public class XmlContentFileFilter extends PatternFileFilter
 		// check the length/size expression
 		if( function.equals( "length" ) || function.equals( "size" ) )
 		{
-			NodeList nodes = (NodeList)xpath.evaluate( xPath, doc, expressionToNodeTypeMap.get( function ) );
-			if( nodes != null )
-			{
-				if( argument.startsWith( "!=" ) )
-				{
-					String argData	= argument.substring( 2 );
-					res				= nodes.getLength() != Integer.parseInt( argData );
-				}
-				else if( argument.startsWith( "==" ) )
-				{
-					String argData	= argument.substring( 2 );
-					res				= nodes.getLength() == Integer.parseInt( argData );
-				}
+			NodeList nodes = (NodeList)xPathCache.get( xPath ).evaluate( doc, expressionToNodeTypeMap.get( function ) );
+			if( nodes != null ) {
+				res = compare( nodes.getLength(), argument );
 			}
 		}
 		// check value expression
 		else if( function.equals( "value" ) )
 		{
-			String nodeValue	= (String)xpath.evaluate( xPath, doc, expressionToNodeTypeMap.get( function ) );
+			String nodeValue	= (String)xPathCache.get( xPath ).evaluate( doc, expressionToNodeTypeMap.get( function ) );
 			String argData		= argument.substring( 2 );
 			res					= String.valueOf( nodeValue ).equals( argData );
 		}
@@ -140,9 +156,123 @@ public class XmlContentFileFilter extends PatternFileFilter
 		return res;
 	}
 
+	/**
+	 * Checks the number of nodes against the length/size argument.
+	 */
+	private boolean compare( final int length, final String argument )
+	{
+		boolean res = false;
+
+		if( argument.startsWith( "!=" ) )
+		{
+			String argData	= argument.substring( 2 );
+			res				= length != Integer.parseInt( argData );
+		}
+		else if( argument.startsWith( "==" ) )
+		{
+			String argData	= argument.substring( 2 );
+			res				= length == Integer.parseInt( argData );
+		}
+
+		return res;
+	}
+
+	/**
+	 * The content can be sniffed for the length/size expressions with a known operator and an absolute path of the
+	 * element names (or "*").
+	 */
+	private boolean isSniffable( final String function, final String argument )
+	{
+		return (function.equals( "length" ) || function.equals( "size" ))
+			   && (argument.startsWith( "!=" ) || argument.startsWith( "==" ))
+			   && theElementPathPattern.matcher( xPath ).matches();
+	}
+
+	/**
+	 * Streams the file content and counts the elements at the XPath until the outcome of the length/size expression is
+	 * known. The content is cleaned up the same way as for the DOM document.
+	 */
+	private boolean sniff( final File pathname, final String argument ) throws Exception
+	{
+		String[] path	= xPath.substring( 1 ).split( "/" );
+		// once there are more elements than the argument the outcome can't change
+		int limit		= Integer.parseInt( argument.substring( 2 ) ) + 1;
+		int count		= 0;
+
+		XMLStreamReader xml		= null;
+		List<String> elements	= new ArrayList<String>();
+		try
+		{
+			xml = XmlFileReader.createXmlStreamReader( inputFactories.get(), pathname );
+			while( count < limit && xml.hasNext() )
+			{
+				int event = xml.next();
+				if( event == XMLStreamConstants.START_ELEMENT )
+				{
+					String name = xml.getLocalName();
+					elements.add( name.substring( name.indexOf( ':' ) + 1 ) );
+
+					int depth = elements.size() - 1;
+					if( depth < path.length && !path[depth].equals( "*" ) && !path[depth].equals( elements.get( depth ) ) )
+					{
+						// the root element doesn't match, nothing in the document can
+						if( depth == 0 ) {
+							break;
+						}
+					}
+					else if( depth == path.length - 1 && matches( path, elements ) ) {
+						count++;
+					}
+				}
+				else if( event == XMLStreamConstants.END_ELEMENT ) {
+					elements.remove( elements.size() - 1 );
+				}
+			}
+		}
+		finally
+		{
+			if( xml != null ) {
+				xml.close();
+			}
+		}
+
+		return compare( count, argument );
+	}
+
+	private boolean matches( final String[] path, final List<String> elements )
+	{
+		for( int i = 0; i < path.length; i++ )
+		{
+			if( !path[i].equals( "*" ) && !path[i].equals( elements.get( i ) ) ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	//------------------------------------------------------------------------------------------------------------------
 	private String xPath			= null;
 	private String expectedResult	= null;
+	private boolean sniffContent	= true;
+
+	private final XPathCache xPathCache = new XPathCache();
+
+	/**
+	 * The factories are not guaranteed to be thread safe, every thread sniffing the content gets its own.
+	 */
+	private final ThreadLocal<XMLInputFactory> inputFactories = new ThreadLocal<XMLInputFactory>()
+	{
+		@Override
+		protected XMLInputFactory initialValue()
+		{
+			XMLInputFactory res = XMLInputFactory.newInstance();
+			res.setProperty( XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE );
+			return res;
+		}
+	};
+
+	private static final Pattern theElementPathPattern = Pattern.compile( "(/([\\w.\\-]+|\\*))+" );
 
 	private Logger logger = Logger.getLogger( this.getClass() );
 
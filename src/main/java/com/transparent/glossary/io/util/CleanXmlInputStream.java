@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.io.util;
+
+import org.xml.sax.InputSource;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Input stream that applies the same clean up to the UTF-8 bytes of the XML content as CleanXmlReader does to its
+ * characters, so the content can be passed to the parser without decoding it first:
+ * - all unwanted bytes before the first '<' (e.g. the BOM) are skipped;
+ * - line breaks are dropped;
+ * - creator_application elements are skipped since they can contain illegal characters.
+ * The characters the clean up looks for are ASCII, their bytes never occur inside the UTF-8 sequence of another
+ * character. The bytes are read from a buffer (see readContent()) and copied straight in to the parser's buffer, the
+ * skipped parts are found by looking ahead in the buffer, not by holding them back.
+ * Use open() to get the cleaned up content of a file.
+ */
+public class CleanXmlInputStream extends InputStream
+{
+	/**
+	 * Size of the files from which the content is memory mapped.
+	 */
+	public static final long MAP_THRESHOLD = 256 * 1024;
+
+	public CleanXmlInputStream( final ByteBuffer content ) {
+		this.content = content;
+	}
+
+	/**
+	 * Returns the cleaned up content of the file. The valid UTF-8 content is passed to the parser as bytes with the
+	 * encoding set to UTF-8, the same encoding the content has always been read with whatever its declaration says.
+	 * The content with malformed bytes is decoded with the malformed bytes replaced, the same as InputStreamReader
+	 * does, and cleaned up by CleanXmlReader.
+	 * The file is read as the input source is returned, the input source doesn't have to be closed.
+	 */
+	public static InputSource open( final File file ) throws IOException
+	{
+		ByteBuffer content = readContent( file );
+		if( isUtf8( content ) )
+		{
+			InputSource res = new InputSource( new CleanXmlInputStream( content ) );
+			res.setEncoding( "UTF-8" );
+			return res;
+		}
+
+		CharBuffer chars = StandardCharsets.UTF_8.decode( content );
+		return new InputSource( new CleanXmlReader( new CharArrayReader( chars.array(), chars.arrayOffset() + chars.position(), chars.remaining() ) ) );
+	}
+
+	/**
+	 * Returns the content of the file, memory mapped if the file has at least MAP_THRESHOLD bytes. The smaller files
+	 * are read in to a buffer of the file size, the mapping costs more than it saves for them.
+	 */
+	public static ByteBuffer readContent( final File file ) throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile( file, "r" );
+		try
+		{
+			FileChannel channel = in.getChannel();
+			long size			= channel.size();
+			if( size >= MAP_THRESHOLD ) {
+				return channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+			}
+
+			ByteBuffer res = ByteBuffer.allocate( (int)size );
+			while( res.hasRemaining() && channel.read( res ) != -1 ) {
+				// keep reading until the buffer is full
+			}
+			res.flip();
+			return res;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Checks that the content is well formed UTF-8, the same as the JDK decoder checks it: no overlong sequences, no
+	 * encoded surrogates and nothing above U+10FFFF. The position of the buffer is not changed.
+	 */
+	public static boolean isUtf8( final ByteBuffer content )
+	{
+		int limit = content.limit();
+		for( int i = content.position(); i < limit; )
+		{
+			int b = content.get( i ) & 0xFF;
+			if( b < 0x80 )
+			{
+				i++;
+				continue;
+			}
+
+			int length;
+			int min		= 0x80;
+			int max		= 0xBF;
+			if( b >= 0xC2 && b <= 0xDF ) {
+				length = 2;
+			}
+			else if( b >= 0xE0 && b <= 0xEF )
+			{
+				length = 3;
+				if( b == 0xE0 ) {
+					min = 0xA0;
+				}
+				else if( b == 0xED ) {
+					max = 0x9F;
+				}
+			}
+			else if( b >= 0xF0 && b <= 0xF4 )
+			{
+				length = 4;
+				if( b == 0xF0 ) {
+					min = 0x90;
+				}
+				else if( b == 0xF4 ) {
+					max = 0x8F;
+				}
+			}
+			else {
+				return false;
+			}
+
+			if( i + length > limit ) {
+				return false;
+			}
+			for( int j = 1; j < length; j++ )
+			{
+				int c = content.get( i + j ) & 0xFF;
+				if( j == 1? c < min || c > max: c < 0x80 || c > 0xBF ) {
+					return false;
+				}
+			}
+			i += length;
+		}
+
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		int n = read( single, 0, 1 );
+		return n == -1? -1: single[0] & 0xFF;
+	}
+
+	@Override
+	public int read( final byte[] b, final int off, final int len ) throws IOException
+	{
+		if( len == 0 ) {
+			return 0;
+		}
+
+		int count = 0;
+		while( count < len && content.hasRemaining() )
+		{
+			int position	= content.position();
+			byte c			= content.get( position );
+			if( !started )
+			{
+				if( c != '<' )
+				{
+					content.position( position + 1 );
+					continue;
+				}
+				started = true;
+			}
+
+			if( c == '\n' || c == '\r' )
+			{
+				content.position( position + 1 );
+				continue;
+			}
+
+			if( c == '<' )
+			{
+				int end = skipCreatorApplication( position );
+				if( end != -1 )
+				{
+					content.position( end );
+					continue;
+				}
+			}
+
+			// copy the bytes up to the next one the clean up has to look at
+			int runEnd	= position + 1;
+			int maxEnd	= Math.min( content.limit(), position + len - count );
+			while( runEnd < maxEnd )
+			{
+				byte next = content.get( runEnd );
+				if( next == '<' || next == '\n' || next == '\r' ) {
+					break;
+				}
+				runEnd++;
+			}
+			content.get( b, off + count, runEnd - position );
+			count += runEnd - position;
+		}
+
+		return count == 0? -1: count;
+	}
+
+	@Override
+	public int available() {
+		return content.remaining();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Returns the position after the closing tag if a creator_application element starts at the given position, -1
+	 * otherwise. The element that isn't closed is left as is.
+	 */
+	private int skipCreatorApplication( final int position )
+	{
+		if( unclosed ) {
+			return -1;
+		}
+
+		int end = match( position, OPENING_TAG );
+		if( end == -1 ) {
+			return -1;
+		}
+
+		for( int i = end; i < content.limit(); i++ )
+		{
+			if( content.get( i ) == '<' && (end = match( i, CLOSING_TAG )) != -1 ) {
+				return end;
+			}
+		}
+
+		// no closing tag can be found after any other opening tag either
+		unclosed = true;
+		return -1;
+	}
+
+	/**
+	 * Returns the position after the tag if the content matches the tag at the given position, the line breaks are
+	 * skipped the same as the clean up drops them. Returns -1 if the content doesn't match.
+	 */
+	private int match( final int position, final byte[] tag )
+	{
+		int i = position;
+		for( byte expected : tag )
+		{
+			byte c;
+			do
+			{
+				if( i == content.limit() ) {
+					return -1;
+				}
+				c = content.get( i++ );
+			}
+			while( c == '\n' || c == '\r' );
+
+			if( c != expected ) {
+				return -1;
+			}
+		}
+
+		return i;
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static final byte[] OPENING_TAG	= "<creator_application>".getBytes( StandardCharsets.US_ASCII );
+	private static final byte[] CLOSING_TAG	= "</creator_application>".getBytes( StandardCharsets.US_ASCII );
+
+	private final ByteBuffer content;
+	private final byte[] single	= new byte[1];
+
+	private boolean started		= false;
+	private boolean unclosed	= false;
+	//------------------------------------------------------------------------------------------------------------------
+}
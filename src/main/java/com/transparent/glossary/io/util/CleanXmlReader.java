@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.io.util;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader that applies the same clean up to the XML content as XmlFileReader.readXml() does, but without loading the
+ * whole content in to memory:
+ * - all unwanted characters before the first '<' are skipped;
+ * - line breaks are dropped, the lines are joined the same way as read line by line;
+ * - creator_application elements are skipped since they can contain illegal characters.
+ * Every creator_application element is skipped on its own: unlike the greedy expression of the XmlFileReader hack,
+ * which removes everything from the first opening tag to the last closing tag, the content between two elements is
+ * kept. The content files contain no more than one, so the clean up is the same for them.
+ */
+public class CleanXmlReader extends FilterReader
+{
+	public CleanXmlReader( final Reader in ) {
+		super( in );
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		while( outputPosition == output.length() )
+		{
+			output.setLength( 0 );
+			outputPosition = 0;
+			if( !fill() ) {
+				return -1;
+			}
+		}
+
+		return output.charAt( outputPosition++ );
+	}
+
+	@Override
+	public int read( final char[] cbuf, final int off, final int len ) throws IOException
+	{
+		if( len == 0 ) {
+			return 0;
+		}
+
+		int count = 0;
+		while( count < len )
+		{
+			if( outputPosition == output.length() )
+			{
+				output.setLength( 0 );
+				outputPosition = 0;
+				// don't read more content once something can be returned
+				if( count > 0 || !fill() ) {
+					break;
+				}
+				continue;
+			}
+
+			int n = Math.min( len - count, output.length() - outputPosition );
+			output.getChars( outputPosition, outputPosition + n, cbuf, off + count );
+			outputPosition += n;
+			count += n;
+		}
+
+		return count == 0? -1: count;
+	}
+
+	@Override
+	public long skip( final long n ) throws IOException
+	{
+		long count = 0;
+		while( count < n && read() != -1 ) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void mark( final int readAheadLimit ) throws IOException {
+		throw new IOException( "mark() is not supported" );
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException( "reset() is not supported" );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Reads the next chunk of the underlying content in to the output buffer.
+	 * @return false if the end of the underlying content has been reached and there is nothing left to output
+	 */
+	private boolean fill() throws IOException
+	{
+		int n = in.read( input, 0, input.length );
+		if( n == -1 )
+		{
+			// creator_application wasn't closed, the content is left as is
+			output.append( held );
+			held.setLength( 0 );
+			return output.length() > 0;
+		}
+
+		for( int i = 0; i < n; i++ ) {
+			accept( input[i] );
+		}
+
+		return true;
+	}
+
+	/**
+	 * Passes a single content character through the clean up rules.
+	 */
+	private void accept( final char c )
+	{
+		if( c == '\n' || c == '\r' ) {
+			return;
+		}
+
+		if( !started )
+		{
+			if( c != '<' ) {
+				return;
+			}
+			started = true;
+		}
+
+		if( skipping )
+		{
+			held.append( c );
+			if( c == CLOSING_TAG.charAt( matched ) ) {
+				matched++;
+			}
+			else {
+				matched = c == CLOSING_TAG.charAt( 0 )? 1: 0;
+			}
+
+			if( matched == CLOSING_TAG.length() )
+			{
+				held.setLength( 0 );
+				skipping	= false;
+				matched		= 0;
+			}
+		}
+		else if( c == OPENING_TAG.charAt( matched ) )
+		{
+			held.append( c );
+			matched++;
+			if( matched == OPENING_TAG.length() )
+			{
+				skipping	= true;
+				matched		= 0;
+			}
+		}
+		else
+		{
+			output.append( held );
+			held.setLength( 0 );
+			matched = 0;
+			if( c == OPENING_TAG.charAt( 0 ) )
+			{
+				held.append( c );
+				matched = 1;
+			}
+			else {
+				output.append( c );
+			}
+		}
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static final String OPENING_TAG	= "<creator_application>";
+	private static final String CLOSING_TAG	= "</creator_application>";
+
+	private final char[] input				= new char[8192];
+	private final StringBuilder output		= new StringBuilder();
+	private final StringBuilder held		= new StringBuilder();
+
+	private int outputPosition	= 0;
+	private int matched			= 0;
+	private boolean started		= false;
+	private boolean skipping	= false;
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.io.util;
+
+import org.apache.log4j.Logger;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of the compiled XPath expressions.
+ * The compiled expressions (as well as the XPath objects that compile them) are not thread safe, so every thread that
+ * uses the cache gets its own compiled copy of an expression. Each expression is compiled only once per thread.
+ */
+public class XPathCache
+{
+	/**
+	 * Compiles the given expression for the calling thread. This is used to validate the expressions when they are
+	 * configured, so that a bad expression is reported before any content is read.
+	 */
+	public void register( final String expression )
+	{
+		if( expression != null ) {
+			get( expression );
+		}
+	}
+
+	/**
+	 * Returns the compiled expression for the calling thread, the expression is compiled when it is requested by the
+	 * thread for the first time.
+	 */
+	public XPathExpression get( final String expression )
+	{
+		Map<String, XPathExpression> expressions = compiledExpressions.get();
+
+		XPathExpression res = expressions.get( expression );
+		if( res == null )
+		{
+			try {
+				res = xPaths.get().compile( expression );
+			}
+			catch( XPathExpressionException e )
+			{
+				String msg = String.format( "Unable to compile XPath expression: %s", expression );
+				logger.error( msg, e );
+				throw new RuntimeException( msg, e );
+			}
+			expressions.put( expression, res );
+		}
+
+		return res;
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private final ThreadLocal<XPath> xPaths = new ThreadLocal<XPath>()
+	{
+		@Override
+		protected XPath initialValue() {
+			return XPathFactory.newInstance().newXPath();
+		}
+	};
+
+	private final ThreadLocal<Map<String, XPathExpression>> compiledExpressions
+													= new ThreadLocal<Map<String, XPathExpression>>()
+	{
+		@Override
+		protected Map<String, XPathExpression> initialValue() {
+			return new HashMap<String, XPathExpression>();
+		}
+	};
+
+	private final Logger logger = Logger.getLogger( this.getClass() );
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.io.util;
+
+/**
+ * This class strips the XHTML from the field values of the cards in one pass over the characters. It removes the same
+ * parts the regular expressions applied one after another used to remove:
+ * - the CDATA preamble at the start of the value, "\A<!\[CDATA\[";
+ * - the CDATA closing characters at the end of the value, "\]\]>\Z", a final line break is kept;
+ * - the tags, "<(?:[^>"']|"[^"]*"|'[^']*')*>", a '>' inside a quoted attribute value does not end the tag and a '<'
+ *   whose tag has an unclosed quote or no '>' is kept;
+ * - the entity names, "\x26\w*[\x26\x3B]", found in the value the tags are removed from, so "&a<b/>;" is removed
+ *   as a whole.
+ * The values without '<', '>' and '&' are returned as they are.
+ */
+public class XhtmlStripper
+{
+	public static String strip( final String dirty )
+	{
+		if( !needsStripping( dirty ) ) {
+			return dirty;
+		}
+
+		String text	= dirty;
+		int from	= dirty.startsWith( OPENING_CDATA_TAG )? OPENING_CDATA_TAG.length(): 0;
+		int to		= dirty.length();
+
+		int terminator = finalLineTerminatorLength( dirty, from );
+		int closing = to - terminator - CLOSING_CDATA_TAG.length();
+		if( closing >= from && dirty.startsWith( CLOSING_CDATA_TAG, closing ) )
+		{
+			if( terminator == 0 ) {
+				to = closing;
+			}
+			else
+			{
+				// the line break after the closing characters is kept, join it to the rest of the value
+				text	= dirty.substring( from, closing ) + dirty.substring( to - terminator );
+				from	= 0;
+				to		= text.length();
+			}
+		}
+
+		char[] res			= new char[to - from];
+		int length			= 0;
+		int entityStart		= -1;
+		for( int i = from; i < to; )
+		{
+			char c = text.charAt( i );
+			if( c == '<' )
+			{
+				int end = tagEnd( text, i, to );
+				if( end != -1 )
+				{
+					i = end;
+					continue;
+				}
+			}
+			i++;
+
+			// the entity names are looked for in the characters left after the tags
+			if( entityStart != -1 )
+			{
+				if( isWordCharacter( c ) )
+				{
+					res[length++] = c;
+					continue;
+				}
+				int start	= entityStart;
+				entityStart	= -1;
+				if( c == '&' || c == ';' )
+				{
+					length = start;
+					continue;
+				}
+			}
+			if( c == '&' ) {
+				entityStart = length;
+			}
+			res[length++] = c;
+		}
+
+		return new String( res, 0, length );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static boolean needsStripping( final String dirty )
+	{
+		for( int i = 0; i < dirty.length(); i++ )
+		{
+			char c = dirty.charAt( i );
+			if( c == '<' || c == '>' || c == '&' ) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the length of the line terminator at the end of the text that \Z matches before, 0 if there is none.
+	 */
+	private static int finalLineTerminatorLength( final String text, final int from )
+	{
+		int length = text.length();
+		if( length - from >= 2 && text.charAt( length - 2 ) == '\r' && text.charAt( length - 1 ) == '\n' ) {
+			return 2;
+		}
+		if( length - from >= 1 )
+		{
+			char c = text.charAt( length - 1 );
+			if( c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029' ) {
+				return 1;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Returns the position after the tag starting at the given '<', -1 if the tag isn't closed before the end or has
+	 * an unclosed quote.
+	 */
+	private static int tagEnd( final String text, final int start, final int end )
+	{
+		for( int i = start + 1; i < end; i++ )
+		{
+			char c = text.charAt( i );
+			if( c == '>' ) {
+				return i + 1;
+			}
+			if( c == '"' || c == '\'' )
+			{
+				int close = text.indexOf( c, i + 1 );
+				if( close == -1 || close >= end ) {
+					return -1;
+				}
+				i = close;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns true for the characters \w matches, the ASCII letters, digits and '_'.
+	 */
+	private static boolean isWordCharacter( final char c ) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static final String OPENING_CDATA_TAG	= "<![CDATA[";
+	private static final String CLOSING_CDATA_TAG	= "]]>";
+	//------------------------------------------------------------------------------------------------------------------
+}
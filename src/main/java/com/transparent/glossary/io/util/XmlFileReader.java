@@ -8,10 +8,14 @@ import org.xml.sax.InputSource;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.*;
 
 /**
  * Utility class to simplify reading of the XML content from a file.
+ * The content is cleaned up before it is parsed, see CleanXmlInputStream.
  *
  * User: PLitvak
  * Date: Aug 20, 2009
@@ -24,27 +28,22 @@ public class XmlFileReader
 	 */
 	static public Document readXml( File file ) throws Exception
 	{
-		BufferedReader reader	= new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
-		StringBuilder buf		= new StringBuilder();
-		String str				= null;
-		while( (str = reader.readLine()) != null ) {
-			buf.append( str );
-		}
-		reader.close();
-
-		str = buf.toString();
-		// hack for illegal characters in creator_application element
-		str = str.replaceAll( "<creator_application>(.*)?</creator_application>", "" );
-		// clear all potentially unwanted characters at the beginning of the string
-		str = str.substring( str.indexOf( "<" ) );
-		//--------------------------------------------------------------------------
-
 		DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
 
-		return builder.parse( new InputSource( new StringReader( str ) ) );
+		return builder.parse( CleanXmlInputStream.open( file ) );
 	}
 
-	//------------------------------------------------------------------------------------------------------------------
-//	private static final String BOM	= new String( new byte[]{(byte)0xEF, (byte)0xBB, (byte)0xBF} );
-	//------------------------------------------------------------------------------------------------------------------
+	/**
+	 * Reads given file and creates the stream reader of its XML content with the given factory. The stream reader
+	 * doesn't hold the file open, closing it is enough.
+	 */
+	static public XMLStreamReader createXmlStreamReader( final XMLInputFactory factory, final File file ) throws IOException, XMLStreamException
+	{
+		InputSource source = CleanXmlInputStream.open( file );
+		if( source.getByteStream() != null ) {
+			return factory.createXMLStreamReader( source.getByteStream(), source.getEncoding() );
+		}
+
+		return factory.createXMLStreamReader( source.getCharacterStream() );
+	}
 }
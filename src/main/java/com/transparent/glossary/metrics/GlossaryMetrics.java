@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.metrics;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class collects the metrics of the glossary builds: the wall time of the pipeline phases, counters of the files,
+ * bytes and sort objects read and written, and the peak sizes of the processed collections.
+ * The processor, the content readers and the output writers record their metrics when one is set on them; the sort
+ * object filters get it through the parameters map, see get(). The metrics can be recorded from several threads at
+ * once and are accumulated until reset.
+ * The collect, sort and write phases are timed once per call; the read and filter phases are timed per file or
+ * collection, so their time is the sum over all the threads that read the content.
+ */
+public class GlossaryMetrics
+{
+	/**
+	 * The key of the metrics in the parameters map of ISortObjectsFilter.process().
+	 */
+	public static final String PARAMETER = "metrics";
+
+	// phases
+	public static final String COLLECT			= "collect";
+	public static final String READ				= "read";
+	public static final String FINAL_FILTERS	= "finalFilters";
+	public static final String COLLATORS		= "collators";
+	public static final String MARK_PHRASES		= "markPhrases";
+	public static final String STOP_WORDS		= "stopWords";
+	public static final String SORT				= "sort";
+	public static final String WRITE			= "write";
+	public static final String FILTER			= "filter";
+
+	// counters
+	public static final String FILES_READ			= "filesRead";
+	public static final String BYTES_READ			= "bytesRead";
+	public static final String SORT_OBJECTS_READ	= "sortObjectsRead";
+	public static final String FILES_WRITTEN		= "filesWritten";
+	public static final String BYTES_WRITTEN		= "bytesWritten";
+	public static final String ENTRIES_WRITTEN		= "entriesWritten";
+	public static final String SORT_RUNS			= "sortRuns";
+	public static final String SORT_BYTES_SPILLED	= "sortBytesSpilled";
+
+	// peaks
+	public static final String COLLECTED_SORT_OBJECTS = "collectedSortObjects";
+
+	/**
+	 * Returns the metrics passed in the filter parameters, or null if there are none.
+	 */
+	public static GlossaryMetrics get( final Map<String, Object> parameters ) {
+		return parameters != null? (GlossaryMetrics)parameters.get( PARAMETER ): null;
+	}
+
+	/**
+	 * Adds the time elapsed since the given System.nanoTime() to the phase.
+	 */
+	public void addTime( final String phase, final long startNanos )
+	{
+		long elapsed = System.nanoTime() - startNanos;
+		getValue( times, phase ).addAndGet( elapsed );
+		getValue( timeCounts, phase ).incrementAndGet();
+	}
+
+	public void increment( final String counter, final long delta ) {
+		getValue( counters, counter ).addAndGet( delta );
+	}
+
+	/**
+	 * Records the value if it is larger than the largest one recorded so far.
+	 */
+	public void updatePeak( final String peak, final long value )
+	{
+		AtomicLong current = getValue( peaks, peak );
+		for( long max = current.get(); value > max; max = current.get() )
+		{
+			if( current.compareAndSet( max, value ) ) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the total time of the phase in nanoseconds.
+	 */
+	public long getTime( final String phase ) {
+		return valueOf( times, phase );
+	}
+
+	/**
+	 * Returns the number of times the phase was recorded.
+	 */
+	public long getTimeCount( final String phase ) {
+		return valueOf( timeCounts, phase );
+	}
+
+	public long getCounter( final String counter ) {
+		return valueOf( counters, counter );
+	}
+
+	public long getPeak( final String peak ) {
+		return valueOf( peaks, peak );
+	}
+
+	public void reset()
+	{
+		times.clear();
+		timeCounts.clear();
+		counters.clear();
+		peaks.clear();
+	}
+
+	/**
+	 * Returns the metrics as a JSON object: the phases with their total time in milliseconds and the number of times
+	 * they were recorded, the counters, the peaks and the read throughput over the collect phase.
+	 */
+	public String toJson()
+	{
+		StringBuilder res = new StringBuilder( "{\n  \"phases\": {" );
+		String separator = "";
+		for( Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>( times ).entrySet() )
+		{
+			res.append( separator ).append( "\n    " ).append( quote( entry.getKey() ) )
+			   .append( ": { \"ms\": " ).append( format( entry.getValue().get() / 1e6 ) )
+			   .append( ", \"count\": " ).append( getTimeCount( entry.getKey() ) ).append( " }" );
+			separator = ",";
+		}
+		res.append( "\n  },\n  \"counters\": " );
+		appendValues( res, counters );
+		res.append( ",\n  \"peaks\": " );
+		appendValues( res, peaks );
+
+		double collectSeconds = getTime( COLLECT ) / 1e9;
+		res.append( ",\n  \"throughput\": {" );
+		res.append( "\n    \"filesPerSecond\": " ).append( format( collectSeconds > 0? getCounter( FILES_READ ) / collectSeconds: 0 ) ).append( ',' );
+		res.append( "\n    \"cardsPerSecond\": " ).append( format( collectSeconds > 0? getCounter( SORT_OBJECTS_READ ) / collectSeconds: 0 ) );
+		res.append( "\n  }\n}\n" );
+
+		return res.toString();
+	}
+
+	/**
+	 * Writes the JSON of the metrics in to the given file, see toJson().
+	 */
+	public void writeJson( final File file )
+	{
+		try
+		{
+			Writer out = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+			try {
+				out.write( toJson() );
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch( IOException e )
+		{
+			logger.error( e );
+			throw new RuntimeException( e );
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static AtomicLong getValue( final ConcurrentMap<String, AtomicLong> values, final String name )
+	{
+		AtomicLong res = values.get( name );
+		if( res == null )
+		{
+			AtomicLong value = new AtomicLong();
+			res = values.putIfAbsent( name, value );
+			if( res == null ) {
+				res = value;
+			}
+		}
+
+		return res;
+	}
+
+	private static long valueOf( final Map<String, AtomicLong> values, final String name )
+	{
+		AtomicLong res = values.get( name );
+		return res != null? res.get(): 0;
+	}
+
+	private static void appendValues( final StringBuilder json, final Map<String, AtomicLong> values )
+	{
+		json.append( '{' );
+		String separator = "";
+		for( Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>( values ).entrySet() )
+		{
+			json.append( separator ).append( "\n    " ).append( quote( entry.getKey() ) ).append( ": " ).append( entry.getValue().get() );
+			separator = ",";
+		}
+		json.append( values.isEmpty()? "}": "\n  }" );
+	}
+
+	private static String format( final double value ) {
+		return String.format( Locale.US, "%.3f", value );
+	}
+
+	private static String quote( final String name ) {
+		return '"' + name.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ) + '"';
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private final ConcurrentMap<String, AtomicLong> times		= new ConcurrentHashMap<String, AtomicLong>();
+	private final ConcurrentMap<String, AtomicLong> timeCounts	= new ConcurrentHashMap<String, AtomicLong>();
+	private final ConcurrentMap<String, AtomicLong> counters	= new ConcurrentHashMap<String, AtomicLong>();
+	private final ConcurrentMap<String, AtomicLong> peaks		= new ConcurrentHashMap<String, AtomicLong>();
+
+	private Logger logger = Logger.getLogger( this.getClass() );
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Names of the fields to include of a sort object. The sort objects built by the same reader share one schema and keep
+ * only the field values, see SortObject.getFieldsToIncludeMap().
+ * Schemas are immutable, adding a field name to a schema returns the schema that has the name added; the same schema
+ * is returned every time the same name is added, so sort objects that get the same fields in the same order end up
+ * with the same schema.
+ * The fields are iterated in the same order as a HashMap the names were put in to, the order the fields to include
+ * have always been written in.
+ * Every schema keeps the schemas it was extended to for good, they are never cleared: there is one schema for every
+ * sequence of field names the sort objects were given, and the names come from the reader configuration and the
+ * cached sort objects, so the schemas stay few. Putting fields of arbitrary names in to sort objects would keep
+ * adding schemas for as long as the application runs.
+ */
+public final class FieldSchema
+{
+	/**
+	 * The schema without fields, sort objects created without a schema start with it.
+	 */
+	public static final FieldSchema EMPTY = new FieldSchema( new String[0] );
+
+	/**
+	 * Returns the schema of the given field names, in the given order.
+	 */
+	public static FieldSchema of( final Collection<String> names )
+	{
+		FieldSchema res = EMPTY;
+		for( String name : names ) {
+			res = res.with( name );
+		}
+
+		return res;
+	}
+
+	/**
+	 * Returns the schema that has the given field name added, or this schema if it already has the field.
+	 */
+	public FieldSchema with( final String name )
+	{
+		if( index.containsKey( name ) ) {
+			return this;
+		}
+
+		FieldSchema res = transitions.get( name );
+		if( res == null )
+		{
+			String[] extended = Arrays.copyOf( names, names.length + 1 );
+			extended[names.length] = name;
+
+			FieldSchema schema = new FieldSchema( extended );
+			res = transitions.putIfAbsent( name, schema );
+			if( res == null ) {
+				res = schema;
+			}
+		}
+
+		return res;
+	}
+
+	/**
+	 * Returns the position of the field value, or -1 if the schema doesn't have the field.
+	 */
+	public int indexOf( final Object name )
+	{
+		Integer res = index.get( name );
+		return res != null? res: -1;
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	public String getName( final int index ) {
+		return names[index];
+	}
+
+	/**
+	 * Returns the positions of the fields in the iteration order.
+	 */
+	int[] getIterationOrder() {
+		return iterationOrder;
+	}
+
+	@Override
+	public String toString() {
+		return index.keySet().toString();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private FieldSchema( final String[] names )
+	{
+		this.names = names;
+
+		// the fields are iterated in the order of the hash map
+		for( int i = 0; i < names.length; i++ ) {
+			index.put( names[i], i );
+		}
+		iterationOrder = new int[names.length];
+		int i = 0;
+		for( Integer position : index.values() ) {
+			iterationOrder[i++] = position;
+		}
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private final String[] names;
+	private final int[] iterationOrder;
+	private final Map<String, Integer> index					= new HashMap<String, Integer>();
+	private final ConcurrentHashMap<String, FieldSchema> transitions	= new ConcurrentHashMap<String, FieldSchema>();
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -5,15 +5,15 @@ package com.transparent.glossary.model;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * This is the main data abstraction used for store sort information about the element of content.
  * It is used to store the content read from various sources, to sort the content and then to build the glossary.
  * This class is essentially just a value object.
+ * There can be hundreds of thousands of sort objects in memory, so the content is kept compact: the language codes are
+ * interned, the sort fields are kept in exactly sized arrays, the fields to include keep only the values and share the
+ * field names with the other sort objects through the FieldSchema, and the user data map is created on first use.
  *
  * User: plitvak
  * Date: Jul 31, 2009
@@ -30,6 +30,17 @@ public class SortObject
 	 */
 	public static final String L2_FIELD_NAME = "L2";
 
+	public SortObject() {
+		this( FieldSchema.EMPTY );
+	}
+
+	/**
+	 * Creates a sort object that has the room for the values of the given fields to include.
+	 */
+	public SortObject( final FieldSchema fieldSchema ) {
+		fieldsToIncludeMap = new FieldMap( fieldSchema );
+	}
+
 	//=================================== property accessors ===========================================================
 	public boolean isPhrase() {
 		return isPhrase;
@@ -44,7 +55,7 @@ public class SortObject
 	}
 
 	public void setLanguageCodeL1( final String languageCodeL1 ) {
-		this.languageCodeL1 = languageCodeL1;
+		this.languageCodeL1 = languageCodeL1 != null? languageCodeL1.intern(): null;
 	}
 
 	public String getLanguageCodeL2() {
@@ -52,7 +63,7 @@ public class SortObject
 	}
 
 	public void setLanguageCodeL2( final String languageCodeL2 ) {
-		this.languageCodeL2 = languageCodeL2;
+		this.languageCodeL2 = languageCodeL2 != null? languageCodeL2.intern(): null;
 	}
 
 	public List<String> getSortFieldsL1() {
@@ -70,7 +81,12 @@ public class SortObject
 	/**
 	 * Provides access to store/retrieve any user specific data for a given instance of a SortObject.
 	 */
-	public Map<String, Object> getUserData() {
+	public Map<String, Object> getUserData()
+	{
+		if( userData == null ) {
+			userData = new HashMap<String, Object>( 2 );
+		}
+
 		return userData;
 	}
 
@@ -136,6 +152,265 @@ public class SortObject
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * List of the sort fields kept in an array of the list size, sort objects rarely have more than a couple of sort
+	 * fields and they are not added after the sort object is read.
+	 */
+	private static final class FieldList extends AbstractList<String> implements RandomAccess
+	{
+		@Override
+		public String get( final int index )
+		{
+			checkIndex( index, elements.length );
+			return elements[index];
+		}
+
+		@Override
+		public String set( final int index, final String element )
+		{
+			checkIndex( index, elements.length );
+			String res		= elements[index];
+			elements[index]	= element;
+			return res;
+		}
+
+		@Override
+		public void add( final int index, final String element )
+		{
+			checkIndex( index, elements.length + 1 );
+			String[] res = new String[elements.length + 1];
+			System.arraycopy( elements, 0, res, 0, index );
+			System.arraycopy( elements, index, res, index + 1, elements.length - index );
+			res[index]	= element;
+			elements	= res;
+			modCount++;
+		}
+
+		@Override
+		public String remove( final int index )
+		{
+			checkIndex( index, elements.length );
+			String res = elements[index];
+			if( elements.length == 1 ) {
+				elements = NO_ELEMENTS;
+			}
+			else
+			{
+				String[] remaining = new String[elements.length - 1];
+				System.arraycopy( elements, 0, remaining, 0, index );
+				System.arraycopy( elements, index + 1, remaining, index, elements.length - index - 1 );
+				elements = remaining;
+			}
+			modCount++;
+			return res;
+		}
+
+		@Override
+		public int size() {
+			return elements.length;
+		}
+
+		private static void checkIndex( final int index, final int size )
+		{
+			if( index < 0 || index >= size ) {
+				throw new IndexOutOfBoundsException( String.format( "Index: %d, Size: %d", index, size ) );
+			}
+		}
+
+		private static final String[] NO_ELEMENTS = new String[0];
+
+		private String[] elements = NO_ELEMENTS;
+	}
+
+	/**
+	 * Map of the fields to include that keeps the values only, the field names are kept by the schema. Adding a field
+	 * that is not in the schema moves the map to the schema that has the field.
+	 */
+	private static final class FieldMap extends AbstractMap<String, String>
+	{
+		FieldMap( final FieldSchema schema )
+		{
+			this.schema	= schema;
+			values		= new String[schema.size()];
+			Arrays.fill( values, ABSENT );
+		}
+
+		@Override
+		public String get( final Object key )
+		{
+			int index = schema.indexOf( key );
+			return index != -1 && values[index] != ABSENT? values[index]: null;
+		}
+
+		@Override
+		public boolean containsKey( final Object key )
+		{
+			int index = schema.indexOf( key );
+			return index != -1 && values[index] != ABSENT;
+		}
+
+		@Override
+		public String put( final String key, final String value )
+		{
+			int index = schema.indexOf( key );
+			if( index == -1 )
+			{
+				schema	= schema.with( key );
+				index	= schema.indexOf( key );
+
+				int length	= values.length;
+				values		= Arrays.copyOf( values, schema.size() );
+				Arrays.fill( values, length, values.length, ABSENT );
+			}
+
+			String res		= values[index];
+			values[index]	= value;
+			if( res == ABSENT )
+			{
+				size++;
+				return null;
+			}
+
+			return res;
+		}
+
+		@Override
+		public String remove( final Object key )
+		{
+			int index = schema.indexOf( key );
+			if( index == -1 || values[index] == ABSENT ) {
+				return null;
+			}
+
+			return removeAt( index );
+		}
+
+		@Override
+		public void clear()
+		{
+			Arrays.fill( values, ABSENT );
+			size = 0;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Set<Entry<String, String>> entrySet()
+		{
+			return new AbstractSet<Entry<String, String>>()
+			{
+				@Override
+				public Iterator<Entry<String, String>> iterator() {
+					return new EntryIterator();
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+
+		private String removeAt( final int index )
+		{
+			String res		= values[index];
+			values[index]	= ABSENT;
+			size--;
+			return res;
+		}
+
+		/**
+		 * Iterates the fields in the schema iteration order.
+		 */
+		private final class EntryIterator implements Iterator<Entry<String, String>>
+		{
+			EntryIterator() {
+				advance();
+			}
+
+			public boolean hasNext() {
+				return next < order.length;
+			}
+
+			public Entry<String, String> next()
+			{
+				if( next >= order.length ) {
+					throw new NoSuchElementException();
+				}
+
+				final int index = order[next++];
+				last = index;
+				advance();
+
+				return new Entry<String, String>()
+				{
+					public String getKey() {
+						return schema.getName( index );
+					}
+
+					public String getValue() {
+						return values[index] != ABSENT? values[index]: null;
+					}
+
+					public String setValue( final String value ) {
+						return put( getKey(), value );
+					}
+
+					@Override
+					public boolean equals( final Object o )
+					{
+						if( !(o instanceof Entry) ) {
+							return false;
+						}
+						Entry<?, ?> that = (Entry<?, ?>)o;
+						return getKey().equals( that.getKey() ) && (getValue() == null? that.getValue() == null: getValue().equals( that.getValue() ));
+					}
+
+					@Override
+					public int hashCode() {
+						return getKey().hashCode() ^ (getValue() == null? 0: getValue().hashCode());
+					}
+
+					@Override
+					public String toString() {
+						return getKey() + "=" + getValue();
+					}
+				};
+			}
+
+			public void remove()
+			{
+				if( last == -1 || values[last] == ABSENT ) {
+					throw new IllegalStateException();
+				}
+				removeAt( last );
+			}
+
+			private void advance()
+			{
+				while( next < order.length && values[order[next]] == ABSENT ) {
+					next++;
+				}
+			}
+
+			private final int[] order	= schema.getIterationOrder();
+			private int next			= 0;
+			private int last			= -1;
+		}
+
+		/**
+		 * Marks the fields of the schema the map doesn't have, a field can be put with the null value.
+		 */
+		private static final String ABSENT = new String( "" );
+
+		private FieldSchema schema;
+		private String[] values;
+		private int size = 0;
+	}
+
 	//------------------------------------------------------------------------------------------------------------------
 	private String languageCodeL1		= null;
 	private String languageCodeL2		= null;
@@ -143,11 +418,11 @@ public class SortObject
     private String sideTwoSoundFile = null;
     private String referencedBy    		= null;
     private String partOfSpeech    		= null;
-	private List<String> sortFieldsL1	= new ArrayList<String>();
-	private List<String> sortFieldsL2	= new ArrayList<String>();
+	private final List<String> sortFieldsL1	= new FieldList();
+	private final List<String> sortFieldsL2	= new FieldList();
 	private boolean isPhrase			= false;
 
-	private Map<String, String> fieldsToIncludeMap	= new HashMap<String, String>();
-	final private Map<String, Object> userData		= new HashMap<String, Object>();
+	private final Map<String, String> fieldsToIncludeMap;
+	private Map<String, Object> userData	= null;
 	//------------------------------------------------------------------------------------------------------------------
 }
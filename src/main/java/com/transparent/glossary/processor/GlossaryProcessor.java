@@ -3,8 +3,13 @@
  */
 package com.transparent.glossary.processor;
 
-import com.transparent.glossary.io.GlossaryInputDataReader;
+import com.transparent.glossary.io.ExternalGlossarySorter;
+import com.transparent.glossary.io.ISortObjectsReader;
 import com.transparent.glossary.io.GlossaryOutputWriter;
+import com.transparent.glossary.io.PatternFileFilter;
+import com.transparent.glossary.io.ReadOptions;
+import com.transparent.glossary.io.SortObjectsCache;
+import com.transparent.glossary.metrics.GlossaryMetrics;
 import com.transparent.glossary.model.SortObject;
 import com.transparent.glossary.sort.*;
 import org.apache.log4j.Logger;
@@ -12,6 +17,8 @@ import org.apache.log4j.Logger;
 import java.io.File;
 import java.io.FileFilter;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Main glossary processor class.
@@ -79,6 +86,110 @@ public class GlossaryProcessor
 	public void setStopWordProcessingType( final StopWordProcessingType stopWordProcessingType ) {
 		this.stopWordProcessingType = stopWordProcessingType;
 	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of worker threads used to walk the content tree. Folders and files are read as separate fork/join
+	 * tasks when this is greater than 1, otherwise the content tree is walked on the calling thread.
+	 * The parallel sort (see setParallelSort()) uses as many threads when this is greater than 1, otherwise every core.
+	 */
+	public void setParallelism( final int parallelism ) {
+		this.parallelism = parallelism;
+	}
+
+	public SortMode getSortMode() {
+		return sortMode;
+	}
+
+	/**
+	 * Sets how the sort objects are sorted, see SortMode. Both modes produce the same order.
+	 */
+	public void setSortMode( final SortMode sortMode ) {
+		this.sortMode = sortMode;
+	}
+
+	public boolean isParallelSort() {
+		return parallelSort;
+	}
+
+	/**
+	 * If set to true the collections of at least parallelSortThreshold sort objects are sorted in parallel, by as many
+	 * threads as the parallelism if it is greater than 1, otherwise by all cores.
+	 * This only applies to the COLLATION_KEY sort mode, the parallel sort produces the same (stable) order.
+	 */
+	public void setParallelSort( final boolean parallelSort ) {
+		this.parallelSort = parallelSort;
+	}
+
+	public int getParallelSortThreshold() {
+		return parallelSortThreshold;
+	}
+
+	public void setParallelSortThreshold( final int parallelSortThreshold ) {
+		this.parallelSortThreshold = parallelSortThreshold;
+	}
+
+	public SortObjectsCache getSortObjectsCache() {
+		return sortObjectsCache;
+	}
+
+	/**
+	 * Sets the cache of the sort objects read from the content files, only the new and changed files are parsed by the
+	 * readers. The null cache (default) reads every file.
+	 */
+	public void setSortObjectsCache( final SortObjectsCache sortObjectsCache ) {
+		this.sortObjectsCache = sortObjectsCache;
+	}
+
+	public ReadOptions getReadOptions() {
+		return readOptions;
+	}
+
+	/**
+	 * Sets the options the content files are read with, ReadOptions.STANDARD if not set.
+	 */
+	public void setReadOptions( final ReadOptions readOptions ) {
+		this.readOptions = readOptions;
+	}
+
+	public long getSortMemoryBudget() {
+		return sortMemoryBudget;
+	}
+
+	/**
+	 * Sets the estimated heap size in bytes the data sorted by collectSortAndWriteGlossaries() and
+	 * sortAndWriteGlossaries() may take before it is written to the sorted runs on disk, see ExternalGlossarySorter.
+	 * 0 (default) sorts the data in memory.
+	 */
+	public void setSortMemoryBudget( final long sortMemoryBudget ) {
+		this.sortMemoryBudget = sortMemoryBudget;
+	}
+
+	public File getSortTempFolder() {
+		return sortTempFolder;
+	}
+
+	/**
+	 * Sets the folder the sorted runs are written in, the default temporary folder if not set.
+	 */
+	public void setSortTempFolder( final File sortTempFolder ) {
+		this.sortTempFolder = sortTempFolder;
+	}
+
+	public GlossaryMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the metrics to record the time of the processing phases and the size of the collected data in, the metrics
+	 * are passed to the sort object filters in the parameters map. None are recorded if not set.
+	 */
+	public void setMetrics( final GlossaryMetrics metrics ) {
+		this.metrics = metrics;
+	}
 	//===================================== property assessors ==========================================================
 
 	/**
@@ -90,17 +201,50 @@ public class GlossaryProcessor
 
 		List<SortObject> res	= new ArrayList<SortObject>();
 		File[] files			= inputRootFolder.listFiles();
+		long start				= System.nanoTime();
 
-		processInput( files, res );
+		if( parallelism > 1 )
+		{
+			ForkJoinPool pool = new ForkJoinPool( parallelism );
+			try {
+				res.addAll( pool.invoke( new FolderTask( files ) ) );
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+		else {
+			processInput( files, res );
+		}
 
+		if( sortObjectsCache != null ) {
+			logger.info( String.format( "Sort objects cache: %d hits, %d misses", sortObjectsCache.getHits(), sortObjectsCache.getMisses() ) );
+		}
+		if( metrics != null )
+		{
+			metrics.addTime( GlossaryMetrics.COLLECT, start );
+			metrics.updatePeak( GlossaryMetrics.COLLECTED_SORT_OBJECTS, res.size() );
+		}
+
+		start = System.nanoTime();
 		for( ISortObjectsFilter filter : inputDataFinalFilters ) {
-			filter.process( res, null );
+			filter.process( res, createFilterParameters() );
 		}
+		recordTime( GlossaryMetrics.FINAL_FILTERS, start );
+
+		start = System.nanoTime();
+		prepareCollators( res );
+		recordTime( GlossaryMetrics.COLLATORS, start );
 
+		start = System.nanoTime();
 		markPhrases( res );
+		recordTime( GlossaryMetrics.MARK_PHRASES, start );
 
-		if( stopWordProcessingType != StopWordProcessingType.NONE ) {
+		if( stopWordProcessingType != StopWordProcessingType.NONE )
+		{
+			start = System.nanoTime();
 			removeStopWordsFromSortKeys( res );
+			recordTime( GlossaryMetrics.STOP_WORDS, start );
 		}
 
 		return res;
@@ -131,20 +275,48 @@ public class GlossaryProcessor
 	 * Sorts the collection of the sort objects accordint to the give sort type and sort direction.
 	 * This method modifies the collection passed in to it.
 	 */
-	public void sort( final List<SortObject> unsortedData, SortType sortType, SortDirection sortDirection )
+	public void sort( final List<SortObject> unsortedData, SortType sortType, SortDirection sortDirection ) {
+		sort( unsortedData, sortType, sortDirection, null );
+	}
+
+	/**
+	 * Same as sort( unsortedData, sortType, sortDirection ), but the sort objects with equal sort fields are ordered by
+	 * the tie sort type and then keep their order: the data is in the same order as if it was sorted by the tie sort
+	 * type (ascending) first. Use it only for the data with uniform sort fields (see hasUniformSortFields()), the
+	 * order of other data depends on the order it is sorted from.
+	 */
+	public void sort( final List<SortObject> unsortedData, SortType sortType, SortDirection sortDirection, SortType tieSortType )
 	{
 		assert unsortedData != null;
 
 		if( unsortedData.size() > 0 )
 		{
 			logger.info( String.format( "Sorting collection of %d elements", unsortedData.size() ) );
+			long start = System.nanoTime();
 
-			GlossaryComparator glossaryComparator = new GlossaryComparator();
-			glossaryComparator.setCollatorHelper( collatorHelper );
-			glossaryComparator.setSortType( sortType );
-			glossaryComparator.setSortDirection( sortDirection );
+			if( sortMode == SortMode.COLLATION_KEY )
+			{
+				CollationKeySorter sorter = new CollationKeySorter();
+				sorter.setCollatorHelper( collatorHelper );
+				sorter.setSortType( sortType );
+				sorter.setSortDirection( sortDirection );
+				sorter.setTieSortType( tieSortType );
+				sorter.setParallelThreshold( parallelSort? Math.max( parallelSortThreshold, 1 ): 0 );
+				sorter.setParallelism( parallelism > 1? parallelism: 0 );
 
-			Collections.sort( unsortedData, glossaryComparator );
+				sorter.sort( unsortedData );
+			}
+			else
+			{
+				GlossaryComparator glossaryComparator = new GlossaryComparator();
+				glossaryComparator.setCollatorHelper( collatorHelper );
+				glossaryComparator.setSortType( sortType );
+				glossaryComparator.setSortDirection( sortDirection );
+				glossaryComparator.setTieSortType( tieSortType );
+
+				Collections.sort( unsortedData, glossaryComparator );
+			}
+			recordTime( GlossaryMetrics.SORT + "." + sortType, start );
 
 			logger.info( String.format( "Finished sorting collection of %d elements", unsortedData.size() ) );
 		}
@@ -161,10 +333,208 @@ public class GlossaryProcessor
 		glossaryWriter.writeGlossaryToFile( sortedData );
 	}
 
+	/**
+	 * Sorts the data for the L1 and the L2 glossaries and writes them. If the sort memory budget is set the data is
+	 * sorted on disk, so the sorted data and the sort keys don't have to fit in to the memory; the glossaries are the
+	 * same as the ones written by sort() and writeGlossary() for L1 and then L2 on the same list, the sort objects with
+	 * equal L2 sort fields are listed in the L1 order. This holds for the data with uniform sort fields (see
+	 * hasUniformSortFields()), the order of other data depends on the sort algorithm (see ExternalGlossarySorter).
+	 * The data is already in memory here, use collectSortAndWriteGlossaries() to sort the data on disk as it is collected.
+	 * This method empties the data list when the data is sorted on disk.
+	 */
+	public void sortAndWriteGlossaries( final List<SortObject> data, final File l1GlossaryFile, final File l2GlossaryFile )
+	{
+		assert data != null && !data.isEmpty();
+
+		if( sortMemoryBudget <= 0 )
+		{
+			sort( data, SortType.L1, SortDirection.ASC );
+			writeGlossary( l1GlossaryFile, SortType.L1, data );
+			sort( data, SortType.L2, SortDirection.ASC );
+			writeGlossary( l2GlossaryFile, SortType.L2, data );
+			return;
+		}
+
+		if( !hasUniformSortFields( data ) ) {
+			logger.warn( NOT_UNIFORM_MESSAGE );
+		}
+
+		// both sorters keep their share of the budget, the sort objects they keep in memory are shared
+		ExternalGlossarySorter l1Sorter = createExternalSorter( SortType.L1, null );
+		ExternalGlossarySorter l2Sorter = createExternalSorter( SortType.L2, SortType.L1 );
+		try
+		{
+			logger.info( String.format( "Sorting collection of %d elements on disk", data.size() ) );
+			long start = System.nanoTime();
+
+			for( ListIterator<SortObject> it = data.listIterator(); it.hasNext(); )
+			{
+				SortObject sortObject = it.next();
+				l1Sorter.add( sortObject );
+				l2Sorter.add( sortObject );
+
+				// the list must not keep the sort objects written to the runs
+				it.set( null );
+			}
+			data.clear();
+			recordTime( GlossaryMetrics.SORT, start );
+
+			writeSortedGlossaries( l1GlossaryFile, l2GlossaryFile, l1Sorter, l2Sorter );
+		}
+		finally
+		{
+			l1Sorter.close();
+			l2Sorter.close();
+		}
+	}
+
+	/**
+	 * Collects the data the same way as collectUnsortedGlossaryData() does and writes the glossaries of it the same way
+	 * as sortAndWriteGlossaries() does. If the sort memory budget is set the data of every folder is sorted on disk as
+	 * soon as the folder is read, so the memory holds the data of one folder, the sort objects the sorters keep within
+	 * the budget and what the final filters keep about the data filtered so far (SortObjectsL1L2DuplicateFilter keeps
+	 * the L1+L2 key of every sort object). This requires every final filter to be an IIncrementalSortObjectsFilter,
+	 * otherwise the whole data is collected in memory before it is sorted on disk.
+	 * No glossaries are written if no sort objects are found.
+	 * @return the number of the sort objects in the glossaries
+	 */
+	public long collectSortAndWriteGlossaries( final File l1GlossaryFile, final File l2GlossaryFile )
+	{
+		assert inputRootFolder != null;
+
+		if( sortMemoryBudget <= 0 || !areIncremental( inputDataFinalFilters ) )
+		{
+			if( sortMemoryBudget > 0 ) {
+				logger.warn( "Not all final filters can filter the data as it is collected, collecting the whole data before it is sorted on disk" );
+			}
+
+			List<SortObject> data = collectUnsortedGlossaryData();
+			long res = data.size();
+			if( res > 0 ) {
+				sortAndWriteGlossaries( data, l1GlossaryFile, l2GlossaryFile );
+			}
+
+			return res;
+		}
+
+		ExternalGlossarySorter l1Sorter	= createExternalSorter( SortType.L1, null );
+		ExternalGlossarySorter l2Sorter	= createExternalSorter( SortType.L2, SortType.L1 );
+		ForkJoinPool pool				= parallelism > 1? new ForkJoinPool( parallelism ): null;
+		try
+		{
+			logger.info( "Collecting and sorting the data on disk" );
+			long start = System.nanoTime();
+
+			SorterFeed feed = new SorterFeed( l1Sorter, l2Sorter );
+			feedInput( inputRootFolder.listFiles(), pool, feed );
+
+			if( sortObjectsCache != null ) {
+				logger.info( String.format( "Sort objects cache: %d hits, %d misses", sortObjectsCache.getHits(), sortObjectsCache.getMisses() ) );
+			}
+			recordTime( GlossaryMetrics.COLLECT, start );
+
+			if( feed.count > 0 ) {
+				writeSortedGlossaries( l1GlossaryFile, l2GlossaryFile, l1Sorter, l2Sorter );
+			}
+
+			return feed.count;
+		}
+		finally
+		{
+			if( pool != null ) {
+				pool.shutdown();
+			}
+			l1Sorter.close();
+			l2Sorter.close();
+		}
+	}
+
+	/**
+	 * Checks that all sort objects have the same (non null) language codes and the same non zero number of sort fields,
+	 * the in-memory sort order of such objects doesn't depend on the sort algorithm or on the order they are sorted from.
+	 */
+	public boolean hasUniformSortFields( final List<SortObject> data )
+	{
+		SortObject first = data.get( 0 );
+		for( SortObject sortObject : data )
+		{
+			if( !haveUniformSortFields( first, sortObject ) ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * Creates the sorter of a glossary, the sort objects are grouped by the letters the glossary's writer lists them
+	 * under.
+	 */
+	private ExternalGlossarySorter createExternalSorter( final SortType sortType, final SortType tieSortType )
+	{
+		ExternalGlossarySorter res = new ExternalGlossarySorter();
+		res.setCollatorHelper( collatorHelper );
+		res.setSortType( sortType );
+		res.setSortDirection( SortDirection.ASC );
+		res.setTieSortType( tieSortType );
+		res.setGroupComparator( glossaryOutputWriters.get( sortType ).getLetterComparator() );
+		res.setMemoryBudget( Math.max( sortMemoryBudget / 2, 1 ) );
+		res.setTempFolder( sortTempFolder );
+		res.setMetrics( metrics );
+		return res;
+	}
+
+	private void writeGroupedGlossary( final File glossaryFile, final SortType sortType, final ExternalGlossarySorter sorter )
+	{
+		GlossaryOutputWriter glossaryWriter = glossaryOutputWriters.get( sortType );
+		glossaryWriter.setGlossaryFile( glossaryFile );
+		glossaryWriter.writeGroupedGlossaryToFile( sorter.iterator() );
+	}
+
+	/**
+	 * Writes the glossaries of the sort objects added to the sorters, the runs of the L1 sorter are deleted before the
+	 * L2 glossary is written.
+	 */
+	private void writeSortedGlossaries( final File l1GlossaryFile, final File l2GlossaryFile,
+										final ExternalGlossarySorter l1Sorter, final ExternalGlossarySorter l2Sorter )
+	{
+		logger.info( String.format( "Finished sorting on disk, %d L1 and %d L2 runs", l1Sorter.getRunCount(), l2Sorter.getRunCount() ) );
+
+		writeGroupedGlossary( l1GlossaryFile, SortType.L1, l1Sorter );
+		l1Sorter.close();
+		writeGroupedGlossary( l2GlossaryFile, SortType.L2, l2Sorter );
+	}
+
+	/**
+	 * Checks that the first sort object has language codes and sort fields and that the sort object has the same
+	 * language codes and as many sort fields, see hasUniformSortFields().
+	 */
+	private static boolean haveUniformSortFields( final SortObject first, final SortObject sortObject )
+	{
+		return first.getLanguageCodeL1() != null && first.getLanguageCodeL2() != null
+			   && !first.getSortFieldsL1().isEmpty() && !first.getSortFieldsL2().isEmpty()
+			   && first.getLanguageCodeL1().equals( sortObject.getLanguageCodeL1() )
+			   && first.getLanguageCodeL2().equals( sortObject.getLanguageCodeL2() )
+			   && first.getSortFieldsL1().size() == sortObject.getSortFieldsL1().size()
+			   && first.getSortFieldsL2().size() == sortObject.getSortFieldsL2().size();
+	}
+
+	private static boolean areIncremental( final List<ISortObjectsFilter> filters )
+	{
+		for( ISortObjectsFilter filter : filters )
+		{
+			if( !(filter instanceof IIncrementalSortObjectsFilter) ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	/**
 	 * Processes the set of input files and reads sort object data from those that are accepted by the registered
 	 * input data readers.
@@ -173,89 +543,365 @@ public class GlossaryProcessor
 	private void processInput( final File[] files, final Collection<SortObject> result )
 	{
 		List<File> folders	= new ArrayList<File>();
-		Map<GlossaryProcessorEntry, Collection<SortObject>> collectedDataForFolder
-							= new HashMap<GlossaryProcessorEntry, Collection<SortObject>>();
+		Map<File, Map<GlossaryProcessorEntry, Collection<SortObject>>> folderData = readFolder( files, null, folders );
+
+		collectFolderData( folderData, result );
+
+		// help the GC, since we use recursion here we need to let GC know it can collect the object
+		folderData.clear();
+		folderData = null;
+		//-------------------------------------------
+
+		// recurse in to the sub-folders
+		for( File folder : folders ) {
+			processInput( folder.listFiles(), result );
+		}
+	}
+
+	/**
+	 * Same as processInput(), but the data of every folder is passed to the feed as soon as the folder is read. The
+	 * files of a folder are read by the threads of the pool if there is one.
+	 */
+	private void feedInput( final File[] files, final ForkJoinPool pool, final SorterFeed feed )
+	{
+		List<File> folders				= new ArrayList<File>();
+		List<SortObject> folderResult	= new ArrayList<SortObject>();
+		collectFolderData( readFolder( files, pool, folders ), folderResult );
+		feed.add( folderResult );
+		folderResult.clear();
+
+		for( File folder : folders ) {
+			feedInput( folder.listFiles(), pool, feed );
+		}
+	}
+
+	/**
+	 * Reads the files of a folder for all processor entries (see readFile()), keyed by the file in the listing order.
+	 * The files are read by the threads of the pool if there is one. The sub-folders are added to the folders.
+	 */
+	private Map<File, Map<GlossaryProcessorEntry, Collection<SortObject>>> readFolder( final File[] files, final ForkJoinPool pool,
+																						final List<File> folders )
+	{
+		Map<File, Map<GlossaryProcessorEntry, Collection<SortObject>>> res
+							= new LinkedHashMap<File, Map<GlossaryProcessorEntry, Collection<SortObject>>>();
+		List<FileTask> tasks = new ArrayList<FileTask>();
 		for( File f : files )
 		{
 			// collect folders for future processing
 			if( f.isDirectory() ) {
 				folders.add( f );
 			}
-			else
+			else if( pool != null )
+			{
+				FileTask task = new FileTask( f );
+				pool.execute( task );
+				tasks.add( task );
+			}
+			else {
+				res.put( f, readFile( f ) );
+			}
+		}
+
+		for( FileTask task : tasks ) {
+			res.put( task.file, task.join() );
+		}
+
+		return res;
+	}
+
+	/**
+	 * Reads the sort objects of a single file for every processor entry, keyed by the entry in the order the entries are
+	 * registered. The data of the processors that operate with a single file only is processed right away, the data of
+	 * the multi-file processors is tagged with the file it came from and left for collectFolderData().
+	 */
+	private Map<GlossaryProcessorEntry, Collection<SortObject>> readFile( final File file )
+	{
+		Map<GlossaryProcessorEntry, Collection<SortObject>> res
+											= new LinkedHashMap<GlossaryProcessorEntry, Collection<SortObject>>();
+		FileClassification classification	= new FileClassification( file );
+		for( GlossaryProcessorEntry procEntry : entries )
+		{
+			Collection<SortObject> collectedSortData = loadSortObjects( procEntry, classification );
+			if( procEntry.getProcessingRule() == ContentProcessingRule.ALL )
+			{
+				// record the file for which sort objects were collected we will need it later in processing
+				// of the merge if it occurs
+				addFileInfoToSortObjects( collectedSortData, file );
+			}
+			else {
+				procEntry.process( collectedSortData, createFilterParameters() );
+			}
+			res.put( procEntry, collectedSortData );
+		}
+
+		return res;
+	}
+
+	/**
+	 * Adds the data read from the files of a single folder to the result. The files' data must be given in the folder
+	 * listing order, keyed by the file it was read from. The data of the multi-file processors is accumulated for the
+	 * whole folder, grouped by file, and processed after the single file data has been added.
+	 */
+	private void collectFolderData( final Map<File, Map<GlossaryProcessorEntry, Collection<SortObject>>> folderData,
+									final Collection<SortObject> result )
+	{
+		Map<GlossaryProcessorEntry, Map<String, Collection<SortObject>>> collectedDataForFolder
+							= new HashMap<GlossaryProcessorEntry, Map<String, Collection<SortObject>>>();
+		for( File file : folderData.keySet() )
+		{
+			Map<GlossaryProcessorEntry, Collection<SortObject>> fileData = folderData.get( file );
+			for( GlossaryProcessorEntry procEntry : fileData.keySet() )
 			{
-				// for all processor collect sort data
-				for( GlossaryProcessorEntry procEntry : entries )
+				Collection<SortObject> collectedSortData = fileData.get( procEntry );
+				// for those processors that collect data for more then one file accumulate that data
+				if( procEntry.getProcessingRule() == ContentProcessingRule.ALL )
 				{
-					Collection<SortObject> collectedSortData = loadSortObjects( procEntry, f );
-					// for those processors that collect data for more then one file accumulate that data
-					if( procEntry.getProcessingRule() == ContentProcessingRule.ALL )
-					{
-						Collection<SortObject> sortData = collectedDataForFolder.get( procEntry );
-						if( sortData == null )
-						{
-							sortData = new ArrayList<SortObject>();
-							collectedDataForFolder.put( procEntry, sortData );
-						}
-
-						// record the file for which sort objects were collected we will need it later in processing
-						// of the merge if it occurs
-						addFileInfoToSortObjects( collectedSortData, f );
-
-						sortData.addAll( collectedSortData );
+					if( collectedSortData.isEmpty() ) {
+						continue;
 					}
-					// process the data collected by the processors that operate with a single file only
-					else
+
+					Map<String, Collection<SortObject>> fileGroups = collectedDataForFolder.get( procEntry );
+					if( fileGroups == null )
 					{
-						procEntry.process( collectedSortData, null );
-						result.addAll( collectedSortData );
+						fileGroups = new LinkedHashMap<String, Collection<SortObject>>();
+						collectedDataForFolder.put( procEntry, fileGroups );
 					}
+					fileGroups.put( file.getAbsolutePath(), collectedSortData );
+				}
+				else {
+					result.addAll( collectedSortData );
 				}
 			}
 		}
 
 		// process the data collected for multi-file processors
-		if( collectedDataForFolder.size() > 0 )
+		for( GlossaryProcessorEntry procEntry : collectedDataForFolder.keySet() )
 		{
-			for( GlossaryProcessorEntry procEntry : collectedDataForFolder.keySet() )
+			Map<String, Collection<SortObject>> fileGroups	= collectedDataForFolder.get( procEntry );
+			Collection<SortObject> collectedSortData	= new ArrayList<SortObject>();
+			for( Collection<SortObject> fileGroup : fileGroups.values() ) {
+				collectedSortData.addAll( fileGroup );
+			}
+
+			Map<String, Object> parameters = createFilterParameters();
+			parameters.put( ISortObjectsFilter.FILE_GROUPS_PARAMETER, fileGroups );
+			procEntry.process( collectedSortData, parameters );
+			result.addAll( collectedSortData );
+		}
+	}
+
+	/**
+	 * Fork/join version of processInput(). Every file and every sub-folder of a folder is read by its own task, the
+	 * results are joined in the folder listing order so the produced collection is the same as the one of the serial
+	 * walk.
+	 */
+	private final class FolderTask extends RecursiveTask<List<SortObject>>
+	{
+		FolderTask( final File[] files ) {
+			this.files = files;
+		}
+
+		@Override
+		protected List<SortObject> compute()
+		{
+			List<FileTask> fileTasks		= new ArrayList<FileTask>();
+			List<FolderTask> folderTasks	= new ArrayList<FolderTask>();
+			for( File f : files )
 			{
-				Collection<SortObject> collectedSortData = collectedDataForFolder.get( procEntry );
-				procEntry.process( collectedSortData, null );
-				result.addAll( collectedSortData );
+				if( f.isDirectory() ) {
+					folderTasks.add( new FolderTask( f.listFiles() ) );
+				}
+				else {
+					fileTasks.add( new FileTask( f ) );
+				}
+			}
+			invokeAll( fileTasks );
+			invokeAll( folderTasks );
+
+			Map<File, Map<GlossaryProcessorEntry, Collection<SortObject>>> folderData
+							= new LinkedHashMap<File, Map<GlossaryProcessorEntry, Collection<SortObject>>>();
+			for( FileTask task : fileTasks ) {
+				folderData.put( task.file, task.join() );
 			}
+
+			List<SortObject> res = new ArrayList<SortObject>();
+			collectFolderData( folderData, res );
+			for( FolderTask task : folderTasks ) {
+				res.addAll( task.join() );
+			}
+
+			return res;
 		}
 
-		// help the GC, since we use recursion here we need to let GC know it can collect the object
-		collectedDataForFolder.clear();
-		collectedDataForFolder = null;
-		//-------------------------------------------
+		private static final long serialVersionUID = 1L;
 
-		// recurse in to the sub-folders
-		for( File folder : folders ) {
-			processInput( folder.listFiles(), result );
+		private final File[] files;
+	}
+
+	/**
+	 * Reads a single file for all processor entries, see readFile().
+	 */
+	private final class FileTask extends RecursiveTask<Map<GlossaryProcessorEntry, Collection<SortObject>>>
+	{
+		FileTask( final File file ) {
+			this.file = file;
+		}
+
+		@Override
+		protected Map<GlossaryProcessorEntry, Collection<SortObject>> compute() {
+			return readFile( file );
+		}
+
+		private static final long serialVersionUID = 1L;
+
+		private final File file;
+	}
+
+	/**
+	 * Passes the data collected for every folder to the disk sorters, once it is filtered and prepared the way
+	 * collectUnsortedGlossaryData() filters and prepares the whole data.
+	 */
+	private final class SorterFeed
+	{
+		SorterFeed( final ExternalGlossarySorter l1Sorter, final ExternalGlossarySorter l2Sorter )
+		{
+			this.l1Sorter = l1Sorter;
+			this.l2Sorter = l2Sorter;
+
+			for( int i = 0; i < inputDataFinalFilters.size(); i++ ) {
+				filterParameters.add( createFilterParameters() );
+			}
+		}
+
+		void add( final List<SortObject> data )
+		{
+			if( metrics != null ) {
+				metrics.updatePeak( GlossaryMetrics.COLLECTED_SORT_OBJECTS, data.size() );
+			}
+
+			long start = System.nanoTime();
+			for( int i = 0; i < inputDataFinalFilters.size(); i++ ) {
+				((IIncrementalSortObjectsFilter)inputDataFinalFilters.get( i )).processPart( data, filterParameters.get( i ) );
+			}
+			recordTime( GlossaryMetrics.FINAL_FILTERS, start );
+
+			if( data.isEmpty() ) {
+				return;
+			}
+
+			start = System.nanoTime();
+			prepareCollators( data );
+			recordTime( GlossaryMetrics.COLLATORS, start );
+
+			start = System.nanoTime();
+			markPhrases( data );
+			recordTime( GlossaryMetrics.MARK_PHRASES, start );
+
+			if( stopWordProcessingType != StopWordProcessingType.NONE )
+			{
+				start = System.nanoTime();
+				removeStopWordsFromSortKeys( data );
+				recordTime( GlossaryMetrics.STOP_WORDS, start );
+			}
+
+			start = System.nanoTime();
+			for( SortObject sortObject : data )
+			{
+				if( first == null ) {
+					first = sortObject;
+				}
+				if( uniform && !haveUniformSortFields( first, sortObject ) )
+				{
+					logger.warn( NOT_UNIFORM_MESSAGE );
+					uniform = false;
+				}
+
+				l1Sorter.add( sortObject );
+				l2Sorter.add( sortObject );
+				count++;
+			}
+			recordTime( GlossaryMetrics.SORT, start );
+		}
+
+		private final ExternalGlossarySorter l1Sorter;
+		private final ExternalGlossarySorter l2Sorter;
+		private final List<Map<String, Object>> filterParameters = new ArrayList<Map<String, Object>>();
+
+		private SortObject first	= null;
+		private boolean uniform		= true;
+		private long count			= 0;
+	}
+
+	/**
+	 * The filters a single file is accepted by. The absolute path of the file is worked out once and every filter is
+	 * asked once, however many processor entries share it.
+	 */
+	private static final class FileClassification
+	{
+		FileClassification( final File file )
+		{
+			this.file			= file;
+			this.absolutePath	= file.getAbsolutePath();
+		}
+
+		boolean isAccepted( final FileFilter filter )
+		{
+			Boolean res = accepted.get( filter );
+			if( res == null )
+			{
+				res = filter instanceof PatternFileFilter? ((PatternFileFilter)filter).accept( file, absolutePath ): filter.accept( file );
+				accepted.put( filter, res );
+			}
+
+			return res;
 		}
+
+		private final File file;
+		private final String absolutePath;
+		private final Map<FileFilter, Boolean> accepted = new IdentityHashMap<FileFilter, Boolean>();
 	}
 
 	/**
 	 * This method loads the sort object for a given file if accepted by the given processinf entry.
 	 */
-	private Collection<SortObject> loadSortObjects( final GlossaryProcessorEntry procEntry, final File file )
+	private Collection<SortObject> loadSortObjects( final GlossaryProcessorEntry procEntry, final FileClassification classification )
 	{
 		Collection<SortObject> res = new ArrayList<SortObject>();
 
 		// get all filters for the processor entry and check the file against all of them
 		for( FileFilter filter : procEntry.getInputReadersMap().keySet() )
 		{
-			if( filter.accept( file ) )
+			if( classification.isAccepted( filter ) )
 			{
-				GlossaryInputDataReader inputReader = procEntry.getInputReadersMap().get( filter );
-				inputReader.setInputFile( file );
-				res.addAll(  inputReader.readSortObjects() );
+				File file = classification.file;
+				ISortObjectsReader inputReader = procEntry.getInputReadersMap().get( filter );
+				res.addAll( sortObjectsCache != null? sortObjectsCache.readSortObjects( inputReader, file, readOptions ): inputReader.readSortObjects( file, readOptions ) );
 			}
 		}
 
 		return res;
 	}
 
+	/**
+	 * Returns the parameters passed to the sort object filters, the metrics if there are any.
+	 */
+	private Map<String, Object> createFilterParameters()
+	{
+		Map<String, Object> res = new HashMap<String, Object>();
+		if( metrics != null ) {
+			res.put( GlossaryMetrics.PARAMETER, metrics );
+		}
+
+		return res;
+	}
+
+	private void recordTime( final String phase, final long start )
+	{
+		if( metrics != null ) {
+			metrics.addTime( phase, start );
+		}
+	}
+
 	/**
 	 * This method sets the file as a user data to every sort object of a given collection.
 	 */
@@ -314,6 +960,24 @@ public class GlossaryProcessor
 		}
 	}
 
+	/**
+	 * Builds the collator data of the languages of the collected data, so it is built once before the stop words are
+	 * removed and the data is sorted and not for the languages the build doesn't use.
+	 */
+	private void prepareCollators( final Collection<SortObject> data )
+	{
+		if( collatorHelper != null )
+		{
+			Set<String> languages = new LinkedHashSet<String>();
+			for( SortObject sortObject : data )
+			{
+				languages.add( sortObject.getLanguageCodeL1() );
+				languages.add( sortObject.getLanguageCodeL2() );
+			}
+			collatorHelper.prepare( languages );
+		}
+	}
+
 	/**
 	 * Removes all stop words from the given string. This method also converts a given string to lowercase according to
 	 * the rules of a given language.
@@ -322,18 +986,18 @@ public class GlossaryProcessor
 	{
 		String res = field.toLowerCase();
 
-		logger.info( String.format( "Removing stop words from: [%s]", res ) );
+		if( logger.isDebugEnabled() ) {
+			logger.debug( String.format( "Removing stop words from: [%s]", res ) );
+		}
 
-		CollatorData collatorData = collatorHelper.getCollatorData().get( langCode );
+		CollatorData collatorData = collatorHelper.getCollatorData( langCode );
 		if( collatorData != null && collatorData.getStopWords( false ).size() > 0 )
 		{
 			if( !collatorData.getJavaLocaleCode().equals( CollatorData.NO_JAVA_LOCALE ) ) {
 				res	= field.toLowerCase( new Locale( collatorData.getJavaLocaleCode() ) );
 			}
 
-			for( String word : collatorData.getStopWords( false ) ) {
-				res = res.replaceAll( word, "" );
-			}
+			res = collatorData.removeStopWords( res );
 		}
 
 		// apparently the field text was a stop word so we return the field value to keep the standalone word
@@ -341,7 +1005,9 @@ public class GlossaryProcessor
 			res = field;
 		}
 
-		logger.info( String.format( "Stop words removed: [%s]", res ) );
+		if( logger.isDebugEnabled() ) {
+			logger.debug( String.format( "Stop words removed: [%s]", res ) );
+		}
 
 		return res.trim();
 	}
@@ -356,7 +1022,19 @@ public class GlossaryProcessor
 															= new HashMap<SortType,GlossaryOutputWriter>();
 	private CollatorDataHelper collatorHelper				= null;
 	private StopWordProcessingType stopWordProcessingType	= StopWordProcessingType.ALL;
+	private int parallelism									= 1;
+	private SortMode sortMode								= SortMode.COMPARATOR;
+	private boolean parallelSort							= false;
+	private int parallelSortThreshold						= 10000;
+	private SortObjectsCache sortObjectsCache				= null;
+	private GlossaryMetrics metrics							= null;
+	private ReadOptions readOptions							= ReadOptions.STANDARD;
+	private long sortMemoryBudget							= 0;
+	private File sortTempFolder								= null;
 
 	private Logger logger = Logger.getLogger( this.getClass() );
+
+	private static final String NOT_UNIFORM_MESSAGE	= "The sort objects differ in the language codes or in the number of sort fields, "
+													  + "the order they are sorted on disk in can differ from the in-memory one";
 	//------------------------------------------------------------------------------------------------------------------
 }
@@ -3,7 +3,7 @@
  */
 package com.transparent.glossary.processor;
 
-import com.transparent.glossary.io.GlossaryInputDataReader;
+import com.transparent.glossary.io.ISortObjectsReader;
 import com.transparent.glossary.model.SortObject;
 
 import java.io.FileFilter;
@@ -19,14 +19,14 @@ import java.util.*;
 public class GlossaryProcessorEntry implements ISortObjectsFilter
 {
 	//===================================== property assessors ==========================================================
-	public Map<FileFilter, GlossaryInputDataReader> getInputReadersMap() {
+	public Map<FileFilter, ISortObjectsReader> getInputReadersMap() {
 		return inputReaderMap;
 	}
 
 	/**
 	 * Sets the map of the input content readers keyed by the file filter that this reader correspons to.
 	 */
-	public void setInputReadersMap( final Map<FileFilter, GlossaryInputDataReader> inputReaderMap ) {
+	public void setInputReadersMap( final Map<FileFilter, ISortObjectsReader> inputReaderMap ) {
 		this.inputReaderMap = inputReaderMap;
 	}
 
@@ -64,8 +64,8 @@ public class GlossaryProcessorEntry implements ISortObjectsFilter
 	}
 
 	//------------------------------------------------------------------------------------------------------------------
-	private Map<FileFilter, GlossaryInputDataReader> inputReaderMap
-														= new HashMap<FileFilter, GlossaryInputDataReader>();
+	private Map<FileFilter, ISortObjectsReader> inputReaderMap
+														= new HashMap<FileFilter, ISortObjectsReader>();
 	private List<ISortObjectsFilter> sortObjectsFilters	= new ArrayList<ISortObjectsFilter>();
 	private ContentProcessingRule processingRule		= ContentProcessingRule.SINGLE;
 	//------------------------------------------------------------------------------------------------------------------
@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.processor;
+
+import com.transparent.glossary.model.SortObject;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * This interface should be implemented by the filters that can filter a collection of sort objects one part at a time,
+ * so the whole collection doesn't have to be in memory at once, see GlossaryProcessor.collectSortAndWriteGlossaries().
+ */
+public interface IIncrementalSortObjectsFilter extends ISortObjectsFilter
+{
+	/**
+	 * Filters a part of the collection of sort objects. The parts are passed in the order of the collection, all with
+	 * the same parameters map, in which the filter keeps what it needs to know about the parts filtered before. The
+	 * parts filtered this way end up the same as the whole collection filtered by process().
+	 */
+	void processPart( Collection<SortObject> part, Map<String, Object> parameters );
+}
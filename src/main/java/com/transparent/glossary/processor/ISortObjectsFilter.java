@@ -17,6 +17,13 @@ import java.util.Map;
  */
 public interface ISortObjectsFilter
 {
+	/**
+	 * The key of the sort objects grouped by the file they were read from in the parameters map of process(). The
+	 * processor passes them to the entries that process the data of more than one file: a map of the absolute file
+	 * path to the sort objects read from the file, in the order of the processed collection.
+	 */
+	String FILE_GROUPS_PARAMETER = "fileGroups";
+
 	/**
 	 * Filters sort objects. This method will modify the content of a given collection of the sort objects.
 	 * A concrete implementation can use optional parameters map to get implementation specific parameters.
@@ -3,52 +3,106 @@
  */
 package com.transparent.glossary.processor;
 
+import com.transparent.glossary.metrics.GlossaryMetrics;
 import com.transparent.glossary.model.SortObject;
 import org.apache.log4j.Logger;
 
 import java.text.Normalizer;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * This implementation of the ISortObjectsFilter interface filters sort object duplicates. It will remove one of the
- * duplicates from the collection. There is no guarantee which duplicate will be removed.
+ * This implementation of the ISortObjectsFilter interface filters sort object duplicates. It will remove all but the
+ * first of the duplicates from the collection, the remaining sort objects keep their order.
  * The duplicates are defined as two sort objects that have the same primary L1+L2 sort fields combinations.
  * It is assumed that fields-to-include collection of a given object will always have primary L1 and L2 sort fields.
+ * The collection can be filtered one part at a time as well, the keys of the sort objects kept so far are kept in the
+ * parameters map.
  *
  * User: plitvak
  * Date: Aug 3, 2009
  * Time: 2:47:51 PM
  */
-public class SortObjectsL1L2DuplicateFilter implements ISortObjectsFilter
+public class SortObjectsL1L2DuplicateFilter implements IIncrementalSortObjectsFilter
 {
 	/**
 	 */
-	public void process( final Collection<SortObject> objectsToProcess, final Map<String, Object> parameters )
+	public void process( final Collection<SortObject> objectsToProcess, final Map<String, Object> parameters ) {
+		filter( objectsToProcess, new HashSet<String>(), parameters );
+	}
+
+	/**
+	 */
+	public void processPart( final Collection<SortObject> part, final Map<String, Object> parameters )
+	{
+		@SuppressWarnings( "unchecked" )
+		Set<String> keys = (Set<String>)parameters.get( KEYS_PARAMETER );
+		if( keys == null )
+		{
+			keys = new HashSet<String>();
+			parameters.put( KEYS_PARAMETER, keys );
+		}
+
+		filter( part, keys, parameters );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Removes the sort objects whose keys are among the given keys or repeat a key of the collection, the keys of the
+	 * remaining ones are added to the keys.
+	 */
+	private void filter( final Collection<SortObject> objectsToProcess, final Set<String> keys, final Map<String, Object> parameters )
 	{
 		logger.info( String.format( "Filtering duplicates for original sort object collection of %d elements", objectsToProcess.size() ) );
 
-		Map<String,SortObject> filterMap = new HashMap<String,SortObject>();
+		GlossaryMetrics metrics	= GlossaryMetrics.get( parameters );
+		long start				= System.nanoTime();
+
+		List<SortObject> filtered = new ArrayList<SortObject>( objectsToProcess.size() );
 		// the assumption here is that there will always be the fields with names L1 and L2 and they always will be the
 		// primary sort fields.
-		// The map will naturally keep only one unique combination of L1+L2
+		// The set will naturally keep only one unique combination of L1+L2
 		for( SortObject sortObject : objectsToProcess )
 		{
 			String key = Normalizer.normalize( sortObject.getFieldsToIncludeMap().get( SortObject.L1_FIELD_NAME ), Normalizer.Form.NFD )
 						 +
 						 Normalizer.normalize( sortObject.getFieldsToIncludeMap().get( SortObject.L2_FIELD_NAME ), Normalizer.Form.NFD );
 			logger.info( "Key: "+key );
-			filterMap.put( key, sortObject );
+			if( keys.add( key ) ) {
+				filtered.add( sortObject );
+			}
 		}
 
-		objectsToProcess.clear();
-		objectsToProcess.addAll( filterMap.values() );
+		if( metrics != null )
+		{
+			metrics.addTime( METRICS_PHASE, start );
+			metrics.updatePeak( METRICS_PHASE, objectsToProcess.size() );
+		}
+
+		if( filtered.size() != objectsToProcess.size() )
+		{
+			objectsToProcess.clear();
+			objectsToProcess.addAll( filtered );
+		}
 
 		logger.info( String.format( "Duplicates filterd (if found) new collection size is %d elements", objectsToProcess.size() ) );
 	}
 
 	//------------------------------------------------------------------------------------------------------------------
+	private static final String METRICS_PHASE = GlossaryMetrics.FILTER + ".duplicates";
+
+	/**
+	 * The key of the keys of the sort objects kept so far in the parameters map of processPart().
+	 */
+	private static final String KEYS_PARAMETER = "duplicateKeys";
+
 	private Logger logger = Logger.getLogger( this.getClass() );
 	//------------------------------------------------------------------------------------------------------------------
 }
\ No newline at end of file
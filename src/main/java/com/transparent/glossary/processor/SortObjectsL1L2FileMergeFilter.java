@@ -3,6 +3,7 @@
  */
 package com.transparent.glossary.processor;
 
+import com.transparent.glossary.metrics.GlossaryMetrics;
 import com.transparent.glossary.model.SortObject;
 import org.apache.log4j.Logger;
 
@@ -16,6 +17,9 @@ import java.util.regex.Pattern;
  * It assumes that collection contains an equal number of sort object with just L1 and just L2 information specified.
  * This may occure while reader reads a *TT.xml file that has only one language information in it.
  * It is also expected that every sort object instance will have an information about the file it was created from.
+ * The processor also passes the sort objects grouped by file in the parameters (see
+ * ISortObjectsFilter.FILE_GROUPS_PARAMETER), so the file name patterns are matched once per file. The file names in
+ * the user data are used instead when there are no groups or they no longer hold the sort objects of the collection.
 
  * User: plitvak
  * Date: Aug 3, 2009
@@ -76,6 +80,8 @@ public class SortObjectsL1L2FileMergeFilter implements ISortObjectsFilter
 		logger.info( String.format( "Merging objects with just one language for original sort object collection of %d elements",
 									objectsToProcess.size() ) );
 
+		GlossaryMetrics metrics					= GlossaryMetrics.get( parameters );
+		long start								= System.nanoTime();
 		Collection<SortObject> result			= new ArrayList<SortObject>( objectsToProcess.size() / 2 );
 		Map<String, List<SortObject>> dataL1	= new HashMap<String, List<SortObject>>();
 		Map<String, List<SortObject>> dataL2	= new HashMap<String, List<SortObject>>();
@@ -83,7 +89,13 @@ public class SortObjectsL1L2FileMergeFilter implements ISortObjectsFilter
 		// split sort object in to two maps, one just those that have L1 information and
 		// another that has only L2. These maps are keyed by the common part of the correspondent
 		// file names that the sort objects were created from.
-		splitSortData( objectsToProcess, dataL1, dataL2 );
+		Map<String, Collection<SortObject>> fileGroups = getFileGroups( objectsToProcess, parameters );
+		if( fileGroups != null ) {
+			splitFileGroups( fileGroups, dataL1, dataL2 );
+		}
+		else {
+			splitSortData( objectsToProcess, dataL1, dataL2 );
+		}
 
 		// merge the sort objects
 		for( String key : dataL1.keySet() )
@@ -115,6 +127,12 @@ public class SortObjectsL1L2FileMergeFilter implements ISortObjectsFilter
 			}
 		}
 
+		if( metrics != null )
+		{
+			metrics.addTime( METRICS_PHASE, start );
+			metrics.updatePeak( METRICS_PHASE, objectsToProcess.size() );
+		}
+
 		objectsToProcess.clear();
 		objectsToProcess.addAll( result );
 
@@ -126,6 +144,47 @@ public class SortObjectsL1L2FileMergeFilter implements ISortObjectsFilter
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * Returns the sort objects grouped by file passed in the parameters, or null if there are none or they are not the
+	 * groups of the given collection: the filters run before this one may have removed, added or reordered the sort
+	 * objects, so the groups have to hold the very same objects in the same order as the collection.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private Map<String, Collection<SortObject>> getFileGroups( final Collection<SortObject> objectsToProcess,
+															   final Map<String, Object> parameters )
+	{
+		Map<String, Collection<SortObject>> res = parameters != null? (Map<String, Collection<SortObject>>)parameters.get( FILE_GROUPS_PARAMETER ): null;
+		if( res == null ) {
+			return null;
+		}
+
+		Iterator<SortObject> objects = objectsToProcess.iterator();
+		for( Collection<SortObject> fileGroup : res.values() )
+		{
+			for( SortObject sortObject : fileGroup )
+			{
+				if( !objects.hasNext() || objects.next() != sortObject ) {
+					return null;
+				}
+			}
+		}
+
+		return objects.hasNext()? null: res;
+	}
+
+	/**
+	 * Same as splitSortData() for the sort objects grouped by file, the file name of every group is matched once.
+	 */
+	private void splitFileGroups( final Map<String, Collection<SortObject>> fileGroups,
+								  final Map<String, List<SortObject>> dataL1,
+								  final Map<String, List<SortObject>> dataL2 )
+	{
+		FileNamePatterns patterns = new FileNamePatterns();
+		for( String fileName : fileGroups.keySet() ) {
+			patterns.split( fileName, fileGroups.get( fileName ), dataL1, dataL2 );
+		}
+	}
+
 	/**
 	 * This methid splits the collection of sort objects in two maps. One that has only objects that contain L1
 	 * information and another that contain only L2. Both maps are keyd with the same set of keys which is build upon
@@ -135,16 +194,36 @@ public class SortObjectsL1L2FileMergeFilter implements ISortObjectsFilter
 								final Map<String, List<SortObject>> dataL1,
 								final Map<String, List<SortObject>> dataL2 )
 	{
-		Pattern regExpL1		= Pattern.compile( filePatternL1 );
-		Pattern regExpL2		= Pattern.compile( filePatternL2 );
-		Pattern regExpCommon	= Pattern.compile( commonPartPattern );
-
+		FileNamePatterns patterns = new FileNamePatterns();
 		for( SortObject sortObject : objectsToProcess )
 		{
 			// get the file name that this sort object was created from.
 			String fileName	= (String)sortObject.getUserData().get( "" );
-			assert fileName != null;
+			if( fileName == null )
+			{
+				String msg = String.format( "Sort object %s has no file name in its user data", sortObject );
+				logger.error( msg );
+				throw new RuntimeException( msg );
+			}
+
+			patterns.split( fileName, Collections.singletonList( sortObject ), dataL1, dataL2 );
+		}
+	}
 
+	/**
+	 * The L1, L2 and common part patterns compiled for one call of process().
+	 */
+	private final class FileNamePatterns
+	{
+		/**
+		 * Adds the sort objects created from the given file to the L1 or the L2 map, keyed by the common part of the
+		 * file name.
+		 */
+		void split( final String fileName,
+					final Collection<SortObject> sortObjects,
+					final Map<String, List<SortObject>> dataL1,
+					final Map<String, List<SortObject>> dataL2 )
+		{
 			Matcher matcherL1	= regExpL1.matcher( fileName );
 			Matcher matcherL2	= regExpL2.matcher( fileName );
 			Matcher commonPart	= regExpCommon.matcher( fileName );
@@ -161,26 +240,12 @@ public class SortObjectsL1L2FileMergeFilter implements ISortObjectsFilter
 			String fileNameCommonPart = commonPart.group( 1 );
 
 			// if the file name matches L1 file name add to L1 map
-			if( matcherL1.matches() )
-			{
-				List<SortObject> data = dataL1.get( fileNameCommonPart );
-				if( data == null )
-				{
-					data = new ArrayList<SortObject>();
-					dataL1.put( fileNameCommonPart, data );
-				}
-				data.add( sortObject );
+			if( matcherL1.matches() ) {
+				add( dataL1, fileNameCommonPart, sortObjects );
 			}
 			// if the file name matches L2 file name add to L2 map
-			else if( matcherL2.matches() )
-			{
-				List<SortObject> data = dataL2.get( fileNameCommonPart );
-				if( data == null )
-				{
-					data = new ArrayList<SortObject>();
-					dataL2.put( fileNameCommonPart, data );
-				}
-				data.add( sortObject );
+			else if( matcherL2.matches() ) {
+				add( dataL2, fileNameCommonPart, sortObjects );
 			}
 			// file name must match either L1 or L2 file name
 			else
@@ -191,9 +256,26 @@ public class SortObjectsL1L2FileMergeFilter implements ISortObjectsFilter
 				throw new RuntimeException( msg );
 			}
 		}
+
+		private void add( final Map<String, List<SortObject>> data, final String key, final Collection<SortObject> sortObjects )
+		{
+			List<SortObject> list = data.get( key );
+			if( list == null )
+			{
+				list = new ArrayList<SortObject>();
+				data.put( key, list );
+			}
+			list.addAll( sortObjects );
+		}
+
+		private final Pattern regExpL1		= Pattern.compile( filePatternL1 );
+		private final Pattern regExpL2		= Pattern.compile( filePatternL2 );
+		private final Pattern regExpCommon	= Pattern.compile( commonPartPattern );
 	}
 
 	//------------------------------------------------------------------------------------------------------------------
+	private static final String METRICS_PHASE = GlossaryMetrics.FILTER + ".merge";
+
 	private String filePatternL1		= null;
 	private String filePatternL2		= null;
 	private String commonPartPattern    = null;
@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.sort;
+
+import com.transparent.glossary.model.SortObject;
+import org.apache.log4j.Logger;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class sorts SortObject instances in the same order as GlossaryComparator does, but the collator is applied to
+ * every sort field only once: the collation keys of the sort fields are built up front and the sort compares the keys.
+ * The keys are compared the same way as the comparator compares the fields, only a common number of sort fields is
+ * compared.
+ * All sort objects have to have the same L1/L2 language codes, otherwise the collection is sorted with
+ * GlossaryComparator.
+ * The sort objects with equal sort fields can be ordered by the tie sort type as well, see
+ * GlossaryComparator.setTieSortType().
+ * Large collections can be sorted in parallel, see setParallelThreshold() and setParallelism(). The parallel sort is stable as well and
+ * produces the same order as the serial one.
+ * @see com.transparent.glossary.sort.GlossaryComparator
+ */
+public class CollationKeySorter
+{
+	//===================================== property assessors ==========================================================
+	public CollatorDataHelper getCollatorHelper() {
+		return collatorHelper;
+	}
+
+	public void setCollatorHelper( final CollatorDataHelper collatorHelper ) {
+		this.collatorHelper = collatorHelper;
+	}
+
+	public SortDirection getSortDirection() {
+		return sortDirection;
+	}
+
+	public void setSortDirection( final SortDirection sortDirection ) {
+		this.sortDirection = sortDirection;
+	}
+
+	public SortType getSortType() {
+		return sortType;
+	}
+
+	public void setSortType( final SortType sortType ) {
+		this.sortType = sortType;
+	}
+
+	public SortType getTieSortType() {
+		return tieSortType;
+	}
+
+	/**
+	 * Sets the sort type the sort objects with equal sort fields are ordered by, see
+	 * GlossaryComparator.setTieSortType(). Not set by default.
+	 */
+	public void setTieSortType( final SortType tieSortType ) {
+		this.tieSortType = tieSortType;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * Sets the number of sort objects from which the keys are built and sorted in parallel, the collections of fewer
+	 * sort objects are sorted on the calling thread. 0 (default) disables the parallel sort.
+	 * Collections with sort objects that have no sort fields are always sorted on the calling thread, such objects
+	 * can't be ordered consistently (see GlossaryComparator) so the order would depend on the sort algorithm.
+	 */
+	public void setParallelThreshold( final int parallelThreshold ) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of worker threads of the parallel sort, see setParallelThreshold(). The keys are built and sorted
+	 * in a fork/join pool of that many threads; 0 (default) uses the common pool, so every core. Arrays.parallelSort()
+	 * only splits the sort if the common pool has more than one thread.
+	 */
+	public void setParallelism( final int parallelism ) {
+		this.parallelism = parallelism;
+	}
+	//===================================== property assessors ==========================================================
+
+	/**
+	 * Sorts the list of the sort objects. The sort is stable, equal sort objects keep their order.
+	 * This method modifies the list passed in to it.
+	 */
+	public void sort( final List<SortObject> sortObjects )
+	{
+		if( sortObjects.isEmpty() ) {
+			return;
+		}
+
+		if( !haveSameLanguages( sortObjects ) )
+		{
+			logger.info( "Sort objects have different language codes, sorting with the comparator" );
+
+			GlossaryComparator glossaryComparator = new GlossaryComparator();
+			glossaryComparator.setCollatorHelper( collatorHelper );
+			glossaryComparator.setSortType( sortType );
+			glossaryComparator.setSortDirection( sortDirection );
+			glossaryComparator.setTieSortType( tieSortType );
+
+			Collections.sort( sortObjects, glossaryComparator );
+			return;
+		}
+
+		SortObject first			= sortObjects.get( 0 );
+		String languageCode			= sortType == SortType.L1? first.getLanguageCodeL1(): first.getLanguageCodeL2();
+		CollatorData collatorData	= collatorHelper.getCollatorData( languageCode );
+
+		if( collatorData == null ) {
+			throw new RuntimeException( "No collator data found for language: "+languageCode );
+		}
+
+		CollatorData tieCollatorData = null;
+		if( tieSortType != null )
+		{
+			String tieLanguageCode	= tieSortType == SortType.L1? first.getLanguageCodeL1(): first.getLanguageCodeL2();
+			tieCollatorData			= collatorHelper.getCollatorData( tieLanguageCode );
+			if( tieCollatorData == null ) {
+				throw new RuntimeException( "No collator data found for language: "+tieLanguageCode );
+			}
+		}
+
+		SortObject[] objects				= sortObjects.toArray( new SortObject[sortObjects.size()] );
+		KeyedSortObject[] keyedObjects		= new KeyedSortObject[objects.length];
+		KeyComparator comparator			= new KeyComparator( sortDirection == SortDirection.ASC? 1: -1 );
+		if( parallelThreshold > 0 && objects.length >= parallelThreshold && haveSortFields( objects ) )
+		{
+			logger.info( String.format( "Sorting %d elements in parallel", objects.length ) );
+
+			ForkJoinPool pool = parallelism > 0? new ForkJoinPool( parallelism ): ForkJoinPool.commonPool();
+			try {
+				pool.invoke( new SortTask( objects, keyedObjects, collatorData, tieCollatorData, comparator ) );
+			}
+			finally
+			{
+				if( pool != ForkJoinPool.commonPool() ) {
+					pool.shutdown();
+				}
+			}
+		}
+		else
+		{
+			Collator collator		= collatorData.getCollator( false );
+			Collator tieCollator	= tieCollatorData != null? tieCollatorData.getCollator( false ): null;
+			for( int i = 0; i < objects.length; i++ ) {
+				keyedObjects[i] = new KeyedSortObject( objects[i], collator, tieCollator );
+			}
+			Arrays.sort( keyedObjects, comparator );
+		}
+
+		ListIterator<SortObject> it = sortObjects.listIterator();
+		for( KeyedSortObject keyedObject : keyedObjects )
+		{
+			it.next();
+			it.set( keyedObject.sortObject );
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Sort object with the collation keys of its sort fields and of its tie sort fields, if there is a tie sort type.
+	 */
+	private class KeyedSortObject
+	{
+		KeyedSortObject( final SortObject sortObject, final Collator collator, final Collator tieCollator )
+		{
+			this.sortObject	= sortObject;
+			this.keys		= createKeys( sortObject, sortType, collator );
+			this.tieKeys	= tieCollator != null? createKeys( sortObject, tieSortType, tieCollator ): null;
+		}
+
+		final SortObject sortObject;
+		final CollationKey[] keys;
+		final CollationKey[] tieKeys;
+	}
+
+	/**
+	 * Compares the keys the same way as GlossaryComparator compares the sort fields.
+	 */
+	private static class KeyComparator implements Comparator<KeyedSortObject>
+	{
+		KeyComparator( final int sortDir ) {
+			this.sortDir = sortDir;
+		}
+
+		@Override
+		public int compare( final KeyedSortObject o1, final KeyedSortObject o2 )
+		{
+			int res = compareKeys( o1.keys, o2.keys );
+			if( res == 0 && o1.tieKeys != null ) {
+				// the ties are in ascending order whatever the sort direction
+				return compareKeys( o1.tieKeys, o2.tieKeys );
+			}
+
+			return sortDir * res;
+		}
+
+		private int compareKeys( final CollationKey[] keys1, final CollationKey[] keys2 )
+		{
+			int res		= 1;
+			int size	= Math.min( keys1.length, keys2.length );
+			for( int i = 0; i < size; i++ )
+			{
+				if( (res = keys1[i].compareTo( keys2[i] )) != 0 ) {
+					break;
+				}
+			}
+
+			return res;
+		}
+
+		private final int sortDir;
+	}
+
+	/**
+	 * Builds the keys of all sort objects and sorts them, in the pool the task is invoked in: Arrays.parallelSort()
+	 * forks its tasks in to the pool of the worker thread it is called on.
+	 */
+	private class SortTask extends RecursiveAction
+	{
+		SortTask( final SortObject[] objects, final KeyedSortObject[] keyedObjects, final CollatorData collatorData,
+				  final CollatorData tieCollatorData, final KeyComparator comparator )
+		{
+			this.objects			= objects;
+			this.keyedObjects		= keyedObjects;
+			this.collatorData		= collatorData;
+			this.tieCollatorData	= tieCollatorData;
+			this.comparator			= comparator;
+		}
+
+		@Override
+		protected void compute()
+		{
+			new KeysTask( objects, keyedObjects, collatorData, tieCollatorData, 0, objects.length ).invoke();
+			Arrays.parallelSort( keyedObjects, comparator );
+		}
+
+		private static final long serialVersionUID = 1L;
+
+		private final SortObject[] objects;
+		private final KeyedSortObject[] keyedObjects;
+		private final CollatorData collatorData;
+		private final CollatorData tieCollatorData;
+		private final KeyComparator comparator;
+	}
+
+	/**
+	 * Builds the keys of a range of the sort objects. The collators are not safe for concurrent use, every task that
+	 * builds the keys itself uses the collator of the thread it runs on.
+	 */
+	private class KeysTask extends RecursiveAction
+	{
+		KeysTask( final SortObject[] objects, final KeyedSortObject[] keyedObjects, final CollatorData collatorData,
+				  final CollatorData tieCollatorData, final int from, final int to )
+		{
+			this.objects			= objects;
+			this.keyedObjects		= keyedObjects;
+			this.collatorData		= collatorData;
+			this.tieCollatorData	= tieCollatorData;
+			this.from				= from;
+			this.to					= to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if( to - from > KEYS_TASK_SIZE )
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll( new KeysTask( objects, keyedObjects, collatorData, tieCollatorData, from, middle ),
+						   new KeysTask( objects, keyedObjects, collatorData, tieCollatorData, middle, to ) );
+			}
+			else
+			{
+				Collator taskCollator		= collatorData.getCollator( false );
+				Collator taskTieCollator	= tieCollatorData != null? tieCollatorData.getCollator( false ): null;
+				for( int i = from; i < to; i++ ) {
+					keyedObjects[i] = new KeyedSortObject( objects[i], taskCollator, taskTieCollator );
+				}
+			}
+		}
+
+		private static final long serialVersionUID = 1L;
+
+		private final SortObject[] objects;
+		private final KeyedSortObject[] keyedObjects;
+		private final CollatorData collatorData;
+		private final CollatorData tieCollatorData;
+		private final int from;
+		private final int to;
+	}
+
+	private static CollationKey[] createKeys( final SortObject sortObject, final SortType type, final Collator collator )
+	{
+		List<String> sortFields	= type == SortType.L1? sortObject.getSortFieldsL1(): sortObject.getSortFieldsL2();
+		CollationKey[] res		= new CollationKey[sortFields.size()];
+		for( int i = 0; i < res.length; i++ ) {
+			res[i] = collator.getCollationKey( sortFields.get( i ) );
+		}
+
+		return res;
+	}
+
+	/**
+	 * Checks that every sort object has at least one sort field for the sort type.
+	 */
+	private boolean haveSortFields( final SortObject[] objects )
+	{
+		for( SortObject sortObject : objects )
+		{
+			if( (sortType == SortType.L1? sortObject.getSortFieldsL1(): sortObject.getSortFieldsL2()).isEmpty() ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks that all sort objects have the same (non null) L1 and L2 language codes.
+	 */
+	private boolean haveSameLanguages( final List<SortObject> sortObjects )
+	{
+		SortObject first = sortObjects.get( 0 );
+		if( first.getLanguageCodeL1() == null || first.getLanguageCodeL2() == null ) {
+			return false;
+		}
+
+		for( SortObject sortObject : sortObjects )
+		{
+			if( !first.getLanguageCodeL1().equals( sortObject.getLanguageCodeL1() )
+				|| !first.getLanguageCodeL2().equals( sortObject.getLanguageCodeL2() ) ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private CollatorDataHelper collatorHelper	= null;
+	private SortDirection sortDirection			= SortDirection.ASC;
+	private SortType sortType					= SortType.L1;
+	private SortType tieSortType				= null;
+	private int parallelThreshold				= 0;
+	private int parallelism						= 0;
+
+	/**
+	 * Number of sort objects a single task builds the keys for.
+	 */
+	private static final int KEYS_TASK_SIZE		= 2048;
+
+	final private Logger logger = Logger.getLogger( this.getClass() );
+	//------------------------------------------------------------------------------------------------------------------
+}
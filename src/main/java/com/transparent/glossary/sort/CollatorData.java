@@ -9,12 +9,19 @@ import java.text.Collator;
 import java.text.ParseException;
 import java.text.RuleBasedCollator;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * This class holds information about a collator.
  * It associates collator with a language, its Java locale (in one exists for the language) and also collation rules
  * if applicable.
  * Also this class holds an association of a collator with language alphabet and the stop words.
+ * The properties only describe the language, they are kept as set. The collator, the stop words and their patterns,
+ * the alphabet, the letter groups and the letter buckets are built out of them all at once the first time any of them
+ * is needed (see materialize()), so a configuration of many languages costs only the languages a build uses. Changing
+ * a property drops whatever was built.
+ * The collators are not safe for concurrent use, every thread gets its own copy of the collator, see getCollator().
  *
  * User: plitvak
  * Date: Jul 30, 2009
@@ -30,11 +37,12 @@ public class CollatorData
 	//===================================== property assessors ==========================================================
 	public void setAlphabet( final String alphabet ) {
 		this.alphabet = alphabet;
+		materialized = null;
 	}
 
-	public void setLetterGroups (final String letterGroups ) { this.letterGroups = letterGroups; }
+	public void setLetterGroups (final String letterGroups ) { this.letterGroups = letterGroups; materialized = null; }
 
-	public void setMiscBucketLabel (final String miscBucketLabel) {this.miscBucketLabel = miscBucketLabel; }
+	public void setMiscBucketLabel (final String miscBucketLabel) {this.miscBucketLabel = miscBucketLabel; materialized = null; }
 
 	public String getTplLanguageCode() {
 		return tplLanguageCode;
@@ -50,6 +58,7 @@ public class CollatorData
 
 	public void setJavaLocaleCode( final String javaLocaleCode ) {
 		this.javaLocaleCode = javaLocaleCode;
+		materialized = null;
 	}
 
 	public String getCollationRules() {
@@ -58,6 +67,7 @@ public class CollatorData
 
 	public void setCollationRules( final String collationRules ) {
 		this.collationRules = collationRules;
+		materialized = null;
 	}
 
 	public String getStopWords() {
@@ -66,84 +76,323 @@ public class CollatorData
 
 	public void setStopWords( final String stopWords ) {
 		this.stopWords = stopWords;
+		materialized = null;
 	}
 	//===================================== property assessors ==========================================================
 
 	/**
-	 * This method caches the returned collator and will not create it again unless the rebuild is set to true.
+	 * Builds the collator, the stop words, the alphabet and the letter groups of the language unless they are built
+	 * already. The other methods call it as needed; CollatorDataHelper.prepare() calls it up front for the languages of
+	 * a build, so they are not built by the threads sorting or writing the glossary.
 	 */
-	public Collator getCollator( boolean rebuild )
+	public void materialize() {
+		getMaterialized();
+	}
+
+	/**
+	 * Returns true if the collator, the stop words, the alphabet and the letter groups are built.
+	 */
+	public boolean isMaterialized() {
+		return materialized != null;
+	}
+
+	/**
+	 * Returns the collator of the calling thread, a copy of the collator of the language made the first time the thread
+	 * asks for it. The collators are cached and not created again unless the rebuild is set to true. The returned
+	 * collator should not be handed to other threads.
+	 */
+	public Collator getCollator( boolean rebuild ) {
+		return getMaterialized( rebuild ).threadCollators.get();
+	}
+
+	/**
+	 * This method caches the list of the stop words and will not create it again unless the rebuild is set to true.
+	 */
+	public List<String> getStopWords( boolean rebuild ) {
+		return getMaterialized( rebuild ).stopWords;
+	}
+
+	/**
+	 * This method caches the list of the alphabet letters and will not create it again unless the rebuild is set to true.
+	 */
+	public List<String> getAlphabet( boolean rebuild ) {
+		return getMaterialized( rebuild ).alphabet;
+	}
+
+	public List<String> getLetterGroups(boolean rebuild) {
+		return getMaterialized( rebuild ).letterGroups;
+	}
+
+	public String getMiscBucketLabel()
 	{
-		Collator res = null;
+		if (miscBucketLabel == null || miscBucketLabel.isEmpty())
+			return "*";
+		else
+			return miscBucketLabel;
+	}
 
-		if( rebuild || cachedCollator == null ) {
-			res = cachedCollator = makeCollator();
+	/**
+	 * Removes all stop words from the given text. The result is the same as replacing every stop word expression with
+	 * an empty string one after another, but the stop words are compiled once in to as few patterns as possible: a run
+	 * of single character stop words is removed with one character class and a run of whole word stop words (\bword\b)
+	 * with one alternation. Other expressions, e.g. the anchored ones, are applied on their own in the same order.
+	 */
+	public String removeStopWords( final String text )
+	{
+		String res = text;
+		for( Pattern pattern : getMaterialized().stopWordPatterns ) {
+			res = pattern.matcher( res ).replaceAll( "" );
 		}
-		else {
-			res = cachedCollator;
+
+		return res;
+	}
+
+	/**
+	 * Returns the glossary letter the entries starting with the given code point are listed under. The code point is
+	 * upper cased, replaced with the first letter of its letter group and looked up in the alphabet; code points that
+	 * are not in the alphabet go to the misc bucket.
+	 * This method caches the bucket of every code point, the cache is dropped when any property changes.
+	 */
+	public LetterBucket getLetterBucket( final int codePoint )
+	{
+		Materialized data	= getMaterialized();
+		LetterBucket res	= data.letterBuckets.get( codePoint );
+		if( res == null )
+		{
+			res = makeLetterBucket( data, codePoint );
+			data.letterBuckets.put( codePoint, res );
 		}
 
 		return res;
 	}
 
 	/**
-	 * This method caches the list of the stop words and will not create it again unless the rebuild is set to true.
+	 * Glossary letter and whether it is the misc bucket.
 	 */
-	public List<String> getStopWords( boolean rebuild )
+	public static final class LetterBucket
 	{
-		List<String> res = null;
+		public LetterBucket( final String letter, final boolean miscBucket )
+		{
+			this.letter		= letter;
+			this.miscBucket	= miscBucket;
+		}
 
-		if( rebuild || cachedStopWords == null ) {
-			res = cachedStopWords = parseStopWordsData();
+		public String getLetter() {
+			return letter;
 		}
-		else {
-			res = cachedStopWords;
+
+		public boolean isMiscBucket() {
+			return miscBucket;
 		}
 
-		return res;
+		@Override
+		public boolean equals( final Object o )
+		{
+			if( this == o ) {
+				return true;
+			}
+			if( o == null || getClass() != o.getClass() ) {
+				return false;
+			}
+
+			LetterBucket that = (LetterBucket)o;
+			return miscBucket == that.miscBucket && letter.equals( that.letter );
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * letter.hashCode() + (miscBucket? 1: 0);
+		}
+
+		@Override
+		public String toString() {
+			return miscBucket? letter + " (misc)": letter;
+		}
+
+		private final String letter;
+		private final boolean miscBucket;
 	}
 
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
 	/**
-	 * This method caches the list of the alphabet letters and will not create it again unless the rebuild is set to true.
+	 * Everything built out of the properties. The holder is immutable except for the letter bucket cache and the
+	 * thread collators, both safe for concurrent use, and is published through a volatile field, so it can be used
+	 * from several threads once built. The collator itself is never used, only its copies.
 	 */
-	public List<String> getAlphabet( boolean rebuild )
+	private static final class Materialized
 	{
-		List<String> res = null;
-
-		if( rebuild || cachedAlphabet == null ) {
-			res = cachedAlphabet = parseAlphabet();
+		Materialized( final Collator collator, final List<String> stopWords, final List<String> alphabet, final List<String> letterGroups )
+		{
+			this.collator			= collator;
+			this.stopWords			= stopWords;
+			this.stopWordPatterns	= compileStopWords( stopWords );
+			this.alphabet			= alphabet;
+			this.letterGroups		= letterGroups;
 		}
-		else {
-			res = cachedAlphabet;
+
+		final Collator collator;
+		final ThreadLocal<Collator> threadCollators = new ThreadLocal<Collator>()
+		{
+			@Override
+			protected Collator initialValue() {
+				return (Collator)collator.clone();
+			}
+		};
+		final List<String> stopWords;
+		final List<Pattern> stopWordPatterns;
+		final List<String> alphabet;
+		final List<String> letterGroups;
+		final Map<Integer, LetterBucket> letterBuckets = new ConcurrentHashMap<Integer, LetterBucket>();
+	}
+
+	private Materialized getMaterialized()
+	{
+		Materialized res = materialized;
+		if( res == null )
+		{
+			synchronized( this )
+			{
+				res = materialized;
+				if( res == null ) {
+					res = materialized = new Materialized( makeCollator(), parseStopWordsData(), parseAlphabet(), parseLetterGroups() );
+				}
+			}
 		}
 
 		return res;
 	}
 
-	public List<String> getLetterGroups(boolean rebuild)
+	private Materialized getMaterialized( final boolean rebuild )
 	{
-		List<String> res = null;
-		if (rebuild || cachedLetterGroups == null) {
-			res = cachedLetterGroups = parseLetterGroups();
+		if( rebuild ) {
+			materialized = null;
 		}
-		else {
-			res = cachedLetterGroups;
+
+		return getMaterialized();
+	}
+
+	/**
+	 * Compiles the stop word expressions in to the patterns applied by removeStopWords(). Only the adjacent stop words
+	 * that give the same result whether removed one after another or all at once are combined:
+	 * - removing a character never creates or breaks a match of another single character;
+	 * - a whole ASCII word is surrounded by non word characters, removing it doesn't change the word boundaries of the
+	 *   other words.
+	 */
+	private static List<Pattern> compileStopWords( final List<String> words )
+	{
+		List<Pattern> res			= new ArrayList<Pattern>();
+		StringBuilder characters	= new StringBuilder();
+		List<String> wholeWords		= new ArrayList<String>();
+
+		for( String word : words )
+		{
+			// an empty expression doesn't remove anything
+			if( word.length() == 0 ) {
+				continue;
+			}
+
+			int character = literalCharacter( word );
+			if( character != -1 )
+			{
+				addWholeWordsPattern( res, wholeWords );
+				characters.append( String.format( "\\x{%x}", character ) );
+				continue;
+			}
+
+			if( theWholeWordPattern.matcher( word ).matches() )
+			{
+				addCharactersPattern( res, characters );
+				wholeWords.add( word.substring( 2, word.length() - 2 ) );
+				continue;
+			}
+
+			addCharactersPattern( res, characters );
+			addWholeWordsPattern( res, wholeWords );
+			res.add( Pattern.compile( word ) );
 		}
 
+		addCharactersPattern( res, characters );
+		addWholeWordsPattern( res, wholeWords );
+
 		return res;
 	}
 
-	public String getMiscBucketLabel()
+	private static void addCharactersPattern( final List<Pattern> patterns, final StringBuilder characters )
 	{
-		if (miscBucketLabel == null || miscBucketLabel.isEmpty())
-			return "*";
-		else
-			return miscBucketLabel;
+		if( characters.length() > 0 )
+		{
+			patterns.add( Pattern.compile( "[" + characters + "]" ) );
+			characters.setLength( 0 );
+		}
 	}
 
-	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	private static void addWholeWordsPattern( final List<Pattern> patterns, final List<String> wholeWords )
+	{
+		if( !wholeWords.isEmpty() )
+		{
+			StringBuilder alternation = new StringBuilder();
+			for( String word : wholeWords ) {
+				alternation.append( alternation.length() > 0? "|": "" ).append( word );
+			}
+			patterns.add( Pattern.compile( "\\b(?:" + alternation + ")\\b" ) );
+			wholeWords.clear();
+		}
+	}
+
+	/**
+	 * Returns the character matched by the expression if it matches a single literal character, e.g. "," or "\?",
+	 * otherwise -1.
+	 */
+	private static int literalCharacter( final String word )
+	{
+		int first = word.codePointAt( 0 );
+		if( Character.charCount( first ) == word.length() ) {
+			return REGEX_METACHARACTERS.indexOf( first ) == -1? first: -1;
+		}
+
+		// escaped punctuation stands for itself
+		if( word.length() == 2 && first == '\\' && word.charAt( 1 ) < 128 && !Character.isLetterOrDigit( word.charAt( 1 ) ) ) {
+			return word.charAt( 1 );
+		}
+
+		return -1;
+	}
+
+	private LetterBucket makeLetterBucket( final Materialized data, final int codePoint )
+	{
+		// convert the letter to upper case using appropriate locale if possible
+		String letter = new String( new int[]{ codePoint }, 0, 1 );
+		if( !javaLocaleCode.equals( NO_JAVA_LOCALE ) ) {
+			letter = letter.toUpperCase( new Locale( javaLocaleCode ) );
+		}
+		else {
+			letter = letter.toUpperCase();
+		}
+
+		for( String letterGroup : data.letterGroups )
+		{
+			if( letterGroup.contains( letter ) )
+			{
+				letter = letterGroup.substring( 0, 1 );
+				break;
+			}
+		}
+
+		boolean match = data.alphabet.isEmpty();
+		for( String alphabetLetter : data.alphabet )
+		{
+			if( alphabetLetter.contains( letter ) )
+			{
+				match = true;
+				break;
+			}
+		}
+
+		return match? new LetterBucket( letter, false ): new LetterBucket( getMiscBucketLabel(), true );
+	}
 
 	/**
 	 * Creates a collator based on the language.
@@ -162,7 +411,7 @@ public class CollatorData
 			}
 			catch( ParseException e )
 			{
-				log.error( e );
+				theLogger.error( e );
 				throw new RuntimeException( e );
 			}
 		}
@@ -206,6 +455,9 @@ public class CollatorData
 	}
 
 	//------------------------------------------------------------------------------------------------------------------
+	private static final String REGEX_METACHARACTERS	= "\\^$.|?*+()[]{}";
+	private static final Pattern theWholeWordPattern	= Pattern.compile( "\\\\b[A-Za-z0-9]+\\\\b" );
+
 	private String tplLanguageCode	= null;
 	private String javaLocaleCode	= NO_JAVA_LOCALE;
 	private String collationRules	= null;
@@ -214,11 +466,8 @@ public class CollatorData
 	private String letterGroups     = null;
 	private String miscBucketLabel  = null;
 
-	private Collator cachedCollator			= null;
-	private List<String> cachedStopWords	= null;
-	private List<String> cachedAlphabet		= null;
-	private List<String> cachedLetterGroups = null;
+	private volatile Materialized materialized = null;
 
-	private final Logger log = Logger.getLogger( this.getClass() );
+	private static final Logger theLogger = Logger.getLogger( CollatorData.class );
 	//------------------------------------------------------------------------------------------------------------------
 }
\ No newline at end of file
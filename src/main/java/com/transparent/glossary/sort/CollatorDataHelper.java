@@ -3,11 +3,15 @@
  */
 package com.transparent.glossary.sort;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Simple wrapper class to be used with spring.
  * This class actually represents a map of collator data objects keyed by their langages.
+ * The collator data of a language is built the first time it is used, see CollatorData.materialize() and prepare().
  *
  * User: plitvak
  * Date: Jul 31, 2009
@@ -25,6 +29,43 @@ public class CollatorDataHelper
 	}
 	//===================================== property assessors ==========================================================
 
+	/**
+	 * Returns the collator data of the given language, or null if there is none.
+	 */
+	public CollatorData getCollatorData( final String language ) {
+		return language != null? collatorData.get( language ): null;
+	}
+
+	/**
+	 * Builds the collator data of the given languages, the languages without collator data are skipped.
+	 */
+	public void prepare( final Collection<String> languages )
+	{
+		for( String language : languages )
+		{
+			CollatorData data = getCollatorData( language );
+			if( data != null ) {
+				data.materialize();
+			}
+		}
+	}
+
+	/**
+	 * Returns the languages the collator data is built for.
+	 */
+	public Set<String> getMaterializedLanguages()
+	{
+		Set<String> res = new TreeSet<String>();
+		for( Map.Entry<String, CollatorData> entry : collatorData.entrySet() )
+		{
+			if( entry.getValue().isMaterialized() ) {
+				res.add( entry.getKey() );
+			}
+		}
+
+		return res;
+	}
+
 	//------------------------------------------------------------------------------------------------------------------
 	private Map<String,CollatorData> collatorData = null;
 	//------------------------------------------------------------------------------------------------------------------
@@ -16,6 +16,9 @@ import java.util.List;
  * Which means that if two sort objects have different number of sort fields the smaller number is taking as a common
  * denominator.
  * It is assummed that the first field of each sort field collection of each SortObject is a key sort field.
+ * The sort objects with equal sort fields can be ordered by the sort fields of the tie sort type, see setTieSortType().
+ * The comparator can be used from several threads at once, every thread compares with its own collator, see
+ * CollatorData.getCollator().
  *
  * User: plitvak
  * Date: Aug 4, 2009
@@ -47,6 +50,19 @@ public class GlossaryComparator implements Comparator<SortObject>
 	public void setSortType( final SortType sortType ) {
 		this.sortType = sortType;
 	}
+
+	public SortType getTieSortType() {
+		return tieSortType;
+	}
+
+	/**
+	 * Sets the sort type the sort objects with equal sort fields are ordered by, always ascending; the stable sort then
+	 * orders the data the same as the stable sort of the data sorted by the tie sort type first. The sort objects are
+	 * only ordered by the sort type if not set (default).
+	 */
+	public void setTieSortType( final SortType tieSortType ) {
+		this.tieSortType = tieSortType;
+	}
 	//===================================== property assessors ==========================================================
 
 	/**
@@ -71,10 +87,9 @@ public class GlossaryComparator implements Comparator<SortObject>
 										 o1.getLanguageCodeL2(), o2.getLanguageCodeL2() ) );
 		}
 
-		int res						= 1;
 		int sortDir					= (sortDirection == SortDirection.ASC? 1: -1);
 		String languageCode			= sortType == SortType.L1? o1.getLanguageCodeL1(): o1.getLanguageCodeL2();
-		CollatorData collatorData	= collatorHelper.getCollatorData().get( languageCode );
+		CollatorData collatorData	= collatorHelper.getCollatorData( languageCode );
 
 		if( collatorData == null ) {
 			throw new RuntimeException( "No collator data found for language: "+languageCode );
@@ -84,22 +99,51 @@ public class GlossaryComparator implements Comparator<SortObject>
 		List<String> sortFieldsForObj2 = sortType == SortType.L1? o2.getSortFieldsL1(): o2.getSortFieldsL2();
 
 		// TODO: research if this is acceptable, compares only common (index-wise) fields
-		int size			= Math.min( sortFieldsForObj1.size(), sortFieldsForObj2.size() );
+		int res = compareFields( collatorData, sortFieldsForObj1, sortFieldsForObj2 );
+		if( res == 0 && tieSortType != null )
+		{
+			String tieLanguageCode		= tieSortType == SortType.L1? o1.getLanguageCodeL1(): o1.getLanguageCodeL2();
+			CollatorData tieCollatorData	= collatorHelper.getCollatorData( tieLanguageCode );
+			if( tieCollatorData == null ) {
+				throw new RuntimeException( "No collator data found for language: "+tieLanguageCode );
+			}
+
+			// the ties are in ascending order whatever the sort direction
+			return compareFields( tieCollatorData,
+								  tieSortType == SortType.L1? o1.getSortFieldsL1(): o1.getSortFieldsL2(),
+								  tieSortType == SortType.L1? o2.getSortFieldsL1(): o2.getSortFieldsL2() );
+		}
+
+		return sortDir * res;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Compares the common number of sort fields, 1 if there are none.
+	 */
+	private static int compareFields( final CollatorData collatorData, final List<String> sortFields1, final List<String> sortFields2 )
+	{
+		int res				= 1;
+		int size			= Math.min( sortFields1.size(), sortFields2.size() );
 		Collator collator	= collatorData.getCollator( false );
 		for( int i = 0; i < size; i++ )
 		{
-			if( (res = collator.compare( sortFieldsForObj1.get(i), sortFieldsForObj2.get(i) )) != 0 ) {
+			if( (res = collator.compare( sortFields1.get(i), sortFields2.get(i) )) != 0 ) {
 				break;
 			}
 		}
 
-		return sortDir * res;
+		return res;
 	}
 
 	//------------------------------------------------------------------------------------------------------------------
 	private CollatorDataHelper collatorHelper	= null;
 	private SortDirection sortDirection			= SortDirection.ASC;
 	private SortType sortType					= SortType.L1;
+	private SortType tieSortType				= null;
 
 	final private Logger logger = Logger.getLogger( this.getClass() );
 	//------------------------------------------------------------------------------------------------------------------
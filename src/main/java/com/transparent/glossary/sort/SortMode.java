@@ -0,0 +1,15 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary.sort;
+
+/**
+ * Enum that defines how the sort objects are sorted.
+ * COMPARATOR compares the sort fields with the language collator on every comparison, see GlossaryComparator.
+ * COLLATION_KEY builds the collation keys of the sort fields once per sort object and compares the keys, see
+ * CollationKeySorter. Both modes produce the same order.
+ */
+public enum SortMode
+{
+	COMPARATOR, COLLATION_KEY
+}
@@ -1,6 +1,6 @@
 package com.transparent.glossary;
 
-import com.transparent.glossary.io.GlossaryInputDataReader;
+import com.transparent.glossary.io.ISortObjectsReader;
 import com.transparent.glossary.model.SortObject;
 import java.io.File;
 import java.net.URL;
@@ -21,14 +21,13 @@ import static org.hamcrest.Matchers.*;
 public class GlossaryInputDataReaderIntegrationTest extends AbstractJUnit4SpringContextTests
 {
     @Resource( name = "b4xReader" )
-    private GlossaryInputDataReader sut;
+    private ISortObjectsReader sut;
 
     @Test
     public void givenValidData_readSortObjects_returns_populated_collection() throws Exception
     {
         final File file = new File( "./testdata/sample.xml" );
-        sut.setInputFile( file );
-        final Collection<SortObject> sortObjects = sut.readSortObjects();
+        final Collection<SortObject> sortObjects = sut.readSortObjects( file );
         assertThat( sortObjects, notNullValue()  );
         assertThat( sortObjects.size(), is( equalTo( 2 ) )  );
         final SortObject[] data = sortObjects.toArray( new SortObject[sortObjects.size()] );
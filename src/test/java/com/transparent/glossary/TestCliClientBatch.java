@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary;
+
+import com.transparent.glossary.io.ReadOptions;
+import junit.framework.Assert;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class TestCliClientBatch
+{
+	@BeforeClass
+	static public void startUp()
+	{
+		context = new ClassPathXmlApplicationContext( "glottal-config.xml" );
+		context.refresh();
+	}
+
+	@AfterClass
+	static public void shutDown() {
+		context.destroy();
+	}
+
+	/**
+	 * The glossaries built by a batch are the same as the ones built one at a time, the MARSOC job run at the same time
+	 * as the standard jobs does not change the way they read the content.
+	 */
+	@Test
+	public void testBatch() throws Exception
+	{
+		File outputFolder = Files.createTempDirectory( "glossary" ).toFile();
+		try
+		{
+			CliClientShell standard = createShell( outputFolder, "standard", false );
+			standard.buildGlossary();
+			CliClientShell marsoc = createShell( outputFolder, "marsoc", true );
+			marsoc.buildGlossary();
+
+			CliClientShell batchStandard1	= createShell( outputFolder, "batchStandard1", false );
+			CliClientShell batchMarsoc		= createShell( outputFolder, "batchMarsoc", true );
+			CliClientShell batchStandard2	= createShell( outputFolder, "batchStandard2", false );
+			Assert.assertEquals( ReadOptions.STANDARD, batchStandard1.getReadOptions() );
+			Assert.assertEquals( ReadOptions.MARSOC, batchMarsoc.getReadOptions() );
+
+			CliClientBatch batch = new CliClientBatch();
+			batch.setContext( context );
+			batch.setJobs( Arrays.asList( batchStandard1, batchMarsoc, batchStandard2 ) );
+			batch.setBatchThreads( 3 );
+			batch.buildGlossaries();
+
+			for( CliClientShell job : Arrays.asList( batchStandard1, batchStandard2 ) )
+			{
+				assertSameContent( new File( standard.getL1File() ), new File( job.getL1File() ) );
+				assertSameContent( new File( standard.getL2File() ), new File( job.getL2File() ) );
+			}
+			assertSameContent( new File( marsoc.getL1File() ), new File( batchMarsoc.getL1File() ) );
+			assertSameContent( new File( marsoc.getL2File() ), new File( batchMarsoc.getL2File() ) );
+		}
+		finally
+		{
+			for( File file : outputFolder.listFiles() ) {
+				file.delete();
+			}
+			outputFolder.delete();
+		}
+	}
+
+	@Test
+	public void testFailedJob() throws Exception
+	{
+		File outputFolder = Files.createTempDirectory( "glossary" ).toFile();
+		try
+		{
+			CliClientShell missing	= createShell( outputFolder, "missing", false );
+			missing.setInputDataRootFolder( new File( outputFolder, "missing" ) );
+			CliClientShell standard	= createShell( outputFolder, "standard", false );
+
+			CliClientBatch batch = new CliClientBatch();
+			batch.setContext( context );
+			batch.setJobs( Arrays.asList( missing, standard ) );
+			try
+			{
+				batch.buildGlossaries();
+				Assert.fail( "The batch with a failed job should fail" );
+			}
+			catch( RuntimeException e ) {
+				Assert.assertTrue( e.getMessage(), e.getMessage().startsWith( "1 of 2" ) );
+			}
+
+			// the other job is built anyway
+			Assert.assertTrue( new File( standard.getL2File() ).exists() );
+		}
+		finally
+		{
+			for( File file : outputFolder.listFiles() ) {
+				file.delete();
+			}
+			outputFolder.delete();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private CliClientShell createShell( final File outputFolder, final String prefix, final boolean inMarsocMode )
+	{
+		CliClientShell shell = new CliClientShell();
+		shell.setContext( context );
+		shell.setInputDataRootFolder( new File( "testdata/Essentials/Swedish" ) );
+		shell.setOutputDataFolder( outputFolder );
+		shell.setGlossaryFilePrefix( prefix );
+		shell.setInMarsocMode( inMarsocMode );
+		return shell;
+	}
+
+	private void assertSameContent( final File expected, final File actual ) throws Exception
+	{
+		Assert.assertTrue( expected.exists() );
+		Assert.assertTrue( actual.getPath(), Arrays.equals( Files.readAllBytes( expected.toPath() ), Files.readAllBytes( actual.toPath() ) ) );
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static ClassPathXmlApplicationContext context = null;
+	//------------------------------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary;
+
+import com.transparent.glossary.metrics.GlossaryMetrics;
+import junit.framework.Assert;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class TestCliClientShell
+{
+	@BeforeClass
+	static public void startUp()
+	{
+		context = new ClassPathXmlApplicationContext( "glottal-config.xml" );
+		context.refresh();
+	}
+
+	@AfterClass
+	static public void shutDown() {
+		context.destroy();
+	}
+
+	@Test
+	public void testConcurrentGlossaries() throws Exception
+	{
+		File outputFolder = Files.createTempDirectory( "glossary" ).toFile();
+		try
+		{
+			CliClientShell serial = createShell( outputFolder, "serial" );
+			serial.setConcurrentGlossaries( false );
+			serial.buildGlossary();
+
+			CliClientShell concurrent = createShell( outputFolder, "concurrent" );
+			concurrent.buildGlossary();
+
+			assertSameContent( new File( serial.getL1File() ), new File( concurrent.getL1File() ) );
+			assertSameContent( new File( serial.getL2File() ), new File( concurrent.getL2File() ) );
+		}
+		finally
+		{
+			for( File file : outputFolder.listFiles() ) {
+				file.delete();
+			}
+			outputFolder.delete();
+		}
+	}
+
+	/**
+	 * A glossary that can't be written fails the build only once the other glossary is written.
+	 */
+	@Test
+	public void testFailedConcurrentGlossary() throws Exception
+	{
+		File outputFolder = Files.createTempDirectory( "glossary" ).toFile();
+		try
+		{
+			CliClientShell serial = createShell( outputFolder, "serial" );
+			serial.setConcurrentGlossaries( false );
+			serial.buildGlossary();
+
+			// a folder in place of the L1 glossary can't be written
+			String l1FileName = new File( serial.getL1File() ).getName().replaceFirst( "^serial", "failed" );
+			Assert.assertTrue( new File( outputFolder, l1FileName ).mkdir() );
+
+			CliClientShell concurrent = createShell( outputFolder, "failed" );
+			try
+			{
+				concurrent.buildGlossary();
+				Assert.fail( "The L1 glossary can't be written" );
+			}
+			catch( RuntimeException e ) {
+				// expected
+			}
+
+			assertSameContent( new File( serial.getL2File() ), new File( concurrent.getL2File() ) );
+		}
+		finally
+		{
+			for( File file : outputFolder.listFiles() ) {
+				file.delete();
+			}
+			outputFolder.delete();
+		}
+	}
+
+	@Test
+	public void testMetrics() throws Exception
+	{
+		File outputFolder = Files.createTempDirectory( "glossary" ).toFile();
+		try
+		{
+			File metricsFile		= new File( outputFolder, "metrics.json" );
+			CliClientShell shell	= createShell( outputFolder, "metrics" );
+			shell.setMetricsFile( metricsFile );
+			shell.buildGlossary();
+
+			GlossaryMetrics metrics = context.getBean( "glossaryMetrics", GlossaryMetrics.class );
+			Assert.assertTrue( metrics.getCounter( GlossaryMetrics.FILES_READ ) > 0 );
+			Assert.assertTrue( metrics.getCounter( GlossaryMetrics.BYTES_READ ) > 0 );
+			Assert.assertTrue( metrics.getCounter( GlossaryMetrics.SORT_OBJECTS_READ ) > 0 );
+			Assert.assertTrue( metrics.getCounter( GlossaryMetrics.FILES_WRITTEN ) >= 2 );
+			Assert.assertTrue( metrics.getCounter( GlossaryMetrics.BYTES_WRITTEN ) > 0 );
+			Assert.assertTrue( metrics.getPeak( GlossaryMetrics.COLLECTED_SORT_OBJECTS ) > 0 );
+			Assert.assertEquals( 1, metrics.getTimeCount( GlossaryMetrics.COLLECT ) );
+			Assert.assertEquals( 1, metrics.getTimeCount( GlossaryMetrics.SORT + ".L1" ) );
+			Assert.assertEquals( 1, metrics.getTimeCount( GlossaryMetrics.WRITE + ".L2" ) );
+			Assert.assertTrue( metrics.getTime( GlossaryMetrics.COLLECT ) > 0 );
+
+			String json = new String( Files.readAllBytes( metricsFile.toPath() ), "UTF-8" );
+			Assert.assertTrue( json, json.contains( "\"phases\"" ) );
+			Assert.assertTrue( json, json.contains( "\"collect\"" ) );
+			Assert.assertTrue( json, json.contains( "\"cardsPerSecond\"" ) );
+		}
+		finally
+		{
+			for( File file : outputFolder.listFiles() ) {
+				file.delete();
+			}
+			outputFolder.delete();
+		}
+	}
+
+	/**
+	 * The glossaries sorted on disk are the same as the ones sorted in memory. The budget is small enough for the runs
+	 * to be merged in more than one pass.
+	 */
+	@Test
+	public void testSortOnDisk() throws Exception
+	{
+		File outputFolder = Files.createTempDirectory( "glossary" ).toFile();
+		try
+		{
+			GlossaryMetrics metrics = context.getBean( "glossaryMetrics", GlossaryMetrics.class );
+
+			CliClientShell inMemory = createShell( outputFolder, "inMemory" );
+			inMemory.setMetricsFile( new File( outputFolder, "inMemoryMetrics.json" ) );
+			inMemory.buildGlossary();
+			long inMemoryPeak = metrics.getPeak( GlossaryMetrics.COLLECTED_SORT_OBJECTS );
+
+			CliClientShell onDisk = createShell( outputFolder, "onDisk" );
+			onDisk.setSortMemoryBudget( 8 * 1024 );
+			onDisk.setMetricsFile( new File( outputFolder, "onDiskMetrics.json" ) );
+			onDisk.buildGlossary();
+
+			assertSameContent( new File( inMemory.getL1File() ), new File( onDisk.getL1File() ) );
+			assertSameContent( new File( inMemory.getL2File() ), new File( onDisk.getL2File() ) );
+
+			Assert.assertTrue( metrics.getCounter( GlossaryMetrics.SORT_RUNS ) > 2 * 64 );
+			Assert.assertTrue( metrics.getCounter( GlossaryMetrics.SORT_BYTES_SPILLED ) > 0 );
+
+			// the data is sorted one folder at a time, the whole data is never collected
+			long onDiskPeak = metrics.getPeak( GlossaryMetrics.COLLECTED_SORT_OBJECTS );
+			Assert.assertTrue( onDiskPeak > 0 );
+			Assert.assertTrue( onDiskPeak < inMemoryPeak );
+		}
+		finally
+		{
+			for( File file : outputFolder.listFiles() ) {
+				file.delete();
+			}
+			outputFolder.delete();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private CliClientShell createShell( final File outputFolder, final String prefix )
+	{
+		CliClientShell shell = new CliClientShell();
+		shell.setContext( context );
+		shell.setInputDataRootFolder( new File( "testdata/Essentials/Swedish" ) );
+		shell.setOutputDataFolder( outputFolder );
+		shell.setGlossaryFilePrefix( prefix );
+		return shell;
+	}
+
+	private void assertSameContent( final File expected, final File actual ) throws Exception
+	{
+		Assert.assertTrue( expected.exists() );
+		Assert.assertTrue( actual.getPath(), Arrays.equals( Files.readAllBytes( expected.toPath() ), Files.readAllBytes( actual.toPath() ) ) );
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static ClassPathXmlApplicationContext context = null;
+	//------------------------------------------------------------------------------------------------------------------
+}
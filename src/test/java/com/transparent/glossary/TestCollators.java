@@ -3,6 +3,7 @@
  */
 package com.transparent.glossary;
 
+import com.transparent.glossary.processor.GlossaryProcessor;
 import com.transparent.glossary.sort.CollatorData;
 import com.transparent.glossary.sort.CollatorDataHelper;
 import junit.framework.Assert;
@@ -11,12 +12,22 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * User: plitvak
@@ -84,10 +95,201 @@ public class TestCollators
 		}
 	}
 
+	/**
+	 * Only the collator data of the languages of the content is built by a build.
+	 */
+	@Test
+	public void testLazyCollatorData()
+	{
+		ClassPathXmlApplicationContext buildContext = new ClassPathXmlApplicationContext( "glottal-config.xml" );
+		try
+		{
+			CollatorDataHelper helper = (CollatorDataHelper)buildContext.getBean( "collatorData" );
+			Assert.assertTrue( helper.getCollatorData().size() > 100 );
+			Assert.assertTrue( helper.getMaterializedLanguages().isEmpty() );
+
+			GlossaryProcessor processor = (GlossaryProcessor)buildContext.getBean( "glossaryProcessor" );
+			processor.setInputRootFolder( new File( "testdata/Essentials/Swedish" ) );
+			processor.collectUnsortedGlossaryData();
+			Assert.assertEquals( new TreeSet<String>( Arrays.asList( "ENGLISH", "SWEDISH" ) ), helper.getMaterializedLanguages() );
+
+			// a changed property drops what was built
+			CollatorData swedish = helper.getCollatorData( "SWEDISH" );
+			swedish.setStopWords( swedish.getStopWords() );
+			Assert.assertFalse( swedish.isMaterialized() );
+			Assert.assertNotNull( swedish.getCollator( false ) );
+			Assert.assertTrue( swedish.isMaterialized() );
+		}
+		finally {
+			buildContext.close();
+		}
+	}
+
+	/**
+	 * Every thread gets its own collator of a language, they all compare the same way.
+	 */
+	@Test
+	public void testThreadCollators() throws Exception
+	{
+		final CollatorData collatorData	= ((CollatorDataHelper)context.getBean( "collatorData" )).getCollatorData( "SWEDISH" );
+		final Collator collator			= collatorData.getCollator( false );
+		Assert.assertSame( collator, collatorData.getCollator( false ) );
+
+		final List<String> words = new ArrayList<String>();
+		Random random = new Random( 0 );
+		for( int i = 0; i < 2000; i++ ) {
+			words.add( randomWord( random, collatorData.getAlphabet( false ) ) );
+		}
+		List<String> expected = new ArrayList<String>( words );
+		Collections.sort( expected, collator );
+
+		ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+			for( int i = 0; i < 8; i++ )
+			{
+				results.add( executor.submit( new Callable<List<String>>()
+				{
+					public List<String> call()
+					{
+						Collator threadCollator = collatorData.getCollator( false );
+						Assert.assertNotSame( collator, threadCollator );
+
+						List<String> res = new ArrayList<String>( words );
+						Collections.sort( res, threadCollator );
+						return res;
+					}
+				} ) );
+			}
+
+			for( Future<List<String>> result : results ) {
+				Assert.assertEquals( expected, result.get() );
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLetterBuckets()
+	{
+		CollatorDataHelper helper = (CollatorDataHelper)context.getBean( "collatorData" );
+		for( Map.Entry<String, CollatorData> entry : helper.getCollatorData().entrySet() )
+		{
+			CollatorData collatorData = entry.getValue();
+
+			// every letter of the alphabet and the letter groups, and the code points around them
+			List<Integer> codePoints = new ArrayList<Integer>();
+			for( int codePoint = 0; codePoint < 0x3000; codePoint++ ) {
+				codePoints.add( codePoint );
+			}
+			for( String letter : collatorData.getAlphabet( false ) ) {
+				addCodePoints( codePoints, letter );
+			}
+			for( String letterGroup : collatorData.getLetterGroups( false ) ) {
+				addCodePoints( codePoints, letterGroup );
+			}
+
+			for( int codePoint : codePoints )
+			{
+				String[] expected				= scanLetterBucket( codePoint, collatorData );
+				CollatorData.LetterBucket bucket	= collatorData.getLetterBucket( codePoint );
+				String msg						= entry.getKey() + " " + Integer.toHexString( codePoint );
+				Assert.assertEquals( msg, expected[0], bucket.getLetter() );
+				Assert.assertEquals( msg, Boolean.parseBoolean( expected[1] ), bucket.isMiscBucket() );
+				Assert.assertSame( msg, bucket, collatorData.getLetterBucket( codePoint ) );
+			}
+		}
+	}
+
+	@Test
+	public void testStopWords()
+	{
+		String[] pieces = {
+			" ", "  ", "\t", "a", "an", "the", "to", "then", "x", "A", "1", "42", "_", "-", "--", "(", ")", "[", "]", ".", ",",
+			"!", "?", ";", ":", "\"", "'", "\\", "/", "=", "\u2026", "\u2014", "\u00ab", "\u00bb", "\u0627\u0644\u0640",
+			"\u0640", "\u0627\u0644", "\u0628", "\u060c", "\u061f", "\u06f1", "\u3001", "\uff01", "\u00e9", "\u0301"
+		};
+
+		Random random				= new Random( 20091006L );
+		CollatorDataHelper helper	= (CollatorDataHelper)context.getBean( "collatorData" );
+		for( Map.Entry<String, CollatorData> entry : helper.getCollatorData().entrySet() )
+		{
+			CollatorData collatorData = entry.getValue();
+			for( int i = 0; i < 2000; i++ )
+			{
+				StringBuilder text = new StringBuilder();
+				for( int j = random.nextInt( 8 ); j >= 0; j-- ) {
+					text.append( pieces[random.nextInt( pieces.length )] );
+				}
+
+				String expected = text.toString();
+				for( String word : collatorData.getStopWords( false ) ) {
+					expected = expected.replaceAll( word, "" );
+				}
+
+				Assert.assertEquals( entry.getKey() + " [" + text + "]", expected, collatorData.removeStopWords( text.toString() ) );
+			}
+		}
+	}
+
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+	private static String randomWord( final Random random, final List<String> letters )
+	{
+		StringBuilder res = new StringBuilder();
+		for( int length = 1 + random.nextInt( 8 ); length > 0; length-- )
+		{
+			String letter = letters.get( random.nextInt( letters.size() ) );
+			res.append( random.nextBoolean()? letter: letter.toLowerCase() );
+		}
+		return res.toString();
+	}
+
+	private static void addCodePoints( final List<Integer> codePoints, final String letters )
+	{
+		for( int i = 0; i < letters.length(); i += Character.charCount( letters.codePointAt( i ) ) ) {
+			codePoints.add( letters.codePointAt( i ) );
+		}
+	}
+
+	/**
+	 * Finds the letter bucket by scanning the letter groups and the alphabet, the way the glossary writer used to do it
+	 * for every entry.
+	 * @return the letter and whether it is the misc bucket
+	 */
+	private static String[] scanLetterBucket( final int codePoint, final CollatorData collatorData )
+	{
+		String tmpKey = new String( new int[]{ codePoint }, 0, 1 );
+		if( !collatorData.getJavaLocaleCode().equals( CollatorData.NO_JAVA_LOCALE ) ) {
+			tmpKey = tmpKey.toUpperCase( new Locale( collatorData.getJavaLocaleCode() ) );
+		}
+		else {
+			tmpKey = tmpKey.toUpperCase();
+		}
+
+		for( String letterGroup : collatorData.getLetterGroups( false ) )
+		{
+			if( letterGroup.contains( tmpKey ) )
+			{
+				tmpKey = letterGroup.substring( 0, 1 );
+				break;
+			}
+		}
+
+		boolean match = collatorData.getAlphabet( false ).isEmpty();
+		for( String letter : collatorData.getAlphabet( false ) ) {
+			match |= letter.contains( tmpKey );
+		}
+
+		return match? new String[]{ tmpKey, "false" }: new String[]{ collatorData.getMiscBucketLabel(), "true" };
+	}
+
+
 	private static boolean assertEquals( final List<String> letters, final List<String> shuffledLetters )
 	{
 		boolean res = true;
@@ -12,6 +12,7 @@ import java.util.Collection;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.TreeMap;
 
 /**
  * User: plitvak
@@ -72,6 +73,36 @@ public class TestDataHelper
 		return res;
 	}
 
+	/**
+	 * Describes the content of a sort object, SortObject.toString() can't be used to compare objects since it includes
+	 * the object identity.
+	 */
+	public static String describe( final SortObject sortObject )
+	{
+		return new StringBuilder().append( sortObject.getLanguageCodeL1() ).append( '|' )
+								  .append( sortObject.getLanguageCodeL2() ).append( '|' )
+								  .append( sortObject.getSortFieldsL1() ).append( '|' )
+								  .append( sortObject.getSortFieldsL2() ).append( '|' )
+								  .append( new TreeMap<String, String>( sortObject.getFieldsToIncludeMap() ) ).append( '|' )
+								  .append( sortObject.getSideOneSoundFile() ).append( '|' )
+								  .append( sortObject.getSideTwoSoundFile() ).append( '|' )
+								  .append( sortObject.getReferencedBy() ).append( '|' )
+								  .append( sortObject.getPartOfSpeech() ).append( '|' )
+								  .append( sortObject.isPhrase() ).toString();
+	}
+
+	/**
+	 * Describes every sort object of the collection in the collection's order.
+	 */
+	public static List<String> describe( final Collection<SortObject> sortObjects )
+	{
+		List<String> res = new ArrayList<String>( sortObjects.size() );
+		for( SortObject sortObject : sortObjects ) {
+			res.add( describe( sortObject ) );
+		}
+		return res;
+	}
+
 	//------------------------------------------------------------------------------------------------------------------
 	private ApplicationContext context = null;
 	//------------------------------------------------------------------------------------------------------------------
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary;
+
+import com.transparent.glossary.io.ExternalGlossarySorter;
+import com.transparent.glossary.model.SortObject;
+import com.transparent.glossary.processor.GlossaryProcessor;
+import com.transparent.glossary.sort.CollatorDataHelper;
+import com.transparent.glossary.sort.GlossaryComparator;
+import com.transparent.glossary.sort.SortDirection;
+import com.transparent.glossary.sort.SortType;
+import junit.framework.Assert;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+public class TestExternalGlossarySorter
+{
+	@BeforeClass
+	static public void startUp()
+	{
+		context = new ClassPathXmlApplicationContext( "glottal-config.xml" );
+		context.refresh();
+	}
+
+	@AfterClass
+	static public void shutDown() {
+		context.destroy();
+	}
+
+	/**
+	 * The sort objects sorted on disk are in the same order as the ones sorted by the comparator in both directions,
+	 * the ties are in ascending order either way.
+	 */
+	@Test
+	public void testTieSort()
+	{
+		GlossaryProcessor processor = (GlossaryProcessor)context.getBean( "glossaryProcessor" );
+		processor.setInputRootFolder( new File( "testdata/Essentials/Swedish" ) );
+
+		List<SortObject> collectedData	= processor.collectUnsortedGlossaryData();
+		List<SortObject> unsortedData	= new ArrayList<SortObject>();
+		while( unsortedData.size() < 5000 ) {
+			unsortedData.addAll( collectedData );
+		}
+		Collections.shuffle( unsortedData, new Random( 20091020L ) );
+
+		CollatorDataHelper collatorHelper = context.getBean( "collatorData", CollatorDataHelper.class );
+		for( SortDirection sortDirection : SortDirection.values() )
+		{
+			GlossaryComparator comparator = new GlossaryComparator();
+			comparator.setCollatorHelper( collatorHelper );
+			comparator.setSortType( SortType.L2 );
+			comparator.setSortDirection( sortDirection );
+			comparator.setTieSortType( SortType.L1 );
+
+			List<SortObject> expected = new ArrayList<SortObject>( unsortedData );
+			Collections.sort( expected, comparator );
+
+			ExternalGlossarySorter sorter = new ExternalGlossarySorter();
+			sorter.setCollatorHelper( collatorHelper );
+			sorter.setSortType( SortType.L2 );
+			sorter.setSortDirection( sortDirection );
+			sorter.setTieSortType( SortType.L1 );
+			sorter.setMemoryBudget( 64 * 1024 );
+			try
+			{
+				for( SortObject sortObject : unsortedData ) {
+					sorter.add( sortObject );
+				}
+
+				List<SortObject> sorted = new ArrayList<SortObject>();
+				for( Iterator<SortObject> it = sorter.iterator(); it.hasNext(); ) {
+					sorted.add( it.next() );
+				}
+
+				Assert.assertTrue( sorter.getRunCount() > 1 );
+				Assert.assertEquals( sortDirection.toString(), TestDataHelper.describe( expected ), TestDataHelper.describe( sorted ) );
+			}
+			finally {
+				sorter.close();
+			}
+		}
+	}
+
+	//------------------------------------------------------------------------------------------------------------------
+	private static ClassPathXmlApplicationContext context = null;
+	//------------------------------------------------------------------------------------------------------------------
+}
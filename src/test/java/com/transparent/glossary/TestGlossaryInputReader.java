@@ -3,16 +3,37 @@
  */
 package com.transparent.glossary;
 
-import com.transparent.glossary.io.GlossaryInputDataReader;
+import com.transparent.glossary.io.ISortObjectsReader;
+import com.transparent.glossary.io.ReadOptions;
+import com.transparent.glossary.io.util.CleanXmlInputStream;
+import com.transparent.glossary.io.util.CleanXmlReader;
 import com.transparent.glossary.model.SortObject;
+import com.transparent.glossary.processor.GlossaryProcessorEntry;
 import junit.framework.Assert;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.xml.sax.InputSource;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * User: plitvak
@@ -36,10 +57,8 @@ public class TestGlossaryInputReader
 	@Test
 	public void testB4XReader()
 	{
-		GlossaryInputDataReader reader = (GlossaryInputDataReader)context.getBean( "b4xReader" );
-		reader.setInputFile( new File( "testdata/root/unit/1/italian_english_15_52_useful_words_and_phrases.xml" ) );
-
-		Collection<SortObject> sortObjects = reader.readSortObjects();
+		ISortObjectsReader reader = (ISortObjectsReader)context.getBean( "b4xReader" );
+		Collection<SortObject> sortObjects = reader.readSortObjects( new File( "testdata/root/unit/1/italian_english_15_52_useful_words_and_phrases.xml" ) );
 
 		Assert.assertTrue( sortObjects.size() == 17 );
 	}
@@ -47,10 +66,8 @@ public class TestGlossaryInputReader
 	@Test
 	public void testTTKnownReader()
 	{
-		GlossaryInputDataReader reader = (GlossaryInputDataReader)context.getBean( "ttKnownReader" );
-		reader.setInputFile( new File( "testdata/root/unit/IEU10_known_tt.xml" ) );
-
-		Collection<SortObject> sortObjects = reader.readSortObjects();
+		ISortObjectsReader reader = (ISortObjectsReader)context.getBean( "ttKnownReader" );
+		Collection<SortObject> sortObjects = reader.readSortObjects( new File( "testdata/root/unit/IEU10_known_tt.xml" ) );
 
 		Assert.assertTrue( sortObjects.size() == 17 );
 	}
@@ -58,15 +75,242 @@ public class TestGlossaryInputReader
 	@Test
 	public void testTTLearningReader()
 	{
-		GlossaryInputDataReader reader = (GlossaryInputDataReader)context.getBean( "ttLearningReader" );
-		reader.setInputFile( new File( "testdata/root/unit/IEU10_learning_tt.xml" ) );
-
-		Collection<SortObject> sortObjects = reader.readSortObjects();
+		ISortObjectsReader reader = (ISortObjectsReader)context.getBean( "ttLearningReader" );
+		Collection<SortObject> sortObjects = reader.readSortObjects( new File( "testdata/root/unit/IEU10_learning_tt.xml" ) );
 
 		Assert.assertTrue( sortObjects.size() == 17 );
 	}
 
+	@Test
+	public void testStreamingReaderMatchesDOMReader()
+	{
+		GlossaryProcessorEntry b4xProcessorEntry	= (GlossaryProcessorEntry)context.getBean( "b4xGlossaryProcessorEntry" );
+		FileFilter b4xFilter						= b4xProcessorEntry.getInputReadersMap().keySet().iterator().next();
+		ISortObjectsReader b4xDom					= (ISortObjectsReader)context.getBean( "b4xDomReader" );
+		ISortObjectsReader b4xStream				= (ISortObjectsReader)context.getBean( "b4xStreamingReader" );
+
+		List<File> files = new ArrayList<File>();
+		collectXmlFiles( new File( "testdata" ), files );
+
+		int b4xFiles = 0;
+		int ttFiles = 0;
+		for( File file : files )
+		{
+			if( b4xFilter.accept( file ) )
+			{
+				b4xFiles++;
+				for( ReadOptions options : READ_OPTIONS ) {
+					assertSameSortObjects( b4xDom, b4xStream, file, options );
+				}
+			}
+			else if( file.getName().endsWith( "_known_tt.xml" ) )
+			{
+				ttFiles++;
+				assertSameSortObjects( (ISortObjectsReader)context.getBean( "ttKnownDomReader" ),
+									   (ISortObjectsReader)context.getBean( "ttKnownStreamingReader" ), file, ReadOptions.STANDARD );
+			}
+			else if( file.getName().endsWith( "_learning_tt.xml" ) )
+			{
+				ttFiles++;
+				assertSameSortObjects( (ISortObjectsReader)context.getBean( "ttLearningDomReader" ),
+									   (ISortObjectsReader)context.getBean( "ttLearningStreamingReader" ), file, ReadOptions.STANDARD );
+			}
+		}
+
+		Assert.assertTrue( b4xFiles > 0 );
+		Assert.assertTrue( ttFiles > 0 );
+	}
+
+	@Test
+	public void testStreamingReaderMatchesDOMReaderOnMarkup() throws IOException
+	{
+		File file = File.createTempFile( "glossary_markup", ".xml" );
+		try
+		{
+			Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+			writer.write( "\uFEFF<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n<list formatVersion=\"2\">\r\n<head>\n" +
+						  "<name>Unit &amp; list</name><side1_language_key>ENGLISH</side1_language_key>\n" +
+						  "<side2_language_key>ITALIAN</side2_language_key>\n" +
+						  "<creator_application>Illegal \u0001 <characters></creator_application></head>\n" +
+						  "<cards>\n" +
+						  "<card><side1_phrase><![CDATA[<b>bold</b> &nbsp;word]]></side1_phrase><side2_phrase>multi\nline</side2_phrase>" +
+						  "<side1_sound url=\"s1.mp3\"/><side1_sound url=\"s2.mp3\"/><comment>before<!-- note -->after</comment></card>\n" +
+						  "<card><side1_phrase>that&apos;s <i>it</i> &#233;</side1_phrase><side2_phrase/>" +
+						  "<side2_part_of_speech> noun </side2_part_of_speech><side1_hint><![CDATA[first]]><![CDATA[second]]></side1_hint></card>\n" +
+						  "</cards></list>\n" );
+			writer.close();
+
+			assertSameSortObjects( (ISortObjectsReader)context.getBean( "b4xDomReader" ),
+								   (ISortObjectsReader)context.getBean( "b4xStreamingReader" ), file, ReadOptions.STANDARD );
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * The byte clean up gives the same content as the character one, for small and memory mapped files. The content
+	 * with malformed UTF-8 is decoded and cleaned up as characters.
+	 */
+	@Test
+	public void testCleanXmlInputStream() throws Exception
+	{
+		StringBuilder large = new StringBuilder( "<list>" );
+		while( large.length() < CleanXmlInputStream.MAP_THRESHOLD ) {
+			large.append( "<card>\u00e9t\u00e9 \u4e2d\u6587 \ud83d\ude00\r\n</card>" );
+		}
+		large.append( "</list>" );
+
+		String[] contents = {
+			"\uFEFF<?xml version=\"1.0\"?>\r\n<a>b</a>",
+			"junk \u00e9<a>\n<creator_application>x \u0001 <y></creator_application>c</a>",
+			"<a><creator_\r\napplication>x</creator_app\nlication><<creator_application>y</creator_application>\n</a>",
+			"<a><creator_application>not closed</a>",
+			"<a><creator_application>1</creator_application>-<creator_application>2</creator_application></a>",
+			"no markup at all",
+			large.toString()
+		};
+
+		for( String content : contents )
+		{
+			File file = File.createTempFile( "glossary_clean", ".xml" );
+			try
+			{
+				Files.write( file.toPath(), content.getBytes( "UTF-8" ) );
+				Assert.assertEquals( content.length() >= CleanXmlInputStream.MAP_THRESHOLD, CleanXmlInputStream.readContent( file ).isDirect() );
+
+				InputSource source = CleanXmlInputStream.open( file );
+				Assert.assertNotNull( source.getByteStream() );
+				Assert.assertEquals( readCleanChars( content ), new String( readBytes( source.getByteStream() ), "UTF-8" ) );
+			}
+			finally {
+				file.delete();
+			}
+		}
+
+		File file = File.createTempFile( "glossary_clean", ".xml" );
+		try
+		{
+			Files.write( file.toPath(), new byte[]{ '<', 'a', '>', (byte)0xC3, '\n', (byte)0xED, (byte)0xA0, (byte)0x80, '<', '/', 'a', '>' } );
+			InputSource source = CleanXmlInputStream.open( file );
+			Assert.assertNull( source.getByteStream() );
+
+			StringBuilder chars = new StringBuilder();
+			for( int c = source.getCharacterStream().read(); c != -1; c = source.getCharacterStream().read() ) {
+				chars.append( (char)c );
+			}
+			Assert.assertEquals( readCleanChars( new String( Files.readAllBytes( file.toPath() ), "UTF-8" ) ), chars.toString() );
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * The same reader reads the files with different options from several threads at once, every file gets the same
+	 * sort objects as when it is read alone.
+	 */
+	@Test
+	public void testConcurrentReadOptions() throws Exception
+	{
+		FileFilter b4xFilter		= ((GlossaryProcessorEntry)context.getBean( "b4xGlossaryProcessorEntry" )).getInputReadersMap().keySet().iterator().next();
+		final ISortObjectsReader reader	= (ISortObjectsReader)context.getBean( "b4xReader" );
+
+		List<File> files = new ArrayList<File>();
+		collectXmlFiles( new File( "testdata/Essentials/Swedish" ), files );
+
+		List<File> readFiles				= new ArrayList<File>();
+		List<ReadOptions> readOptions		= new ArrayList<ReadOptions>();
+		List<List<String>> expected			= new ArrayList<List<String>>();
+		for( File file : files )
+		{
+			if( b4xFilter.accept( file ) )
+			{
+				for( ReadOptions options : READ_OPTIONS )
+				{
+					readFiles.add( file );
+					readOptions.add( options );
+					expected.add( TestDataHelper.describe( reader.readSortObjects( file, options ) ) );
+				}
+			}
+		}
+		Assert.assertTrue( readFiles.size() > 0 );
+
+		ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			List<Future<List<String>>> actual = new ArrayList<Future<List<String>>>();
+			for( int i = 0; i < readFiles.size(); i++ )
+			{
+				final File file				= readFiles.get( i );
+				final ReadOptions options	= readOptions.get( i );
+				actual.add( executor.submit( new Callable<List<String>>()
+				{
+					public List<String> call() {
+						return TestDataHelper.describe( reader.readSortObjects( file, options ) );
+					}
+				} ) );
+			}
+
+			for( int i = 0; i < readFiles.size(); i++ ) {
+				Assert.assertEquals( readFiles.get( i ).getPath() + " " + readOptions.get( i ), expected.get( i ), actual.get( i ).get() );
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static String readCleanChars( final String content ) throws IOException
+	{
+		Reader in			= new CleanXmlReader( new StringReader( content ) );
+		StringBuilder res	= new StringBuilder();
+		char[] buffer		= new char[100];
+		for( int n = in.read( buffer ); n != -1; n = in.read( buffer ) ) {
+			res.append( buffer, 0, n );
+		}
+		return res.toString();
+	}
+
+	private static byte[] readBytes( final InputStream in ) throws IOException
+	{
+		ByteArrayOutputStream res	= new ByteArrayOutputStream();
+		byte[] buffer				= new byte[100];
+		for( int n = in.read( buffer ); n != -1; n = in.read( buffer ) ) {
+			res.write( buffer, 0, n );
+		}
+		return res.toByteArray();
+	}
+
+	private void assertSameSortObjects( final ISortObjectsReader expectedReader, final ISortObjectsReader actualReader,
+										final File file, final ReadOptions options )
+	{
+		List<String> expected	= TestDataHelper.describe( expectedReader.readSortObjects( file, options ) );
+		List<String> actual		= TestDataHelper.describe( actualReader.readSortObjects( file, options ) );
+
+		Assert.assertEquals( file.getPath(), expected, actual );
+	}
+
+	private void collectXmlFiles( final File folder, final List<File> files )
+	{
+		for( File file : folder.listFiles() )
+		{
+			if( file.isDirectory() ) {
+				collectXmlFiles( file, files );
+			}
+			else if( file.getName().endsWith( ".xml" ) ) {
+				files.add( file );
+			}
+		}
+	}
+
 	//------------------------------------------------------------------------------------------------------------------
+	private static final ReadOptions[] READ_OPTIONS = { ReadOptions.STANDARD, ReadOptions.MARSOC, ReadOptions.INTERNAL };
+
 	private static ClassPathXmlApplicationContext context = null;
 	//------------------------------------------------------------------------------------------------------------------
 }
\ No newline at end of file
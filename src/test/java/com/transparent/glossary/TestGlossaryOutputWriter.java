@@ -4,6 +4,8 @@
 package com.transparent.glossary;
 
 import com.transparent.glossary.io.GlossaryOutputWriter;
+import com.transparent.glossary.model.SortObject;
+import com.transparent.glossary.processor.GlossaryProcessor;
 import junit.framework.Assert;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -16,6 +18,11 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathFactory;
 import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * User: plitvak
@@ -84,10 +91,102 @@ public class TestGlossaryOutputWriter
 		Assert.assertTrue( testKey.equals( "A_italian_word_0" ) && testTranslation.equals( "A_english_word_0" ) );
 	}
 
+	@Test
+	public void testStreamingOutputMatchesJAXB() throws Exception
+	{
+		TestDataHelper dataHelper		= new TestDataHelper( context );
+		Collection<SortObject> testData	= dataHelper.createSortedTestData();
+
+		GlossaryProcessor processor = (GlossaryProcessor)context.getBean( "glossaryProcessor" );
+		processor.setInputRootFolder( new File( "testdata/Essentials/Swedish" ) );
+		List<SortObject> swedishData = processor.collectUnsortedGlossaryData();
+
+		List<SortObject> markupData = new ArrayList<SortObject>( testData );
+		markupData.add( createSortObject( "A & <b>\"bold\"</b> 'quoted' >", "A_translation & more", "hint & <hint>", false ) );
+		markupData.add( createSortObject( "B_phrase only", "B_translation", "   ", true ) );
+		markupData.add( createSortObject( "A_\u00e5\u00e4\u00f6 \ud834\udd1e", "A_\u00e9", null, false ) );
+		markupData.get( markupData.size() - 1 ).setSideOneSoundFile( "sound & 1.mp3" );
+		markupData.get( markupData.size() - 1 ).setReferencedBy( "" );
+		markupData.get( markupData.size() - 1 ).setPartOfSpeech( "noun" );
+
+		// the key language of the L2 writer is not English, no CSV is written so the translation can be missing
+		List<SortObject> missingData = new ArrayList<SortObject>( markupData );
+		missingData.add( createSortObject( null, "C_translation", null, false ) );
+
+		File outputFolder = Files.createTempDirectory( "glossary" ).toFile();
+		try
+		{
+			assertSameOutput( "glossaryL1Writer", testData, outputFolder );
+			assertSameOutput( "glossaryL2Writer", testData, outputFolder );
+			assertSameOutput( "glossaryL1Writer", swedishData, outputFolder );
+			assertSameOutput( "glossaryL2Writer", swedishData, outputFolder );
+			assertSameOutput( "glossaryL1Writer", markupData, outputFolder );
+			assertSameOutput( "glossaryL2Writer", missingData, outputFolder );
+		}
+		finally
+		{
+			for( File file : outputFolder.listFiles() ) {
+				file.delete();
+			}
+			outputFolder.delete();
+		}
+	}
+
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * Writes the same data with the JAXB and the streaming output and checks that the XML and CSV files are the same.
+	 */
+	private void assertSameOutput( final String writerName, final Collection<SortObject> data, final File outputFolder ) throws Exception
+	{
+		GlossaryOutputWriter writer	= (GlossaryOutputWriter)context.getBean( writerName );
+		boolean streamingOutput		= writer.isStreamingOutput();
+		File jaxbFile				= new File( outputFolder, "jaxb.xml" );
+		File streamingFile			= new File( outputFolder, "streaming.xml" );
+		try
+		{
+			writer.setStreamingOutput( false );
+			writer.setGlossaryFile( jaxbFile );
+			writer.writeGlossaryToFile( data );
+
+			writer.setStreamingOutput( true );
+			writer.setGlossaryFile( streamingFile );
+			writer.writeGlossaryToFile( data );
+		}
+		finally {
+			writer.setStreamingOutput( streamingOutput );
+		}
+
+		Assert.assertTrue( writerName, Arrays.equals( Files.readAllBytes( jaxbFile.toPath() ), Files.readAllBytes( streamingFile.toPath() ) ) );
+
+		File jaxbCsv		= new File( outputFolder, "jaxb.csv" );
+		File streamingCsv	= new File( outputFolder, "streaming.csv" );
+		Assert.assertEquals( writerName, jaxbCsv.exists(), streamingCsv.exists() );
+		if( jaxbCsv.exists() )
+		{
+			Assert.assertTrue( writerName, Arrays.equals( Files.readAllBytes( jaxbCsv.toPath() ), Files.readAllBytes( streamingCsv.toPath() ) ) );
+			jaxbCsv.delete();
+			streamingCsv.delete();
+		}
+	}
+
+	private SortObject createSortObject( final String l1, final String l2, final String comment, final boolean phrase )
+	{
+		SortObject res = new SortObject();
+		res.setLanguageCodeL1( "ENGLISH" );
+		res.setLanguageCodeL2( "ITALIAN" );
+		res.getSortFieldsL1().add( l1 == null? "C": l1 );
+		res.getSortFieldsL2().add( l2 );
+		res.getFieldsToIncludeMap().put( "L1", l1 );
+		res.getFieldsToIncludeMap().put( "L2", l2 );
+		res.getFieldsToIncludeMap().put( "comment", comment );
+		res.setIsPhrase( phrase );
+		return res;
+	}
+
+
 	//------------------------------------------------------------------------------------------------------------------
 	private static ClassPathXmlApplicationContext context = null;
 	//------------------------------------------------------------------------------------------------------------------
@@ -3,10 +3,13 @@
  */
 package com.transparent.glossary;
 
+import com.transparent.glossary.io.SortObjectsCache;
 import com.transparent.glossary.model.SortObject;
 import com.transparent.glossary.processor.GlossaryProcessor;
+import com.transparent.glossary.processor.SortObjectsL1L2DuplicateFilter;
 import com.transparent.glossary.processor.StopWordProcessingType;
 import com.transparent.glossary.sort.SortDirection;
+import com.transparent.glossary.sort.SortMode;
 import com.transparent.glossary.sort.SortType;
 import junit.framework.Assert;
 import org.junit.AfterClass;
@@ -21,9 +24,17 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathFactory;
 import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * User: plitvak
@@ -56,6 +67,161 @@ public class TestGlossaryProcessor
 	}
 
 
+	@Test
+	public void testParallelDataCollection()
+	{
+		GlossaryProcessor processor = (GlossaryProcessor)context.getBean( "glossaryProcessor" );
+		for( String root : new String[]{ "testdata/root", "testdata/Essentials/Swedish" } )
+		{
+			processor.setInputRootFolder( new File( root ) );
+			processor.setParallelism( 1 );
+			List<String> serial = TestDataHelper.describe( processor.collectUnsortedGlossaryData() );
+
+			processor.setParallelism( 4 );
+			try
+			{
+				List<String> parallel = TestDataHelper.describe( processor.collectUnsortedGlossaryData() );
+				Assert.assertTrue( serial.size() > 0 );
+				Assert.assertEquals( serial, parallel );
+			}
+			finally {
+				processor.setParallelism( 1 );
+			}
+		}
+	}
+
+	@Test
+	public void testCollationKeySort()
+	{
+		GlossaryProcessor processor = (GlossaryProcessor)context.getBean( "glossaryProcessor" );
+		processor.setInputRootFolder( new File( "testdata/Essentials/Swedish" ) );
+
+		List<SortObject> unsortedData = processor.collectUnsortedGlossaryData();
+		Assert.assertTrue( unsortedData.size() > 0 );
+
+		SortMode sortMode = processor.getSortMode();
+		try
+		{
+			for( SortType sortType : SortType.values() )
+			{
+				for( SortDirection sortDirection : SortDirection.values() )
+				{
+					List<SortObject> comparatorSorted = new ArrayList<SortObject>( unsortedData );
+					processor.setSortMode( SortMode.COMPARATOR );
+					processor.sort( comparatorSorted, sortType, sortDirection );
+
+					List<SortObject> keySorted = new ArrayList<SortObject>( unsortedData );
+					processor.setSortMode( SortMode.COLLATION_KEY );
+					processor.sort( keySorted, sortType, sortDirection );
+
+					// the sort objects themselves are compared, equal descriptions could hide a different order
+					Assert.assertEquals( sortType + " " + sortDirection, comparatorSorted, keySorted );
+				}
+			}
+		}
+		finally {
+			processor.setSortMode( sortMode );
+		}
+	}
+
+	/**
+	 * Sorting the unsorted data for L2 with the L1 ties gives the same order as sorting it for L1 and then for L2.
+	 */
+	@Test
+	public void testTieSort()
+	{
+		GlossaryProcessor processor = (GlossaryProcessor)context.getBean( "glossaryProcessor" );
+		processor.setInputRootFolder( new File( "testdata/Essentials/Swedish" ) );
+
+		// repeat the data so there are plenty of ties for both the serial and the parallel sort
+		List<SortObject> collectedData	= processor.collectUnsortedGlossaryData();
+		List<SortObject> unsortedData	= new ArrayList<SortObject>();
+		while( unsortedData.size() < 20000 ) {
+			unsortedData.addAll( collectedData );
+		}
+		Collections.shuffle( unsortedData, new Random( 20091019L ) );
+		Assert.assertTrue( processor.hasUniformSortFields( unsortedData ) );
+
+		SortMode sortMode		= processor.getSortMode();
+		boolean parallelSort	= processor.isParallelSort();
+		int threshold			= processor.getParallelSortThreshold();
+		try
+		{
+			List<SortObject> expected = new ArrayList<SortObject>( unsortedData );
+			processor.setSortMode( SortMode.COMPARATOR );
+			processor.sort( expected, SortType.L1, SortDirection.ASC );
+			processor.sort( expected, SortType.L2, SortDirection.ASC );
+
+			for( SortMode mode : SortMode.values() )
+			{
+				for( boolean parallel : new boolean[]{ false, true } )
+				{
+					List<SortObject> tieSorted = new ArrayList<SortObject>( unsortedData );
+					processor.setSortMode( mode );
+					processor.setParallelSort( parallel );
+					processor.setParallelSortThreshold( 1000 );
+					processor.sort( tieSorted, SortType.L2, SortDirection.ASC, SortType.L1 );
+
+					Assert.assertEquals( mode + " " + parallel, expected, tieSorted );
+				}
+			}
+		}
+		finally
+		{
+			processor.setSortMode( sortMode );
+			processor.setParallelSort( parallelSort );
+			processor.setParallelSortThreshold( threshold );
+		}
+	}
+
+	@Test
+	public void testParallelSort()
+	{
+		GlossaryProcessor processor = (GlossaryProcessor)context.getBean( "glossaryProcessor" );
+		processor.setInputRootFolder( new File( "testdata/Essentials/Swedish" ) );
+
+		// repeat the data so the parallel sort really splits the work
+		List<SortObject> collectedData	= processor.collectUnsortedGlossaryData();
+		List<SortObject> unsortedData	= new ArrayList<SortObject>();
+		while( unsortedData.size() < 50000 ) {
+			unsortedData.addAll( collectedData );
+		}
+
+		SortMode sortMode		= processor.getSortMode();
+		boolean parallelSort	= processor.isParallelSort();
+		int threshold			= processor.getParallelSortThreshold();
+		int parallelism			= processor.getParallelism();
+		try
+		{
+			for( SortType sortType : SortType.values() )
+			{
+				List<SortObject> serialSorted = new ArrayList<SortObject>( unsortedData );
+				processor.setSortMode( SortMode.COMPARATOR );
+				processor.sort( serialSorted, sortType, SortDirection.ASC );
+
+				// the common pool and a pool of its own
+				for( int threads : new int[] { 1, 3 } )
+				{
+					List<SortObject> parallelSorted = new ArrayList<SortObject>( unsortedData );
+					processor.setSortMode( SortMode.COLLATION_KEY );
+					processor.setParallelSort( true );
+					processor.setParallelSortThreshold( 1000 );
+					processor.setParallelism( threads );
+					processor.sort( parallelSorted, sortType, SortDirection.ASC );
+
+					Assert.assertEquals( sortType.toString(), serialSorted, parallelSorted );
+				}
+			}
+		}
+		finally
+		{
+			processor.setSortMode( sortMode );
+			processor.setParallelSort( parallelSort );
+			processor.setParallelSortThreshold( threshold );
+			processor.setParallelism( parallelism );
+		}
+	}
+
 	@Test
 	public void testWordPhraseCollation()
 	{
@@ -186,6 +352,102 @@ public class TestGlossaryProcessor
 		validate_testGlossaryCreation( glossaryL1File, glossaryL2File );
 	}
 
+	@Test
+	public void testSortObjectsCache() throws Exception
+	{
+		File contentFolder	= Files.createTempDirectory( "content" ).toFile();
+		File cacheFolder	= new File( contentFolder, "cache" );
+		File inputFolder	= new File( contentFolder, "root" );
+		copyFolder( new File( "testdata/root" ), inputFolder );
+
+		GlossaryProcessor processor = (GlossaryProcessor)context.getBean( "glossaryProcessor" );
+		processor.setInputRootFolder( inputFolder );
+		List<String> expected = TestDataHelper.describe( processor.collectUnsortedGlossaryData() );
+
+		SortObjectsCache cache = (SortObjectsCache)context.getBean( "sortObjectsCache" );
+		Assert.assertNotNull( cache.getVersion() );
+		cache.setCacheFolder( cacheFolder );
+		processor.setSortObjectsCache( cache );
+		try
+		{
+			// every file is read by the readers the first time
+			Assert.assertEquals( expected, TestDataHelper.describe( processor.collectUnsortedGlossaryData() ) );
+			int misses = cache.getMisses();
+			Assert.assertTrue( misses > 0 );
+			Assert.assertEquals( 0, cache.getHits() );
+
+			// and comes from the cache the next time
+			Assert.assertEquals( expected, TestDataHelper.describe( processor.collectUnsortedGlossaryData() ) );
+			Assert.assertEquals( misses, cache.getMisses() );
+			Assert.assertEquals( misses, cache.getHits() );
+
+			// touched files are hashed, the content is the same
+			List<File> contentFiles = new ArrayList<File>();
+			listFiles( inputFolder, contentFiles );
+			for( File file : contentFiles ) {
+				file.setLastModified( file.lastModified() + 10000 );
+			}
+			Assert.assertEquals( expected, TestDataHelper.describe( processor.collectUnsortedGlossaryData() ) );
+			Assert.assertEquals( misses, cache.getMisses() );
+			Assert.assertEquals( 2 * misses, cache.getHits() );
+
+			// changed files are read again
+			FileWriter writer = new FileWriter( contentFiles.get( 0 ), true );
+			writer.write( "\n" );
+			writer.close();
+			Assert.assertEquals( expected, TestDataHelper.describe( processor.collectUnsortedGlossaryData() ) );
+			Assert.assertTrue( cache.getMisses() > misses );
+			Assert.assertEquals( 4 * misses, cache.getHits() + cache.getMisses() );
+		}
+		finally
+		{
+			processor.setSortObjectsCache( null );
+			deleteFolder( contentFolder );
+		}
+	}
+
+	/**
+	 * The duplicates filtered one part at a time are the ones filtered out of the whole collection, the first of the
+	 * duplicates is kept.
+	 */
+	@Test
+	public void testDuplicateFilterParts()
+	{
+		GlossaryProcessor processor = (GlossaryProcessor)context.getBean( "glossaryProcessor" );
+		processor.setInputRootFolder( new File( "testdata/Essentials/Swedish" ) );
+		List<SortObject> collectedData = processor.collectUnsortedGlossaryData();
+
+		List<SortObject> data = new ArrayList<SortObject>( collectedData );
+		data.addAll( collectedData );
+		Collections.shuffle( data, new Random( 20091020L ) );
+
+		SortObjectsL1L2DuplicateFilter filter = new SortObjectsL1L2DuplicateFilter();
+		List<SortObject> expected = new ArrayList<SortObject>( data );
+		filter.process( expected, new HashMap<String, Object>() );
+		Assert.assertEquals( collectedData.size(), expected.size() );
+
+		List<SortObject> filtered		= new ArrayList<SortObject>();
+		Map<String, Object> parameters	= new HashMap<String, Object>();
+		for( int i = 0; i < data.size(); i += 97 )
+		{
+			List<SortObject> part = new ArrayList<SortObject>( data.subList( i, Math.min( i + 97, data.size() ) ) );
+			filter.processPart( part, parameters );
+			filtered.addAll( part );
+		}
+		Assert.assertEquals( TestDataHelper.describe( expected ), TestDataHelper.describe( filtered ) );
+
+		// every sort object is listed twice, the first of the two is kept
+		List<SortObject> firstOccurrences	= new ArrayList<SortObject>();
+		Set<SortObject> seen				= Collections.newSetFromMap( new IdentityHashMap<SortObject, Boolean>() );
+		for( SortObject sortObject : data )
+		{
+			if( seen.add( sortObject ) ) {
+				firstOccurrences.add( sortObject );
+			}
+		}
+		Assert.assertEquals( firstOccurrences, expected );
+	}
+
 	@Ignore
 	private void validate_testGlossaryCreation( File glossaryL1File, File glossaryL2File ) throws Exception
 	{
@@ -208,6 +470,46 @@ public class TestGlossaryProcessor
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+	private static void copyFolder( final File source, final File target ) throws Exception
+	{
+		target.mkdirs();
+		for( File file : source.listFiles() )
+		{
+			if( file.isDirectory() ) {
+				copyFolder( file, new File( target, file.getName() ) );
+			}
+			else {
+				Files.copy( file.toPath(), new File( target, file.getName() ).toPath() );
+			}
+		}
+	}
+
+	private static void listFiles( final File folder, final List<File> files )
+	{
+		for( File file : folder.listFiles() )
+		{
+			if( file.isDirectory() ) {
+				listFiles( file, files );
+			}
+			else {
+				files.add( file );
+			}
+		}
+	}
+
+	private static void deleteFolder( final File folder )
+	{
+		for( File file : folder.listFiles() )
+		{
+			if( file.isDirectory() ) {
+				deleteFolder( file );
+			}
+			else {
+				file.delete();
+			}
+		}
+		folder.delete();
+	}
 
 	//------------------------------------------------------------------------------------------------------------------
 	private static ClassPathXmlApplicationContext context = null;
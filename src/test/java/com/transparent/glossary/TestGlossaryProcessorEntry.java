@@ -3,9 +3,11 @@
  */
 package com.transparent.glossary;
 
-import com.transparent.glossary.io.GlossaryInputDataReader;
+import com.transparent.glossary.io.ISortObjectsReader;
 import com.transparent.glossary.model.SortObject;
 import com.transparent.glossary.processor.GlossaryProcessorEntry;
+import com.transparent.glossary.processor.ISortObjectsFilter;
+import com.transparent.glossary.processor.SortObjectsL1L2FileMergeFilter;
 import junit.framework.Assert;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -15,7 +17,13 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 import java.io.File;
 import java.io.FileFilter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * User: plitvak
@@ -47,9 +55,8 @@ public class TestGlossaryProcessorEntry
 		{
 			if( filter.accept( file ) )
 			{
-				GlossaryInputDataReader inputReader = b4xProcessorEntry.getInputReadersMap().get( filter );
-				inputReader.setInputFile( file );
-				sortObjects.addAll(  inputReader.readSortObjects() );
+				ISortObjectsReader inputReader = b4xProcessorEntry.getInputReadersMap().get( filter );
+				sortObjects.addAll(  inputReader.readSortObjects( file ) );
 			}
 		}
 
@@ -69,9 +76,8 @@ public class TestGlossaryProcessorEntry
 			{
 				if( filter.accept( f ) )
 				{
-					GlossaryInputDataReader inputReader = ttProcessorEntry.getInputReadersMap().get( filter );
-					inputReader.setInputFile( f );
-					sortObjects.addAll(  inputReader.readSortObjects() );
+					ISortObjectsReader inputReader = ttProcessorEntry.getInputReadersMap().get( filter );
+					sortObjects.addAll(  inputReader.readSortObjects( f ) );
 				}
 			}
 		}
@@ -92,9 +98,8 @@ public class TestGlossaryProcessorEntry
 			{
 				if( filter.accept( file ) )
 				{
-					GlossaryInputDataReader inputReader = b4xProcessorEntry.getInputReadersMap().get( filter );
-					inputReader.setInputFile( file );
-					sortObjects.addAll(  inputReader.readSortObjects() );
+					ISortObjectsReader inputReader = b4xProcessorEntry.getInputReadersMap().get( filter );
+					sortObjects.addAll(  inputReader.readSortObjects( file ) );
 				}
 			}
 		}
@@ -118,9 +123,8 @@ public class TestGlossaryProcessorEntry
 			{
 				if( filter.accept( f ) )
 				{
-					GlossaryInputDataReader inputReader = ttProcessorEntry.getInputReadersMap().get( filter );
-					inputReader.setInputFile( f );
-					Collection<SortObject> collectedData = inputReader.readSortObjects();
+					ISortObjectsReader inputReader = ttProcessorEntry.getInputReadersMap().get( filter );
+					Collection<SortObject> collectedData = inputReader.readSortObjects( f );
 					addFileInfoToSortObjects( collectedData, f );
 					sortObjects.addAll( collectedData );
 				}
@@ -132,10 +136,136 @@ public class TestGlossaryProcessorEntry
 		Assert.assertTrue( sortObjects.size() == 19 );
 	}
 
+	/**
+	 * The sort objects grouped by file are merged the same as the ones with the file in their user data.
+	 */
+	@Test
+	public void testTTProcessorWithFileGroups()
+	{
+		GlossaryProcessorEntry ttProcessorEntry			= (GlossaryProcessorEntry)context.getBean( "ttGlossaryProcessorEntry" );
+		List<SortObject> sortObjects					= new ArrayList<SortObject>();
+		List<SortObject> taggedSortObjects				= new ArrayList<SortObject>();
+		Map<String, Collection<SortObject>> fileGroups	= new LinkedHashMap<String, Collection<SortObject>>();
+		File[] files									= new File[]{ 	new File( "testdata/root/unit/IEU12_known_tt.xml" ),
+																		new File( "testdata/root/unit/IEU12_learning_tt.xml" ) };
+		for( File f : files )
+		{
+			for( FileFilter filter : ttProcessorEntry.getInputReadersMap().keySet() )
+			{
+				if( filter.accept( f ) )
+				{
+					ISortObjectsReader inputReader = ttProcessorEntry.getInputReadersMap().get( filter );
+					Collection<SortObject> collectedData = inputReader.readSortObjects( f );
+					fileGroups.put( f.getAbsolutePath(), collectedData );
+					sortObjects.addAll( collectedData );
+
+					Collection<SortObject> taggedData = inputReader.readSortObjects( f );
+					addFileInfoToSortObjects( taggedData, f );
+					taggedSortObjects.addAll( taggedData );
+				}
+			}
+		}
+
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put( ISortObjectsFilter.FILE_GROUPS_PARAMETER, fileGroups );
+		ttProcessorEntry.process( sortObjects, parameters );
+		ttProcessorEntry.process( taggedSortObjects, null );
+
+		Assert.assertEquals( 19, sortObjects.size() );
+		Assert.assertEquals( taggedSortObjects.size(), sortObjects.size() );
+		for( int i = 0; i < sortObjects.size(); i++ )
+		{
+			Assert.assertEquals( taggedSortObjects.get( i ).getSortFieldsL1(), sortObjects.get( i ).getSortFieldsL1() );
+			Assert.assertEquals( taggedSortObjects.get( i ).getSortFieldsL2(), sortObjects.get( i ).getSortFieldsL2() );
+			Assert.assertTrue( sortObjects.get( i ).getUserData().isEmpty() );
+		}
+	}
+
+	/**
+	 * The filters run ahead of the merge filter change the collection the file groups were made for, the merge filter
+	 * has to use the file names in the user data then: once with the same number of sort objects in a different order
+	 * and once with fewer sort objects.
+	 */
+	@Test
+	public void testFilterBeforeMerge()
+	{
+		ISortObjectsFilter reverse = new ISortObjectsFilter()
+		{
+			public void process( final Collection<SortObject> objectsToProcess, final Map<String, Object> parameters ) {
+				Collections.reverse( (List<SortObject>)objectsToProcess );
+			}
+		};
+		ISortObjectsFilter removeFirstOfEveryFile = new ISortObjectsFilter()
+		{
+			public void process( final Collection<SortObject> objectsToProcess, final Map<String, Object> parameters )
+			{
+				Map<Object, SortObject> firsts = new HashMap<Object, SortObject>();
+				for( SortObject sortObject : objectsToProcess )
+				{
+					if( !firsts.containsKey( sortObject.getUserData().get( "" ) ) ) {
+						firsts.put( sortObject.getUserData().get( "" ), sortObject );
+					}
+				}
+				objectsToProcess.removeAll( firsts.values() );
+			}
+		};
+
+		SortObjectsL1L2FileMergeFilter mergeFilter = (SortObjectsL1L2FileMergeFilter)context.getBean( "ttMergeFilter" );
+		for( ISortObjectsFilter filter : Arrays.asList( reverse, removeFirstOfEveryFile ) )
+		{
+			GlossaryProcessorEntry entry = new GlossaryProcessorEntry();
+			entry.setSortObjectsFilters( Arrays.asList( filter, mergeFilter ) );
+
+			Map<String, Collection<SortObject>> fileGroups	= new LinkedHashMap<String, Collection<SortObject>>();
+			List<SortObject> sortObjects					= readTaggedTTSortObjects( fileGroups );
+			Map<String, Object> parameters					= new HashMap<String, Object>();
+			parameters.put( ISortObjectsFilter.FILE_GROUPS_PARAMETER, fileGroups );
+			entry.process( sortObjects, parameters );
+
+			List<SortObject> expected = readTaggedTTSortObjects( new LinkedHashMap<String, Collection<SortObject>>() );
+			entry.process( expected, null );
+
+			Assert.assertFalse( sortObjects.isEmpty() );
+			Assert.assertEquals( expected.size(), sortObjects.size() );
+			for( int i = 0; i < sortObjects.size(); i++ )
+			{
+				Assert.assertEquals( expected.get( i ).getSortFieldsL1(), sortObjects.get( i ).getSortFieldsL1() );
+				Assert.assertEquals( expected.get( i ).getSortFieldsL2(), sortObjects.get( i ).getSortFieldsL2() );
+			}
+		}
+	}
+
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * Reads the tt files the way the processor does: the sort objects are tagged with their file and grouped by it.
+	 */
+	private List<SortObject> readTaggedTTSortObjects( final Map<String, Collection<SortObject>> fileGroups )
+	{
+		GlossaryProcessorEntry ttProcessorEntry	= (GlossaryProcessorEntry)context.getBean( "ttGlossaryProcessorEntry" );
+		List<SortObject> res					= new ArrayList<SortObject>();
+		File[] files							= new File[]{ 	new File( "testdata/root/unit/IEU12_known_tt.xml" ),
+																new File( "testdata/root/unit/IEU12_learning_tt.xml" ) };
+		for( File f : files )
+		{
+			for( FileFilter filter : ttProcessorEntry.getInputReadersMap().keySet() )
+			{
+				if( filter.accept( f ) )
+				{
+					ISortObjectsReader inputReader = ttProcessorEntry.getInputReadersMap().get( filter );
+					Collection<SortObject> collectedData = inputReader.readSortObjects( f );
+					addFileInfoToSortObjects( collectedData, f );
+					fileGroups.put( f.getAbsolutePath(), collectedData );
+					res.addAll( collectedData );
+				}
+			}
+		}
+
+		return res;
+	}
+
 	private void addFileInfoToSortObjects( final Collection<SortObject> sortObjects, File file )
 	{
 		for( SortObject so : sortObjects ) {
@@ -11,6 +11,9 @@ import org.junit.Test;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * User: plitvak
@@ -54,6 +57,40 @@ public class TestPatternFileFilter
 		Assert.assertTrue( !filter.accept( file ) );
 	}
 
+	/**
+	 * The patterns fused in to one alternation accept the same paths as the patterns matched one by one.
+	 */
+	@Test
+	public void testFusedPatterns()
+	{
+		List<String> patterns	= Arrays.asList( ".*_known_tt\\.xml", "(?i).*RECON\\.xml", ".*/(a+)b\\1\\.xml", "\\Q/root/x.xml",
+												 ".*/(?<n>c)\\k<n>\\.xml", "(?x) .*/d # comment", ".*grammar\\.xml|.*/e" );
+		List<String> paths		= Arrays.asList( "/root/unit/IEU10_known_tt.xml", "/root/unit/IEU10_learning_tt.xml", "/root/recon.xml",
+												 "/root/Recon.XML", "/root/aaba.xml", "/root/aabaa.xml", "/root/x.xml", "/root/xyxml",
+												 "/root/cc.xml", "/root/d", "/root/grammar.xml", "/root/e", "/root/e/f" );
+
+		PatternFileFilter filter = new PatternFileFilter();
+		filter.getPatterns().addAll( patterns );
+		for( String path : paths )
+		{
+			boolean expected = false;
+			for( String pattern : patterns ) {
+				expected |= Pattern.matches( pattern, path );
+			}
+			Assert.assertEquals( path, expected, filter.acceptPath( path ) );
+		}
+
+		// the changed patterns are compiled again
+		Assert.assertTrue( filter.acceptPath( "/root/d" ) );
+		filter.getPatterns().remove( "(?x) .*/d # comment" );
+		Assert.assertFalse( filter.acceptPath( "/root/d" ) );
+		filter.setPatterns( patterns );
+		Assert.assertTrue( filter.acceptPath( "/root/d" ) );
+		filter.getPatterns().set( patterns.indexOf( "(?x) .*/d # comment" ), ".*/f" );
+		Assert.assertFalse( filter.acceptPath( "/root/d" ) );
+		Assert.assertTrue( filter.acceptPath( "/root/e/f" ) );
+	}
+
 	//------------------------------------------------------------------------------------------------------------------
 	private static ClassPathXmlApplicationContext context = null;
 	//------------------------------------------------------------------------------------------------------------------
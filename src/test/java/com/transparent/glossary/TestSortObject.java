@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary;
+
+import com.transparent.glossary.model.FieldSchema;
+import com.transparent.glossary.model.SortObject;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TestSortObject
+{
+	@Test
+	public void testFieldsToIncludeMap()
+	{
+		List<String> names	= Arrays.asList( "L1", "L2", "hint1", "comment", "L1_extra", "notes", "audio" );
+		Random random		= new Random( 20090731L );
+		for( int i = 0; i < 1000; i++ )
+		{
+			List<String> shuffled = new ArrayList<String>( names );
+			Collections.shuffle( shuffled, random );
+
+			SortObject sortObject		= i % 2 == 0? new SortObject(): new SortObject( FieldSchema.of( shuffled ) );
+			Map<String, String> fields	= sortObject.getFieldsToIncludeMap();
+			Map<String, String> expected	= new HashMap<String, String>();
+			for( String name : shuffled )
+			{
+				if( random.nextInt( 4 ) == 0 ) {
+					continue;
+				}
+
+				String value = random.nextInt( 5 ) == 0? null: name + "_" + i;
+				Assert.assertEquals( expected.put( name, value ), fields.put( name, value ) );
+			}
+
+			// the fields are iterated in the same order as the hash map
+			Assert.assertEquals( expected, fields );
+			Assert.assertEquals( new ArrayList<String>( expected.keySet() ), new ArrayList<String>( fields.keySet() ) );
+			Assert.assertEquals( new ArrayList<String>( expected.values() ), new ArrayList<String>( fields.values() ) );
+			Assert.assertEquals( expected.toString(), fields.toString() );
+			Assert.assertEquals( expected.hashCode(), fields.hashCode() );
+
+			for( String name : names )
+			{
+				Assert.assertEquals( expected.containsKey( name ), fields.containsKey( name ) );
+				Assert.assertEquals( expected.get( name ), fields.get( name ) );
+			}
+
+			String removed = shuffled.get( 0 );
+			Assert.assertEquals( expected.remove( removed ), fields.remove( removed ) );
+			Assert.assertEquals( expected, fields );
+
+			for( Iterator<String> it = fields.keySet().iterator(); it.hasNext(); )
+			{
+				if( it.next().startsWith( "L" ) ) {
+					it.remove();
+				}
+			}
+			for( Iterator<String> it = expected.keySet().iterator(); it.hasNext(); )
+			{
+				if( it.next().startsWith( "L" ) ) {
+					it.remove();
+				}
+			}
+			Assert.assertEquals( expected, fields );
+			Assert.assertEquals( expected.size(), fields.size() );
+		}
+	}
+
+	@Test
+	public void testSortFields()
+	{
+		SortObject sortObject	= new SortObject();
+		List<String> fields		= sortObject.getSortFieldsL1();
+		List<String> expected	= new ArrayList<String>();
+
+		for( int i = 0; i < 5; i++ )
+		{
+			fields.add( "field_" + i );
+			expected.add( "field_" + i );
+		}
+		fields.add( 2, "inserted" );
+		expected.add( 2, "inserted" );
+		fields.set( 0, "first" );
+		expected.set( 0, "first" );
+		Assert.assertEquals( expected.remove( 3 ), fields.remove( 3 ) );
+		Assert.assertEquals( expected, fields );
+
+		fields.clear();
+		Assert.assertTrue( fields.isEmpty() );
+		Assert.assertTrue( sortObject.getSortFieldsL2().isEmpty() );
+	}
+
+	@Test
+	public void testLanguageCodes()
+	{
+		SortObject sortObject = new SortObject();
+		sortObject.setLanguageCodeL1( new String( "ENGLISH" ) );
+		sortObject.setLanguageCodeL2( null );
+
+		Assert.assertSame( "ENGLISH", sortObject.getLanguageCodeL1() );
+		Assert.assertNull( sortObject.getLanguageCodeL2() );
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2008-2009 Transparent Language, Inc.  All rights reserved.
+ */
+package com.transparent.glossary;
+
+import com.transparent.glossary.io.util.XhtmlStripper;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestXhtmlStripper
+{
+	@Test
+	public void testStrip()
+	{
+		Assert.assertEquals( "word", XhtmlStripper.strip( "word" ) );
+		Assert.assertEquals( "a bold word", XhtmlStripper.strip( "<![CDATA[a <b>bold</b> word]]>" ) );
+		Assert.assertEquals( "link", XhtmlStripper.strip( "<a href=\"x>y\" title='>'>link</a>" ) );
+		Assert.assertEquals( "a  b", XhtmlStripper.strip( "a &nbsp; b" ) );
+		Assert.assertEquals( "", XhtmlStripper.strip( "&a<b/>;" ) );
+		Assert.assertEquals( "<a \"b", XhtmlStripper.strip( "<a \"b" ) );
+		Assert.assertEquals( "x\n", XhtmlStripper.strip( "<![CDATA[x]]>\n" ) );
+	}
+
+	/**
+	 * The stripped values are the same as the ones of the regular expressions the XHTML used to be stripped with.
+	 */
+	@Test
+	public void testSameAsRegularExpressions()
+	{
+		String[] parts = { "<![CDATA[", "]]>", "<", ">", "\"", "'", "&", ";", "&amp;", "<b>", "</b>", "<br/>",
+						   "<a href=\"x>y\">", "<i title='a\"b'>", "a", "b_1", " ", "\u00e5", "\n", "\r\n", "\u2028", "]" };
+		Random random = new Random( 20091012L );
+		for( int i = 0; i < 200000; i++ )
+		{
+			StringBuilder dirty = new StringBuilder();
+			int count = random.nextInt( 12 );
+			for( int j = 0; j < count; j++ ) {
+				dirty.append( parts[random.nextInt( parts.length )] );
+			}
+
+			String value = dirty.toString();
+			Assert.assertEquals( value, stripWithRegularExpressions( value ), XhtmlStripper.strip( value ) );
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static String stripWithRegularExpressions( final String dirty ) {
+		return dirty.replaceAll( "\\A<!\\[CDATA\\[", "" ).replaceAll( "\\]\\]>\\Z", "" ).replaceAll( "<(?:[^>\"']|\"[^\"]*\"|'[^']*')*>", "" ).replaceAll( "\\x26\\w*[\\x26\\x3B]", "" );
+	}
+}
@@ -11,6 +11,8 @@ import org.junit.Test;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * User: plitvak
@@ -74,6 +76,57 @@ public class TestXmlContentFileFilter
 		Assert.assertTrue( !filter.accept( file ) );
 	}
 
+	@Test
+	public void testSniffMatchesDOM()
+	{
+		List<File> files = new ArrayList<File>();
+		collectXmlFiles( new File( "testdata" ), files );
+
+		int accepted = 0;
+		for( String xPath : new String[]{ "/list/cards/*", "/tt/body/*", "/list/*/card", "/*/head" } )
+		{
+			for( String expectedResult : new String[]{ "length(!=0)", "size(==0)", "length(==17)", "length(!=17)" } )
+			{
+				XmlContentFileFilter sniffFilter = new XmlContentFileFilter();
+				sniffFilter.setXPath( xPath );
+				sniffFilter.setExpectedResult( expectedResult );
+
+				XmlContentFileFilter domFilter = new XmlContentFileFilter();
+				domFilter.setXPath( xPath );
+				domFilter.setExpectedResult( expectedResult );
+				domFilter.setSniffContent( false );
+
+				for( File file : files )
+				{
+					boolean res = domFilter.accept( file );
+					Assert.assertEquals( xPath + " " + expectedResult + " " + file.getPath(), res, sniffFilter.accept( file ) );
+					if( res ) {
+						accepted++;
+					}
+				}
+			}
+		}
+
+		Assert.assertTrue( accepted > 0 );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private void collectXmlFiles( final File folder, final List<File> files )
+	{
+		for( File file : folder.listFiles() )
+		{
+			if( file.isDirectory() ) {
+				collectXmlFiles( file, files );
+			}
+			else if( file.getName().endsWith( ".xml" ) ) {
+				files.add( file );
+			}
+		}
+	}
+
 	//------------------------------------------------------------------------------------------------------------------
 	private static ClassPathXmlApplicationContext context = null;
 	//------------------------------------------------------------------------------------------------------------------